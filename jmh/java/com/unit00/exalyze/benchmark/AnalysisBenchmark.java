@@ -0,0 +1,87 @@
+package com.unit00.exalyze.benchmark;
+
+import com.unit00.exalyze.analysis.DuplicateDetector;
+import com.unit00.exalyze.analysis.DuplicateSummary;
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dto.ChartDataDto;
+import com.unit00.exalyze.service.AIAnalysisService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profiles a parsed dataset: the full report, the chart data and duplicate detection. The service
+ * remembers the analysis of a dataset by identity, so every invocation wraps the same columns in a
+ * new {@link Dataset} and measures a cold analysis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AnalysisBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+    @Param("20")
+    public int columns;
+    @Param("NUMERIC,STRING,DATE,BOOLEAN")
+    public String types;
+    @Param("0.05")
+    public double nullRatio;
+    @Param("0.1")
+    public double duplicateRatio;
+    @Param("50")
+    public int cardinality;
+
+    private ForkJoinPool pool;
+    private AIAnalysisService analysisService;
+    private DuplicateDetector duplicateDetector;
+    private Dataset data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = Services.analysisPool();
+        analysisService = Services.analysisService(pool);
+        duplicateDetector = new DuplicateDetector(0, 64L * 1024 * 1024);
+        data = new SyntheticData(rows, columns, types, nullRatio, duplicateRatio, cardinality, 42).dataset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private Dataset fresh() {
+        return new Dataset(data.getColumns(), data.getRowCount());
+    }
+
+    @Benchmark
+    public String analyzeExcelData() {
+        return analysisService.analyzeExcelData(fresh());
+    }
+
+    @Benchmark
+    public ChartDataDto getChartData() {
+        return analysisService.getChartData(fresh());
+    }
+
+    @Benchmark
+    public DuplicateSummary findDuplicateRows() {
+        return duplicateDetector.detect(data);
+    }
+}
@@ -0,0 +1,78 @@
+package com.unit00.exalyze.benchmark;
+
+import com.unit00.exalyze.analysis.ColumnProfile;
+import com.unit00.exalyze.analysis.CorrelationEngine;
+import com.unit00.exalyze.analysis.DatasetProfiler;
+import com.unit00.exalyze.analysis.ParallelRunner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The correlation matrix over the numeric columns, given the non-null values of each column as the
+ * report passes them. Only columns with the same number of values are paired, so the defaults have
+ * no nulls and every pair is computed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CorrelationBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+    @Param({"20", "100"})
+    public int columns;
+    @Param("NUMERIC")
+    public String types;
+    @Param("0")
+    public double nullRatio;
+    @Param("0")
+    public double duplicateRatio;
+    @Param("50")
+    public int cardinality;
+
+    private ForkJoinPool pool;
+    private CorrelationEngine correlationEngine;
+    private Map<String, double[]> numericColumns;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = Services.analysisPool();
+        correlationEngine = new CorrelationEngine(new ParallelRunner(pool, 4));
+        numericColumns = new LinkedHashMap<>();
+        for (ColumnProfile profile : new DatasetProfiler().profile(
+                new SyntheticData(rows, columns, types, nullRatio, duplicateRatio, cardinality, 42).dataset())) {
+            if ("Numeric".equals(profile.getInferredType())) {
+                numericColumns.put(profile.getName(), profile.getNumericValues());
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Map<String, Map<String, Double>> calculateCorrelationMatrix() {
+        return correlationEngine.correlate(numericColumns);
+    }
+}
@@ -0,0 +1,66 @@
+package com.unit00.exalyze.benchmark;
+
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.service.ExcelService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/** Writes a dataset as the .xlsx download; the bytes are discarded so only the export is measured. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExportBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+    @Param("20")
+    public int columns;
+    @Param("NUMERIC,STRING,DATE,BOOLEAN")
+    public String types;
+    @Param("0.05")
+    public double nullRatio;
+    @Param("0.1")
+    public double duplicateRatio;
+    @Param("50")
+    public int cardinality;
+
+    private ForkJoinPool pool;
+    private ExcelService excelService;
+    private Dataset data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = Services.analysisPool();
+        excelService = Services.excelService(pool);
+        data = new SyntheticData(rows, columns, types, nullRatio, duplicateRatio, cardinality, 42).dataset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public void generateExcelFile() throws IOException {
+        excelService.writeExcelFile(data, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,90 @@
+package com.unit00.exalyze.benchmark;
+
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.service.ExcelService;
+import com.unit00.exalyze.service.ProgressListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/** Parses a generated upload, as .xlsx through the streaming reader and as CSV. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParsingBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+    @Param("20")
+    public int columns;
+    @Param("NUMERIC,STRING,DATE,BOOLEAN")
+    public String types;
+    @Param("0.05")
+    public double nullRatio;
+    @Param("0.1")
+    public double duplicateRatio;
+    @Param("50")
+    public int cardinality;
+
+    private ForkJoinPool pool;
+    private ExcelService excelService;
+    private Path directory;
+    private FileSystemResource xlsx;
+    private FileSystemResource csv;
+    private long xlsxSize;
+    private long csvSize;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        pool = Services.analysisPool();
+        excelService = Services.excelService(pool);
+        Dataset data = new SyntheticData(rows, columns, types, nullRatio, duplicateRatio, cardinality, 42).dataset();
+        directory = Files.createTempDirectory("exalyze-bench-");
+        Path xlsxFile = directory.resolve("data.xlsx");
+        Path csvFile = directory.resolve("data.csv");
+        SyntheticData.writeXlsx(data, xlsxFile);
+        SyntheticData.writeCsv(data, csvFile);
+        xlsx = new FileSystemResource(xlsxFile);
+        csv = new FileSystemResource(csvFile);
+        xlsxSize = Files.size(xlsxFile);
+        csvSize = Files.size(csvFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(xlsx.getFile().toPath());
+        Files.deleteIfExists(csv.getFile().toPath());
+        Files.deleteIfExists(directory);
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Dataset readExcelData() throws IOException {
+        return excelService.readExcelData(xlsx, "data.xlsx", xlsxSize, ProgressListener.NONE);
+    }
+
+    @Benchmark
+    public Dataset readCsvData() throws IOException {
+        return excelService.readCsvData(csv, "data.csv", csvSize, ProgressListener.NONE);
+    }
+}
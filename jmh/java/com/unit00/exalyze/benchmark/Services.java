@@ -0,0 +1,40 @@
+package com.unit00.exalyze.benchmark;
+
+import com.unit00.exalyze.AnalysisConfig;
+import com.unit00.exalyze.service.AIAnalysisService;
+import com.unit00.exalyze.service.ExcelExportWriter;
+import com.unit00.exalyze.service.ExcelService;
+import com.unit00.exalyze.service.FormulaStrategy;
+import com.unit00.exalyze.service.PdfReportWriter;
+import com.unit00.exalyze.service.PipelineMetrics;
+import com.unit00.exalyze.service.SheetMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+
+import java.util.concurrent.ForkJoinPool;
+
+/** The services as the application wires them with the defaults of application.properties. */
+final class Services {
+
+    private Services() {
+    }
+
+    static ForkJoinPool analysisPool() {
+        return new AnalysisConfig().analysisPool(0);
+    }
+
+    static ExcelService excelService(ForkJoinPool pool) {
+        return new ExcelService(true, FormulaStrategy.CACHED, true, 1000, SheetMode.FIRST, 4, pool,
+                new ExcelExportWriter(100), metrics());
+    }
+
+    static AIAnalysisService analysisService(ForkJoinPool pool) {
+        return new AIAnalysisService(pool, new ExcelExportWriter(100), new PdfReportWriter(), metrics(), true, 4,
+                0, 0.005, 0, 64, 0, 0, 1024);
+    }
+
+    /** Meters are recorded as in production, into a registry nobody scrapes; stage spans are not. */
+    private static PipelineMetrics metrics() {
+        return new PipelineMetrics(new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+    }
+}
@@ -0,0 +1,135 @@
+package com.unit00.exalyze.benchmark;
+
+import com.unit00.exalyze.dataset.Column;
+import com.unit00.exalyze.dataset.ColumnType;
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dataset.DatasetBuilder;
+import com.unit00.exalyze.dataset.DateColumn;
+import com.unit00.exalyze.service.ExcelExportWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates reproducible datasets for the benchmarks. Column types cycle through {@code types};
+ * numeric columns share a per-row factor, so they correlate with each other. A row is a duplicate
+ * of an earlier row with probability {@code duplicateRatio}, and every cell is null with
+ * probability {@code nullRatio}. Text columns draw from {@code cardinality} values, skewed towards
+ * the first ones.
+ */
+public class SyntheticData {
+
+    private static final long EPOCH_DAY_2020 = LocalDate.of(2020, 1, 1).toEpochDay();
+
+    private final int rows;
+    private final int columns;
+    private final ColumnType[] types;
+    private final double nullRatio;
+    private final double duplicateRatio;
+    private final int cardinality;
+    private final long seed;
+
+    public SyntheticData(int rows, int columns, String types, double nullRatio, double duplicateRatio,
+                         int cardinality, long seed) {
+        this.rows = rows;
+        this.columns = columns;
+        String[] names = types.split(",");
+        this.types = new ColumnType[names.length];
+        for (int i = 0; i < names.length; i++) {
+            this.types[i] = ColumnType.valueOf(names[i].trim().toUpperCase());
+        }
+        this.nullRatio = nullRatio;
+        this.duplicateRatio = duplicateRatio;
+        this.cardinality = Math.max(1, cardinality);
+        this.seed = seed;
+    }
+
+    public Dataset dataset() {
+        List<String> headers = new ArrayList<>();
+        for (int c = 0; c < columns; c++) {
+            headers.add(typeOf(c).name().toLowerCase() + "_" + c);
+        }
+        DatasetBuilder data = new DatasetBuilder(headers);
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int r = 0; r < rows; r++) {
+            // A row's cells depend only on its source row, so a duplicate repeats them exactly.
+            int source = r > 0 && random.nextDouble() < duplicateRatio ? random.nextInt(r) : r;
+            SplittableRandom cells = new SplittableRandom(seed * 31 + source);
+            double factor = cells.nextGaussian();
+            for (int c = 0; c < columns; c++) {
+                boolean isNull = cells.nextDouble() < nullRatio;
+                double u = cells.nextDouble();
+                double noise = cells.nextGaussian();
+                if (isNull) {
+                    data.appendNull(c);
+                    continue;
+                }
+                switch (typeOf(c)) {
+                    case NUMERIC:
+                        data.appendDouble(c, Math.round((100 + 10 * c + 20 * factor + 5 * noise) * 100) / 100.0);
+                        break;
+                    case DATE:
+                        long day = EPOCH_DAY_2020 + (long) (u * 4 * 365);
+                        data.appendDate(c, LocalDate.ofEpochDay(day).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+                        break;
+                    case BOOLEAN:
+                        data.appendBoolean(c, u < 0.5);
+                        break;
+                    default:
+                        data.appendString(c, "value-" + (int) (u * u * cardinality));
+                        break;
+                }
+            }
+            data.endRow();
+        }
+        return data.build();
+    }
+
+    private ColumnType typeOf(int column) {
+        return types[column % types.length];
+    }
+
+    /** Writes the dataset as a CSV the upload reader sniffs back into the same column types. */
+    public static void writeCsv(Dataset data, Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(String.join(",", data.getColumnNames()));
+            out.newLine();
+            List<Column> columns = data.getColumns();
+            for (int r = 0; r < data.getRowCount(); r++) {
+                for (int c = 0; c < columns.size(); c++) {
+                    if (c > 0) {
+                        out.write(',');
+                    }
+                    Column column = columns.get(c);
+                    if (column.isNull(r)) {
+                        continue;
+                    }
+                    if (column instanceof DateColumn) {
+                        out.write(Instant.ofEpochMilli(((DateColumn) column).getMillis(r))
+                                .atZone(ZoneId.systemDefault()).toLocalDate().toString());
+                    } else {
+                        out.write(column.get(r).toString());
+                    }
+                }
+                out.newLine();
+            }
+        }
+    }
+
+    /** Writes the dataset as an .xlsx, the same way the export endpoint does. */
+    public static void writeXlsx(Dataset data, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            new ExcelExportWriter(100).write(data, "Data", out);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.unit00.exalyze.benchmark;
+
+import com.unit00.exalyze.dataset.Dataset;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Posts one synthetic file to a running server's /api/upload from many clients at once and
+ * prints throughput, latency percentiles and the responses by status. To compare the thread
+ * modes, start the server once with {@code spring.threads.virtual.enabled=false} and once with
+ * {@code true} (Java 21), keeping the exalyze.limits.* settings equal, and run the same
+ * arguments against both:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.unit00.exalyze.benchmark.UploadLoadTest \
+ *     -Djmh.args="--concurrency=200 --requests=2000 --rows=20000"
+ * </pre>
+ * Arguments are {@code --name=value}: url, concurrency, requests, warmup, rows, columns, types,
+ * format (csv or xlsx) and includeRows. Rows are left out of the responses by default, so the
+ * numbers are about receiving, parsing and analyzing rather than serializing. Every request posts
+ * the same file, so start the server with {@code exalyze.results.enabled=false}, or all but the
+ * first upload are answered from the result cache.
+ */
+public class UploadLoadTest {
+
+    private static final String BOUNDARY = "exalyze-load-test";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put("url", "http://localhost:8080");
+        options.put("concurrency", "64");
+        options.put("requests", "500");
+        options.put("warmup", "50");
+        options.put("rows", "20000");
+        options.put("columns", "10");
+        options.put("types", "NUMERIC,STRING,DATE,BOOLEAN");
+        options.put("format", "csv");
+        options.put("includeRows", "false");
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        int concurrency = Integer.parseInt(options.get("concurrency"));
+        int requests = Integer.parseInt(options.get("requests"));
+        int warmup = Integer.parseInt(options.get("warmup"));
+        String format = options.get("format");
+        byte[] body = multipart(file(options, format), "load-test." + format);
+        URI uri = URI.create(options.get("url") + "/api/upload?includeRows=" + options.get("includeRows"));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        try {
+            run(client, clients, uri, body, warmup);
+            System.out.printf("%d uploads of %,d bytes, %d at a time%n", requests, body.length, concurrency);
+            long start = System.nanoTime();
+            Result result = run(client, clients, uri, body, requests);
+            report(result, System.nanoTime() - start, body.length);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private static byte[] file(Map<String, String> options, String format) throws Exception {
+        Dataset data = new SyntheticData(Integer.parseInt(options.get("rows")), Integer.parseInt(options.get("columns")),
+                options.get("types"), 0.02, 0.01, 50, 42).dataset();
+        Path file = Files.createTempFile("exalyze-load", "." + format);
+        try {
+            if ("xlsx".equals(format)) {
+                SyntheticData.writeXlsx(data, file);
+            } else {
+                SyntheticData.writeCsv(data, file);
+            }
+            return Files.readAllBytes(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static byte[] multipart(byte[] content, String filename) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length + 256);
+        out.writeBytes(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(content);
+        out.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+
+    private static Result run(HttpClient client, ExecutorService clients, URI uri, byte[] body, int requests) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMinutes(10))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        List<Future<long[]>> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            futures.add(clients.submit(() -> {
+                long start = System.nanoTime();
+                int status;
+                try {
+                    status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                } catch (Exception e) {
+                    status = -1;
+                }
+                return new long[]{status, System.nanoTime() - start};
+            }));
+        }
+        Result result = new Result(requests);
+        for (Future<long[]> future : futures) {
+            long[] outcome = future.get();
+            result.add((int) outcome[0], outcome[1]);
+        }
+        return result;
+    }
+
+    private static void report(Result result, long elapsedNanos, int bytes) {
+        double seconds = elapsedNanos / 1e9;
+        long[] latencies = Arrays.copyOf(result.okNanos, result.ok);
+        Arrays.sort(latencies);
+        System.out.printf("Throughput: %.1f uploads/s, %.1f MB/s received%n",
+                result.ok / seconds, (double) result.ok * bytes / seconds / (1024 * 1024));
+        System.out.printf("Latency of successful uploads (ms): p50 %.1f, p95 %.1f, p99 %.1f, max %.1f%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99),
+                percentile(latencies, 1.0));
+        System.out.println("Responses by status (-1 = connection error): " + result.statuses);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static class Result {
+        final long[] okNanos;
+        final Map<Integer, Integer> statuses = new TreeMap<>();
+        int ok;
+
+        Result(int requests) {
+            this.okNanos = new long[requests];
+        }
+
+        void add(int status, long nanos) {
+            statuses.merge(status, 1, Integer::sum);
+            if (status == 200) {
+                okNanos[ok++] = nanos;
+            }
+        }
+    }
+}
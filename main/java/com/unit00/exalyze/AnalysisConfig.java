@@ -0,0 +1,58 @@
+package com.unit00.exalyze;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class AnalysisConfig {
+
+    /** Shared by all uploads; per-request limits are applied by ParallelRunner. CPU-bound, so always platform threads. */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool analysisPool(@Value("${exalyze.analysis.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        return new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("analysis-" + counter.incrementAndGet());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Runs background upload jobs; the queue is bounded so a burst of uploads is rejected instead of piling up.
+     * In virtual-thread mode the workers are virtual threads, still at most {@code threads} of them.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService analysisJobExecutor(@Value("${exalyze.jobs.threads:2}") int threads,
+                                               @Value("${exalyze.jobs.queue-capacity:50}") int queueCapacity,
+                                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), jobThreadFactory(virtualThreads));
+    }
+
+    private static ThreadFactory jobThreadFactory(boolean virtualThreads) {
+        if (virtualThreads) {
+            if (Runtime.version().feature() >= 21) {
+                return new VirtualThreadTaskExecutor("analysis-job-").getVirtualThreadFactory();
+            }
+            System.err.println("Virtual threads need Java 21, running " + Runtime.version() + "; job workers use platform threads");
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "analysis-job-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
\ No newline at end of file
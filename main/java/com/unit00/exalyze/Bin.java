@@ -1,11 +1,30 @@
 package com.unit00.exalyze;
 
-public class Bin {
+import java.io.Serializable;
+
+public class Bin implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String label;
     private long count;
+    // Edges of a computed bin; its label is only formatted when someone asks for it.
+    private double lower;
+    private double upper;
+
+    public Bin() {
+    }
+
+    public Bin(double lower, double upper, long count) {
+        this.lower = lower;
+        this.upper = upper;
+        this.count = count;
+    }
 
     // Getters and setters
     public String getLabel() {
+        if (label == null) {
+            label = lower == upper ? String.format("%.2f", lower) : String.format("%.2f-%.2f", lower, upper);
+        }
         return label;
     }
 
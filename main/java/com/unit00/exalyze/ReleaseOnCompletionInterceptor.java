@@ -0,0 +1,26 @@
+package com.unit00.exalyze;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Runs the release a request registered under {@link #ATTRIBUTE} once its asynchronous processing
+ * ends, whether the response was written, timed out, failed, lost its client or never started
+ * because the executor rejected it. Streamed responses that hold a permit register its release
+ * here as well as in their own finally block, so the permit cannot outlive the request.
+ */
+public class ReleaseOnCompletionInterceptor implements CallableProcessingInterceptor {
+
+    public static final String ATTRIBUTE = "exalyze.releaseOnCompletion";
+
+    @Override
+    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+        Object release = request.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (release instanceof Runnable) {
+            ((Runnable) release).run();
+        }
+    }
+}
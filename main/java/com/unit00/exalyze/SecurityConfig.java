@@ -23,8 +23,12 @@ public class SecurityConfig {
                                 "/api/auth/signup",
                                 "/api/auth/signin",
                                 "/api/upload",
+                                "/api/jobs/**",
+                                "/api/datasets/**",
                                 "/api/analysis/chart-data",
-                                "/api/download/**" // Wildcard for all downloads
+                                "/api/download/**", // Wildcard for all downloads
+                                "/actuator/health",
+                                "/actuator/prometheus"
                         ).permitAll()
                         .anyRequest().authenticated()
                 )
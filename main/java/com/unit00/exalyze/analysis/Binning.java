@@ -0,0 +1,11 @@
+package com.unit00.exalyze.analysis;
+
+/** How the bins of a numeric column's histogram are laid out. */
+public enum Binning {
+    /** The requested number of equal-width bins between min and max. */
+    FIXED,
+    /** Bin width 2 * IQR / n^(1/3); falls back to FIXED when the IQR is zero. */
+    FREEDMAN_DIACONIS,
+    /** Equal-width bins on a log scale; falls back to FIXED unless every value is positive. */
+    LOG
+}
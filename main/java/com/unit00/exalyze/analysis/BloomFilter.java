@@ -0,0 +1,54 @@
+package com.unit00.exalyze.analysis;
+
+/**
+ * Fixed-size Bloom filter over 128-bit fingerprints. Probe positions are derived from the two
+ * halves of the fingerprint (double hashing), so no further hashing is needed per probe.
+ */
+public class BloomFilter {
+
+    private final long[] words;
+    private final long bitMask;
+    private final int hashCount;
+
+    /**
+     * @param expectedItems number of items that will be added
+     * @param maxBytes      upper bound on the size of the bit array
+     */
+    public BloomFilter(long expectedItems, long maxBytes) {
+        long wantedBits = Math.max(64, expectedItems * 16);
+        long maxBits = Math.max(64, Long.highestOneBit(maxBytes * 8));
+        long bits = Math.min(Long.highestOneBit(wantedBits - 1) << 1, maxBits);
+        // At most 2^36 bits, i.e. 2^30 words (8 GiB), well below the Integer.MAX_VALUE array limit.
+        bits = Math.min(bits, 1L << 36);
+        words = new long[(int) (bits >>> 6)];
+        bitMask = bits - 1;
+        double bitsPerItem = (double) bits / Math.max(1, expectedItems);
+        hashCount = (int) Math.max(1, Math.min(16, Math.round(bitsPerItem * Math.log(2))));
+    }
+
+    /** Adds the fingerprint and returns true if it might have been added before. */
+    public boolean put(long hash1, long hash2) {
+        boolean present = true;
+        long combined = hash1;
+        long step = hash2 | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = combined & bitMask;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((words[word] & mask) == 0) {
+                present = false;
+                words[word] |= mask;
+            }
+            combined += step;
+        }
+        return present;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    public long getBitCount() {
+        return bitMask + 1;
+    }
+}
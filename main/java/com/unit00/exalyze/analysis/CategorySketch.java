@@ -0,0 +1,107 @@
+package com.unit00.exalyze.analysis;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Value counts of a text column. Below the exact threshold every distinct value is counted in a
+ * map; past it the column switches to a {@link HyperLogLog} for the number of distinct values and
+ * a {@link SpaceSaving} summary for the most frequent ones, so an ID or e-mail column no longer
+ * keeps a map entry per row. Sketches merge with each other and with exact counts.
+ */
+public class CategorySketch {
+
+    private final int exactThreshold;
+    private final int capacity;
+    private Map<String, Long> exact = new HashMap<>();
+    private HyperLogLog distinct;
+    private SpaceSaving heavyHitters;
+    private long total;
+
+    /**
+     * @param exactThreshold distinct values counted exactly before switching to sketches; 0 always counts exactly
+     * @param capacity       values the heavy-hitter summary monitors once the sketches are in use
+     */
+    public CategorySketch(int exactThreshold, int capacity) {
+        this.exactThreshold = exactThreshold;
+        this.capacity = capacity;
+    }
+
+    public void add(String value, long count) {
+        total += count;
+        if (exact != null) {
+            exact.merge(value, count, Long::sum);
+            if (exactThreshold > 0 && exact.size() > exactThreshold) {
+                switchToSketches();
+            }
+        } else {
+            distinct.add(DuplicateDetector.stringKey(value));
+            heavyHitters.add(value, count);
+        }
+    }
+
+    public void merge(CategorySketch other) {
+        if (other.exact != null) {
+            other.exact.forEach(this::add);
+            return;
+        }
+        if (exact != null) {
+            switchToSketches();
+        }
+        total += other.total;
+        distinct.merge(other.distinct);
+        heavyHitters.merge(other.heavyHitters);
+    }
+
+    /** False once the counts come from sketches. */
+    public boolean isExact() {
+        return exact != null;
+    }
+
+    /** Number of values counted, including repeats. */
+    public long getTotal() {
+        return total;
+    }
+
+    public long getDistinctCount() {
+        return exact != null ? exact.size() : distinct.estimate();
+    }
+
+    /** The {@code n} most frequent values, largest count first. Sketched counts may be slightly high. */
+    public List<Map.Entry<String, Long>> top(int n) {
+        if (exact == null) {
+            return heavyHitters.top(n);
+        }
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(exact.size());
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+        }
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return entries.size() > n ? entries.subList(0, n) : entries;
+    }
+
+    public CategorySketch copy() {
+        CategorySketch copy = new CategorySketch(exactThreshold, capacity);
+        copy.total = total;
+        if (exact != null) {
+            copy.exact.putAll(exact);
+        } else {
+            copy.exact = null;
+            copy.distinct = distinct.copy();
+            copy.heavyHitters = heavyHitters.copy();
+        }
+        return copy;
+    }
+
+    private void switchToSketches() {
+        distinct = new HyperLogLog();
+        for (String value : exact.keySet()) {
+            distinct.add(DuplicateDetector.stringKey(value));
+        }
+        heavyHitters = SpaceSaving.ofExact(exact, capacity);
+        exact = null;
+    }
+}
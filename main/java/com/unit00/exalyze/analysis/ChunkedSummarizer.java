@@ -0,0 +1,79 @@
+package com.unit00.exalyze.analysis;
+
+import com.unit00.exalyze.dataset.Dataset;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Summarizes blocks of parsed rows on the analysis pool while the parser keeps reading, and merges
+ * the per-block {@link DatasetSummary} partials in row order. At most {@code maxInFlight} blocks
+ * wait or are being summarized at a time; beyond that the parser merges the oldest one first, so
+ * the rows held for analysis depend on the block size rather than on the row count.
+ * <p>
+ * Blocks must be handed in from one thread, in row order.
+ */
+public class ChunkedSummarizer implements Consumer<Dataset> {
+
+    private final ForkJoinPool pool;
+    private final int maxInFlight;
+    private final Supplier<DatasetSummary> summaries;
+    private final Deque<ForkJoinTask<DatasetSummary>> pending = new ArrayDeque<>();
+    private DatasetSummary summary;
+
+    /**
+     * @param pool      null summarizes every block on the calling thread
+     * @param summaries creates the empty summary each block is appended to
+     */
+    public ChunkedSummarizer(ForkJoinPool pool, int maxInFlight, Supplier<DatasetSummary> summaries) {
+        this.pool = pool;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.summaries = summaries;
+    }
+
+    @Override
+    public void accept(Dataset block) {
+        if (pool == null) {
+            fold(summarize(block));
+            return;
+        }
+        pending.add(pool.submit(() -> summarize(block)));
+        while (pending.size() > maxInFlight) {
+            fold(pending.poll().join());
+        }
+    }
+
+    /** Waits for the remaining blocks and returns the summary of every row handed in. */
+    public DatasetSummary finish() {
+        while (!pending.isEmpty()) {
+            fold(pending.poll().join());
+        }
+        return summary != null ? summary : summaries.get();
+    }
+
+    /** Drops the blocks still queued, e.g. after the parser failed. */
+    public void cancel() {
+        for (ForkJoinTask<DatasetSummary> task : pending) {
+            task.cancel(false);
+        }
+        pending.clear();
+    }
+
+    private DatasetSummary summarize(Dataset block) {
+        DatasetSummary partial = summaries.get();
+        partial.append(block);
+        return partial;
+    }
+
+    private void fold(DatasetSummary partial) {
+        if (summary == null) {
+            summary = partial;
+        } else {
+            summary.merge(partial);
+        }
+    }
+}
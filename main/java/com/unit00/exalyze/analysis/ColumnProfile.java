@@ -0,0 +1,195 @@
+package com.unit00.exalyze.analysis;
+
+import com.unit00.exalyze.Bin;
+import com.unit00.exalyze.dto.NumericSummaryDto;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything the report and the chart data need to know about one column, collected by
+ * {@link DatasetProfiler} in a single walk over its cells.
+ */
+public class ColumnProfile {
+
+    private final String name;
+    private final int totalRows;
+
+    long nullCount;
+    long emptyCount;
+    long nonNullCount;
+    long numericCount;
+    long dateLikeCount;
+    long distinctCount;
+
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    double sum;
+    double sumOfSquaredDeviations;
+    double[] numericValues = new double[0];
+
+    CategorySketch categories;
+
+    double median;
+    double q1;
+    double q3;
+    int outlierCount;
+    List<Bin> histogramBins;
+    // Set when the numeric cells were not kept; histograms are then filled from its buckets.
+    StreamingHistogram streamingHistogram;
+
+    ColumnProfile(String name, int totalRows) {
+        this.name = name;
+        this.totalRows = totalRows;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getTotalRows() {
+        return totalRows;
+    }
+
+    public long getNullCount() {
+        return nullCount;
+    }
+
+    /** Cells that are missing or contain only whitespace. */
+    public long getEmptyCount() {
+        return emptyCount;
+    }
+
+    public long getNonNullCount() {
+        return nonNullCount;
+    }
+
+    public long getNumericCount() {
+        return numericCount;
+    }
+
+    public long getDistinctCount() {
+        return distinctCount;
+    }
+
+    public String getInferredType() {
+        if (nonNullCount == 0) {
+            return "Empty";
+        }
+        if ((double) numericCount / nonNullCount > 0.8) {
+            if ((double) dateLikeCount / nonNullCount > 0.8) {
+                return "Date";
+            }
+            return "Numeric";
+        }
+        if (distinctCount == nonNullCount) {
+            return "ID/Text";
+        }
+        return "Categorical";
+    }
+
+    public boolean isConstant() {
+        return distinctCount == 1;
+    }
+
+    public double getMin() {
+        return numericCount == 0 ? 0.0 : min;
+    }
+
+    public double getMax() {
+        return numericCount == 0 ? 0.0 : max;
+    }
+
+    public double getMean() {
+        return numericCount == 0 ? 0.0 : sum / numericCount;
+    }
+
+    /** Population standard deviation, matching what the report has always printed. */
+    public double getStandardDeviation() {
+        return numericCount < 2 ? 0.0 : Math.sqrt(sumOfSquaredDeviations / numericCount);
+    }
+
+    /**
+     * Numeric cells in row order, for correlating the numeric columns; only populated for numeric
+     * columns, and empty once {@link #dropNumericValues() dropped}.
+     */
+    public double[] getNumericValues() {
+        return numericValues;
+    }
+
+    /**
+     * Replaces the numeric cells with a streaming histogram of them, so a profile kept for later
+     * chart data does not hold a copy of the column. Quartiles, outliers and the default histogram
+     * are already computed; histograms with other bins are then filled from the buckets.
+     */
+    public void dropNumericValues() {
+        if (numericValues.length == 0) {
+            return;
+        }
+        if (streamingHistogram == null) {
+            StreamingHistogram histogram = new StreamingHistogram();
+            for (double v : numericValues) {
+                histogram.add(v);
+            }
+            streamingHistogram = histogram;
+        }
+        numericValues = new double[0];
+    }
+
+    public double getMedian() {
+        return median;
+    }
+
+    public int getOutlierCount() {
+        return outlierCount;
+    }
+
+    /** The default histogram: {@link Histogram#DEFAULT_BINS} fixed-width bins. */
+    public List<Bin> getHistogramBins() {
+        return histogramBins;
+    }
+
+    /** A histogram of the numeric cells with another bin count or layout, built from the cells or, once dropped, the buckets. */
+    public List<Bin> histogram(int bins, Binning binning) {
+        if (numericCount < 2) {
+            return Collections.emptyList();
+        }
+        Histogram histogram = Histogram.create(binning, bins, getMin(), getMax(), q1, q3, numericCount);
+        if (streamingHistogram != null) {
+            streamingHistogram.fill(histogram);
+        } else {
+            histogram.addAll(numericValues);
+        }
+        return histogram.toBins();
+    }
+
+    /**
+     * Value counts keyed by the cell's text, exact or sketched; only populated for non-numeric
+     * columns. The report and the chart data both read their top values from here.
+     */
+    public CategorySketch getCategories() {
+        return categories;
+    }
+
+    public NumericSummaryDto toNumericSummary() {
+        return toNumericSummary(histogramBins);
+    }
+
+    public NumericSummaryDto toNumericSummary(int bins, Binning binning) {
+        return toNumericSummary(numericCount == 0 ? histogramBins : histogram(bins, binning));
+    }
+
+    private NumericSummaryDto toNumericSummary(List<Bin> histogramBins) {
+        NumericSummaryDto summary = new NumericSummaryDto();
+        if (numericCount == 0) {
+            return summary;
+        }
+        summary.setMin(min);
+        summary.setMax(max);
+        summary.setAvg(getMean());
+        summary.setMedian(median);
+        summary.setStDev(getStandardDeviation());
+        summary.setHistogramBins(histogramBins);
+        return summary;
+    }
+}
@@ -0,0 +1,194 @@
+package com.unit00.exalyze.analysis;
+
+import com.unit00.exalyze.dataset.Column;
+import com.unit00.exalyze.dataset.NumericColumn;
+import com.unit00.exalyze.dataset.StringColumn;
+
+/**
+ * Mergeable statistics of one column: counts, min/max, sum and Welford moments, counts of each
+ * distinct number, a {@link CategorySketch} of the text cells, and a KLL sketch and
+ * {@link StreamingHistogram} of the numeric cells. Two summaries of consecutive row ranges merge
+ * into the summary of both, so a column can be extended with appended rows without revisiting the
+ * old ones.
+ */
+class ColumnSummary {
+
+    private final String name;
+
+    private int rows;
+    private long nullCount;
+    private long emptyCount;
+    private long nonNullCount;
+    private long numericCount;
+    private long dateLikeCount;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+    private double mean;
+    private double m2;
+    // Keyed by the bits of the double, as parsed cells hold doubles.
+    private final LongCounter numbers = new LongCounter();
+    private final CategorySketch categories;
+    private final KllSketch sketch;
+    private final StreamingHistogram histogram = new StreamingHistogram();
+
+    ColumnSummary(String name, int sketchK, int categoryThreshold, int categoryCapacity) {
+        this.name = name;
+        this.sketch = new KllSketch(sketchK);
+        this.categories = new CategorySketch(categoryThreshold, categoryCapacity);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /** Summarizes every cell of the column. */
+    static ColumnSummary of(Column column, int sketchK, int categoryThreshold, int categoryCapacity) {
+        ColumnSummary summary = new ColumnSummary(column.getName(), sketchK, categoryThreshold, categoryCapacity);
+        if (column instanceof NumericColumn) {
+            NumericColumn numeric = (NumericColumn) column;
+            for (int i = 0; i < column.size(); i++) {
+                if (numeric.isNull(i)) {
+                    summary.nullCount++;
+                    summary.emptyCount++;
+                } else {
+                    summary.nonNullCount++;
+                    summary.addNumber(numeric.getDouble(i));
+                }
+            }
+        } else if (column instanceof StringColumn) {
+            StringColumn strings = (StringColumn) column;
+            String[] dictionary = strings.getDictionary();
+            long[] counts = new long[dictionary.length];
+            for (int i = 0; i < column.size(); i++) {
+                int code = strings.getCode(i);
+                if (code < 0) {
+                    summary.nullCount++;
+                    summary.emptyCount++;
+                } else {
+                    counts[code]++;
+                }
+            }
+            for (int code = 0; code < dictionary.length; code++) {
+                if (counts[code] > 0) {
+                    summary.addText(dictionary[code], counts[code]);
+                }
+            }
+        } else {
+            for (int i = 0; i < column.size(); i++) {
+                Object value = column.get(i);
+                if (value == null) {
+                    summary.nullCount++;
+                    summary.emptyCount++;
+                } else if (value instanceof Number) {
+                    summary.nonNullCount++;
+                    summary.addNumber(((Number) value).doubleValue());
+                } else {
+                    summary.addText(value.toString(), 1);
+                }
+            }
+        }
+        summary.rows = column.size();
+        return summary;
+    }
+
+    /** Accounts for rows in which this column had no cell at all. */
+    void addMissing(int count) {
+        rows += count;
+        nullCount += count;
+        emptyCount += count;
+    }
+
+    private void addNumber(double v) {
+        long n = ++numericCount;
+        if (DatasetProfiler.isDateLike(v)) {
+            dateLikeCount++;
+        }
+        if (v < min) min = v;
+        if (v > max) max = v;
+        sum += v;
+        double delta = v - mean;
+        mean += delta / n;
+        m2 += delta * (v - mean);
+        numbers.add(Double.doubleToLongBits(v), 1);
+        sketch.update(v);
+        histogram.add(v);
+    }
+
+    private void addText(String value, long count) {
+        nonNullCount += count;
+        if (value.isBlank()) {
+            emptyCount += count;
+        }
+        categories.add(value, count);
+    }
+
+    /** Folds in the summary of the rows that follow this one's (Chan et al. for the moments). */
+    void merge(ColumnSummary other) {
+        long n = numericCount + other.numericCount;
+        if (other.numericCount > 0) {
+            double delta = other.mean - mean;
+            m2 += other.m2 + delta * delta * numericCount * other.numericCount / n;
+            mean += delta * other.numericCount / n;
+        }
+        rows += other.rows;
+        nullCount += other.nullCount;
+        emptyCount += other.emptyCount;
+        nonNullCount += other.nonNullCount;
+        numericCount = n;
+        dateLikeCount += other.dateLikeCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        numbers.addAll(other.numbers);
+        categories.merge(other.categories);
+        sketch.merge(other.sketch);
+        histogram.merge(other.histogram);
+    }
+
+    /**
+     * The profile the report and chart data read. Median and outliers come from the sketch and the
+     * histogram from the buckets; numeric values are not retained, so the profile carries none.
+     */
+    ColumnProfile toProfile() {
+        ColumnProfile profile = new ColumnProfile(name, rows);
+        profile.nullCount = nullCount;
+        profile.emptyCount = emptyCount;
+        profile.nonNullCount = nonNullCount;
+        profile.numericCount = numericCount;
+        profile.dateLikeCount = dateLikeCount;
+        profile.min = numericCount == 0 ? 0.0 : min;
+        profile.max = numericCount == 0 ? 0.0 : max;
+        profile.sum = sum;
+        profile.sumOfSquaredDeviations = m2;
+        if (numericCount == nonNullCount) {
+            profile.distinctCount = numbers.size();
+        } else {
+            // Like the full profile of a mixed column, the categories count every cell by its text,
+            // numbers included. A copy, since the summary keeps counting appended rows after this.
+            CategorySketch cells = categories.copy();
+            numbers.forEach((bits, count) -> cells.add(Double.toString(Double.longBitsToDouble(bits)), count));
+            profile.categories = cells;
+            profile.distinctCount = cells.getDistinctCount();
+        }
+        if ("Numeric".equals(profile.getInferredType())) {
+            Quantiles quantiles = Quantiles.approximate(sketch);
+            profile.median = quantiles.getMedian();
+            profile.q1 = quantiles.getQ1();
+            profile.q3 = quantiles.getQ3();
+            profile.outlierCount = numericCount < 4 ? 0 : estimateOutliers(quantiles);
+            profile.streamingHistogram = histogram.copy();
+            profile.histogramBins = profile.histogram(Histogram.DEFAULT_BINS, Binning.FIXED);
+        }
+        return profile;
+    }
+
+    private int estimateOutliers(Quantiles quantiles) {
+        double iqr = quantiles.getQ3() - quantiles.getQ1();
+        double lowerBound = quantiles.getQ1() - 1.5 * iqr;
+        double upperBound = quantiles.getQ3() + 1.5 * iqr;
+        double below = sketch.rank(Math.nextDown(lowerBound));
+        double above = 1.0 - sketch.rank(upperBound);
+        return (int) Math.round(numericCount * (below + above));
+    }
+}
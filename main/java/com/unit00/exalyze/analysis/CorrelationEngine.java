@@ -0,0 +1,135 @@
+package com.unit00.exalyze.analysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pearson correlation matrix over primitive columns. Columns are centered once, then the
+ * Gram matrix of the centered columns is accumulated in cache-sized tiles: each tile pairs up
+ * to {@value #TILE} columns with another {@value #TILE} and walks the rows in blocks, so a
+ * block of one column is reused against a whole tile of others while it is still in cache.
+ * Tiles are independent and are spread over the analysis pool once the matrix is large enough.
+ */
+public class CorrelationEngine {
+
+    private static final int TILE = 32;
+    private static final int ROW_BLOCK = 1024;
+    private static final long PARALLEL_THRESHOLD = 1L << 22;
+
+    private final ParallelRunner runner;
+
+    public CorrelationEngine(ParallelRunner runner) {
+        this.runner = runner;
+    }
+
+    /**
+     * Correlates every pair of columns with the same number of values (more than one), as
+     * the report always has. Every column correlates 1.0 with itself.
+     */
+    public Map<String, Map<String, Double>> correlate(Map<String, double[]> columns) {
+        Map<String, Map<String, Double>> correlations = new HashMap<>();
+        Map<Integer, List<String>> byLength = new LinkedHashMap<>();
+        for (Map.Entry<String, double[]> entry : columns.entrySet()) {
+            correlations.computeIfAbsent(entry.getKey(), k -> new HashMap<>()).put(entry.getKey(), 1.0);
+            int length = entry.getValue().length;
+            if (length > 1) {
+                byLength.computeIfAbsent(length, k -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+
+        for (List<String> group : byLength.values()) {
+            if (group.size() < 2) {
+                continue;
+            }
+            double[][] centered = new double[group.size()][];
+            for (int i = 0; i < group.size(); i++) {
+                centered[i] = center(columns.get(group.get(i)));
+            }
+            double[][] gram = gram(centered);
+            for (int i = 0; i < group.size(); i++) {
+                for (int j = i + 1; j < group.size(); j++) {
+                    double denominator = gram[i][i] * gram[j][j];
+                    double correlation = denominator == 0 ? 0 : gram[i][j] / Math.sqrt(denominator);
+                    correlations.get(group.get(i)).put(group.get(j), correlation);
+                    correlations.get(group.get(j)).put(group.get(i), correlation);
+                }
+            }
+        }
+        return correlations;
+    }
+
+    private double[] center(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        double mean = sum / values.length;
+        double[] centered = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            centered[i] = values[i] - mean;
+        }
+        return centered;
+    }
+
+    /** Upper triangle (including the diagonal) of X^T X for the centered columns X. */
+    private double[][] gram(double[][] centered) {
+        int k = centered.length;
+        int rows = centered[0].length;
+        double[][] gram = new double[k][k];
+        List<GramTile> tiles = new ArrayList<>();
+        for (int i0 = 0; i0 < k; i0 += TILE) {
+            for (int j0 = i0; j0 < k; j0 += TILE) {
+                tiles.add(new GramTile(centered, gram, i0, Math.min(k, i0 + TILE), j0, Math.min(k, j0 + TILE)));
+            }
+        }
+
+        long work = (long) k * k / 2 * rows;
+        if (work < PARALLEL_THRESHOLD || tiles.size() == 1) {
+            tiles.forEach(GramTile::run);
+        } else {
+            runner.run(tiles);
+        }
+        return gram;
+    }
+
+    private static final class GramTile implements Runnable {
+
+        private final double[][] columns;
+        private final double[][] gram;
+        private final int i0;
+        private final int i1;
+        private final int j0;
+        private final int j1;
+
+        GramTile(double[][] columns, double[][] gram, int i0, int i1, int j0, int j1) {
+            this.columns = columns;
+            this.gram = gram;
+            this.i0 = i0;
+            this.i1 = i1;
+            this.j0 = j0;
+            this.j1 = j1;
+        }
+
+        @Override
+        public void run() {
+            int rows = columns[0].length;
+            for (int start = 0; start < rows; start += ROW_BLOCK) {
+                int end = Math.min(rows, start + ROW_BLOCK);
+                for (int i = i0; i < i1; i++) {
+                    double[] x = columns[i];
+                    for (int j = Math.max(j0, i); j < j1; j++) {
+                        double[] y = columns[j];
+                        double dot = 0;
+                        for (int r = start; r < end; r++) {
+                            dot += x[r] * y[r];
+                        }
+                        gram[i][j] += dot;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.unit00.exalyze.analysis;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column profiles and the correlation matrix of one dataset, computed once and shared by the
+ * markdown report and the chart data.
+ */
+public class DatasetAnalysis {
+
+    private final int rowCount;
+    private final List<ColumnProfile> profiles;
+    private final Map<String, Map<String, Double>> correlationMatrix;
+
+    public DatasetAnalysis(int rowCount, List<ColumnProfile> profiles, Map<String, Map<String, Double>> correlationMatrix) {
+        this.rowCount = rowCount;
+        this.profiles = profiles;
+        this.correlationMatrix = correlationMatrix;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public List<ColumnProfile> getProfiles() {
+        return profiles;
+    }
+
+    public Map<String, Map<String, Double>> getCorrelationMatrix() {
+        return correlationMatrix;
+    }
+}
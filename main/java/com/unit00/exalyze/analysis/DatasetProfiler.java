@@ -0,0 +1,225 @@
+package com.unit00.exalyze.analysis;
+
+import com.unit00.exalyze.dataset.Column;
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dataset.NumericColumn;
+import com.unit00.exalyze.dataset.StringColumn;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds a {@link ColumnProfile} per column with one walk over the cells: null and blank counts,
+ * numeric/date type votes, distinct values, min/max/sum and squared deviations, and value
+ * frequencies. Median and quartiles are then selected from a copy of the numeric cells, or read
+ * from a KLL sketch for columns above the configured size. Value frequencies go into a
+ * {@link CategorySketch}, which stays exact up to the configured number of distinct values.
+ */
+public class DatasetProfiler {
+
+    private static final long EXCEL_EPOCH_OFFSET = 25569;
+    private static final double MIN_DATE_SERIAL = LocalDate.of(1970, 1, 1).toEpochDay() + EXCEL_EPOCH_OFFSET;
+    private static final double MAX_DATE_SERIAL = LocalDate.of(2100, 1, 1).toEpochDay() + EXCEL_EPOCH_OFFSET;
+
+    private final ParallelRunner runner;
+    private final int sketchThreshold;
+    private final double sketchRankError;
+    private final int categoryThreshold;
+    private final int categoryCapacity;
+
+    public DatasetProfiler() {
+        this(ParallelRunner.sequential(), 0, 0.01, 0, 1024);
+    }
+
+    /**
+     * @param sketchThreshold columns with more numeric values than this use an approximate
+     *                        quantile sketch; 0 keeps median and quartiles exact
+     * @param sketchRankError normalized rank error of that sketch
+     * @param categoryThreshold distinct text values counted exactly per column; 0 counts all exactly
+     * @param categoryCapacity  most frequent values tracked per column beyond that threshold
+     */
+    public DatasetProfiler(ParallelRunner runner, int sketchThreshold, double sketchRankError,
+                           int categoryThreshold, int categoryCapacity) {
+        this.runner = runner;
+        this.sketchThreshold = sketchThreshold;
+        this.sketchRankError = sketchRankError;
+        this.categoryThreshold = categoryThreshold;
+        this.categoryCapacity = categoryCapacity;
+    }
+
+    /** Profiles columns concurrently (within the runner's limits); the result keeps column order. */
+    public List<ColumnProfile> profile(Dataset dataset) {
+        return runner.map(dataset.getColumns(), this::profile);
+    }
+
+    public ColumnProfile profile(Column column) {
+        ColumnProfile profile = new ColumnProfile(column.getName(), column.size());
+        if (column instanceof NumericColumn) {
+            scanNumeric((NumericColumn) column, profile);
+        } else if (column instanceof StringColumn) {
+            scanStrings((StringColumn) column, profile);
+        } else {
+            scanObjects(column, profile);
+        }
+        if ("Numeric".equals(profile.getInferredType())) {
+            summarizeNumeric(profile);
+        } else {
+            // Only numeric columns are correlated or binned, so other columns keep no copy of their cells.
+            profile.numericValues = new double[0];
+        }
+        return profile;
+    }
+
+    private void scanNumeric(NumericColumn column, ColumnProfile profile) {
+        int size = column.size();
+        double[] values = new double[size - column.nullCount()];
+        LongHashSet distinct = new LongHashSet(Math.min(values.length, 1 << 16));
+        NumericAccumulator numeric = new NumericAccumulator(profile);
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (column.isNull(i)) {
+                profile.nullCount++;
+                continue;
+            }
+            double v = column.getDouble(i);
+            values[n++] = v;
+            // Double.equals semantics, as the old distinct() over boxed values had.
+            distinct.add(Double.doubleToLongBits(v));
+            numeric.add(v);
+        }
+        profile.nonNullCount = n;
+        profile.emptyCount = profile.nullCount;
+        profile.distinctCount = distinct.size();
+        profile.numericValues = values;
+        numeric.finish();
+    }
+
+    private void scanStrings(StringColumn column, ColumnProfile profile) {
+        String[] dictionary = column.getDictionary();
+        long[] counts = new long[dictionary.length];
+        for (int i = 0; i < column.size(); i++) {
+            int code = column.getCode(i);
+            if (code < 0) {
+                profile.nullCount++;
+            } else {
+                counts[code]++;
+            }
+        }
+        profile.nonNullCount = column.size() - profile.nullCount;
+        profile.emptyCount = profile.nullCount;
+        CategorySketch categories = new CategorySketch(categoryThreshold, categoryCapacity);
+        for (int code = 0; code < dictionary.length; code++) {
+            if (counts[code] == 0) {
+                continue;
+            }
+            if (dictionary[code].isBlank()) {
+                profile.emptyCount += counts[code];
+            }
+            categories.add(dictionary[code], counts[code]);
+            // The dictionary already knows the exact number of distinct values.
+            profile.distinctCount++;
+        }
+        profile.categories = categories;
+    }
+
+    private void scanObjects(Column column, ColumnProfile profile) {
+        CategorySketch categories = new CategorySketch(categoryThreshold, categoryCapacity);
+        double[] values = new double[16];
+        int n = 0;
+        NumericAccumulator numeric = new NumericAccumulator(profile);
+        for (int i = 0; i < column.size(); i++) {
+            Object value = column.get(i);
+            if (value == null) {
+                profile.nullCount++;
+                profile.emptyCount++;
+                continue;
+            }
+            profile.nonNullCount++;
+            if (value instanceof String && ((String) value).isBlank()) {
+                profile.emptyCount++;
+            }
+            categories.add(value.toString(), 1);
+            if (value instanceof Number) {
+                double v = ((Number) value).doubleValue();
+                if (n == values.length) {
+                    values = Arrays.copyOf(values, n * 2);
+                }
+                values[n++] = v;
+                numeric.add(v);
+            }
+        }
+        profile.distinctCount = categories.getDistinctCount();
+        profile.numericValues = Arrays.copyOf(values, n);
+        numeric.finish();
+        profile.categories = categories;
+    }
+
+    private void summarizeNumeric(ColumnProfile profile) {
+        double[] values = profile.numericValues;
+        Quantiles quantiles;
+        if (sketchThreshold > 0 && values.length > sketchThreshold) {
+            KllSketch sketch = KllSketch.forRankError(sketchRankError);
+            for (double v : values) {
+                sketch.update(v);
+            }
+            quantiles = Quantiles.approximate(sketch);
+        } else {
+            quantiles = Quantiles.exact(values);
+        }
+        profile.median = quantiles.getMedian();
+        profile.q1 = quantiles.getQ1();
+        profile.q3 = quantiles.getQ3();
+        profile.outlierCount = values.length < 4 ? 0 : countOutliers(values, quantiles);
+        profile.histogramBins = profile.histogram(Histogram.DEFAULT_BINS, Binning.FIXED);
+    }
+
+    private int countOutliers(double[] values, Quantiles quantiles) {
+        double iqr = quantiles.getQ3() - quantiles.getQ1();
+        double lowerBound = quantiles.getQ1() - 1.5 * iqr;
+        double upperBound = quantiles.getQ3() + 1.5 * iqr;
+        int outliers = 0;
+        for (double v : values) {
+            if (v < lowerBound || v > upperBound) {
+                outliers++;
+            }
+        }
+        return outliers;
+    }
+
+    /** Numbers in this range are Excel date serials between 1970 and 2100, and vote for a date column. */
+    static boolean isDateLike(double v) {
+        return v >= MIN_DATE_SERIAL && v <= MAX_DATE_SERIAL;
+    }
+
+    /** Running min/max/sum and Welford's squared deviations for one column. */
+    private static final class NumericAccumulator {
+
+        private final ColumnProfile profile;
+        private double mean;
+
+        NumericAccumulator(ColumnProfile profile) {
+            this.profile = profile;
+        }
+
+        void add(double v) {
+            long n = ++profile.numericCount;
+            if (isDateLike(v)) {
+                profile.dateLikeCount++;
+            }
+            if (v < profile.min) profile.min = v;
+            if (v > profile.max) profile.max = v;
+            profile.sum += v;
+            double delta = v - mean;
+            mean += delta / n;
+            profile.sumOfSquaredDeviations += delta * (v - mean);
+        }
+
+        void finish() {
+            if (profile.numericCount == 0) {
+                profile.min = 0.0;
+                profile.max = 0.0;
+            }
+        }
+    }
+}
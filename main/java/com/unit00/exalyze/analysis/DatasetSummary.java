@@ -0,0 +1,377 @@
+package com.unit00.exalyze.analysis;
+
+import com.unit00.exalyze.dataset.Column;
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dataset.MixedColumn;
+import com.unit00.exalyze.dataset.NumericColumn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mergeable analysis state of a dataset that grows by appended rows. It holds a
+ * {@link ColumnSummary} per column, pairwise co-moments of the numeric columns, and the row
+ * fingerprints seen so far. {@link #append(Dataset)} summarizes only the new rows and merges them
+ * in, so the report and chart data of the grown dataset cost time in proportion to the appended
+ * rows rather than the whole dataset. Columns are matched by name. A column that first appears in
+ * an appended batch is null in the earlier rows. Summaries of consecutive blocks of one table,
+ * built independently, combine with {@link #merge(DatasetSummary)}.
+ * <p>
+ * Not thread-safe; callers serialize appends to the same dataset.
+ */
+public class DatasetSummary {
+
+    private static final int BLOCK_ROWS = 4096;
+    private static final int SAMPLE_SIZE = 5;
+
+    private final int sketchK;
+    private final int categoryThreshold;
+    private final int categoryCapacity;
+    private final List<ColumnSummary> columns = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    // Upper triangle, [i][j] with i < j; null until both columns have shared a numeric row.
+    private CoMoments[][] coMoments = new CoMoments[0][0];
+    private int rowCount;
+
+    private final FingerprintSet fingerprints = new FingerprintSet();
+    private long duplicateCount;
+    private final List<Integer> duplicateSamples = new ArrayList<>();
+
+    /**
+     * @param sketchRankError normalized rank error of the per-column quantile sketches, which
+     *                        supply median and outliers
+     * @param categoryThreshold distinct text values counted exactly per column; 0 counts all exactly
+     * @param categoryCapacity  most frequent values tracked per column beyond that threshold
+     */
+    public DatasetSummary(double sketchRankError, int categoryThreshold, int categoryCapacity) {
+        this.sketchK = KllSketch.forRankError(sketchRankError).getK();
+        this.categoryThreshold = categoryThreshold;
+        this.categoryCapacity = categoryCapacity;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /** Column names in the order of the summary, which is also the order of the grown dataset. */
+    public List<String> getColumnNames() {
+        List<String> names = new ArrayList<>(columns.size());
+        for (ColumnSummary column : columns) {
+            names.add(column.getName());
+        }
+        return names;
+    }
+
+    public void append(Dataset batch) {
+        int rows = batch.getRowCount();
+        for (Column column : batch.getColumns()) {
+            if (!positions.containsKey(column.getName())) {
+                addColumn(column.getName());
+            }
+        }
+
+        // Aligned to the summary's columns; null where the batch lacks a column.
+        Column[] aligned = new Column[columns.size()];
+        for (Column column : batch.getColumns()) {
+            aligned[positions.get(column.getName())] = column;
+        }
+        for (int c = 0; c < aligned.length; c++) {
+            if (aligned[c] == null) {
+                columns.get(c).addMissing(rows);
+            } else {
+                columns.get(c).merge(ColumnSummary.of(aligned[c], sketchK, categoryThreshold, categoryCapacity));
+            }
+        }
+        accumulateCoMoments(aligned, rows);
+        detectDuplicates(aligned, rows);
+        rowCount += rows;
+    }
+
+    /**
+     * Folds in the summary of the rows that directly follow this one's, which leaves this summary
+     * as if those rows had been appended. Both must have the same columns in the same order, since
+     * row fingerprints are only comparable over the same columns.
+     */
+    public void merge(DatasetSummary later) {
+        if (!getColumnNames().equals(later.getColumnNames())) {
+            throw new IllegalArgumentException("Only summaries of the same columns can be merged");
+        }
+        for (int c = 0; c < columns.size(); c++) {
+            columns.get(c).merge(later.columns.get(c));
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            for (int j = i + 1; j < columns.size(); j++) {
+                if (later.coMoments[i][j] == null) {
+                    continue;
+                }
+                if (coMoments[i][j] == null) {
+                    coMoments[i][j] = new CoMoments();
+                }
+                coMoments[i][j].merge(later.coMoments[i][j]);
+            }
+        }
+
+        // A row of the later block repeats one of ours when its first occurrence there is already known here.
+        List<Integer> repeatedRows = new ArrayList<>();
+        duplicateCount += later.duplicateCount + fingerprints.addAll(later.fingerprints, rowCount, repeatedRows);
+        if (duplicateSamples.size() < SAMPLE_SIZE) {
+            for (int row : later.duplicateSamples) {
+                repeatedRows.add(rowCount + row);
+            }
+            Collections.sort(repeatedRows);
+            for (int i = 0; i < repeatedRows.size() && duplicateSamples.size() < SAMPLE_SIZE; i++) {
+                duplicateSamples.add(repeatedRows.get(i));
+            }
+        }
+        rowCount += later.rowCount;
+    }
+
+    /**
+     * Profiles and correlation matrix of all rows appended so far. Correlations are pairwise over
+     * the rows in which both columns hold a number.
+     */
+    public DatasetAnalysis toAnalysis() {
+        List<ColumnProfile> profiles = new ArrayList<>(columns.size());
+        for (ColumnSummary column : columns) {
+            profiles.add(column.toProfile());
+        }
+
+        Map<String, Map<String, Double>> correlations = new HashMap<>();
+        for (int i = 0; i < profiles.size(); i++) {
+            if (!"Numeric".equals(profiles.get(i).getInferredType())) {
+                continue;
+            }
+            String a = profiles.get(i).getName();
+            correlations.computeIfAbsent(a, k -> new HashMap<>()).put(a, 1.0);
+            for (int j = i + 1; j < profiles.size(); j++) {
+                CoMoments moments = coMoments[i][j];
+                if (moments == null || moments.n < 2 || !"Numeric".equals(profiles.get(j).getInferredType())) {
+                    continue;
+                }
+                String b = profiles.get(j).getName();
+                double correlation = moments.correlation();
+                correlations.get(a).put(b, correlation);
+                correlations.computeIfAbsent(b, k -> new HashMap<>()).put(a, correlation);
+            }
+        }
+        return new DatasetAnalysis(rowCount, profiles, correlations);
+    }
+
+    /** Repeated rows across everything appended so far; sample rows index into the grown dataset. */
+    public DuplicateSummary getDuplicates() {
+        return new DuplicateSummary(duplicateCount, new ArrayList<>(duplicateSamples), false);
+    }
+
+    private void addColumn(String name) {
+        ColumnSummary column = new ColumnSummary(name, sketchK, categoryThreshold, categoryCapacity);
+        column.addMissing(rowCount);
+        positions.put(name, columns.size());
+        columns.add(column);
+        int k = columns.size();
+        CoMoments[][] grown = new CoMoments[k][];
+        for (int i = 0; i < k; i++) {
+            grown[i] = i < coMoments.length ? Arrays.copyOf(coMoments[i], k) : new CoMoments[k];
+        }
+        coMoments = grown;
+    }
+
+    private void accumulateCoMoments(Column[] aligned, int rows) {
+        List<Integer> numeric = new ArrayList<>();
+        for (int c = 0; c < aligned.length; c++) {
+            if (aligned[c] instanceof NumericColumn || aligned[c] instanceof MixedColumn) {
+                numeric.add(c);
+            }
+        }
+        if (numeric.size() < 2) {
+            return;
+        }
+        // The batch's own co-moments are built first and then merged, like the column summaries.
+        int k = numeric.size();
+        CoMoments[][] batch = new CoMoments[k][k];
+        double[][] block = new double[k][];
+        for (int start = 0; start < rows; start += BLOCK_ROWS) {
+            int end = Math.min(rows, start + BLOCK_ROWS);
+            for (int a = 0; a < k; a++) {
+                block[a] = numbers(aligned[numeric.get(a)], start, end);
+            }
+            for (int a = 0; a < k; a++) {
+                for (int b = a + 1; b < k; b++) {
+                    double[] x = block[a];
+                    double[] y = block[b];
+                    for (int r = 0; r < x.length; r++) {
+                        if (!Double.isNaN(x[r]) && !Double.isNaN(y[r])) {
+                            if (batch[a][b] == null) {
+                                batch[a][b] = new CoMoments();
+                            }
+                            batch[a][b].add(x[r], y[r]);
+                        }
+                    }
+                }
+            }
+        }
+        for (int a = 0; a < k; a++) {
+            for (int b = a + 1; b < k; b++) {
+                if (batch[a][b] == null) {
+                    continue;
+                }
+                int i = numeric.get(a);
+                int j = numeric.get(b);
+                if (coMoments[i][j] == null) {
+                    coMoments[i][j] = new CoMoments();
+                }
+                coMoments[i][j].merge(batch[a][b]);
+            }
+        }
+    }
+
+    /** Numeric cells of a row range, NaN where the cell is null or not a number. */
+    private static double[] numbers(Column column, int start, int end) {
+        double[] values = new double[end - start];
+        if (column instanceof NumericColumn) {
+            NumericColumn numeric = (NumericColumn) column;
+            for (int r = start; r < end; r++) {
+                values[r - start] = numeric.isNull(r) ? Double.NaN : numeric.getDouble(r);
+            }
+        } else {
+            for (int r = start; r < end; r++) {
+                Object value = column.get(r);
+                values[r - start] = value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+            }
+        }
+        return values;
+    }
+
+    private void detectDuplicates(Column[] aligned, int rows) {
+        long[] hash1 = new long[Math.min(BLOCK_ROWS, Math.max(rows, 1))];
+        long[] hash2 = new long[hash1.length];
+        for (int start = 0; start < rows; start += BLOCK_ROWS) {
+            int end = Math.min(rows, start + BLOCK_ROWS);
+            DuplicateDetector.contentFingerprint(aligned, start, end, hash1, hash2);
+            for (int r = start; r < end; r++) {
+                if (!fingerprints.add(hash1[r - start], hash2[r - start], rowCount + r)) {
+                    duplicateCount++;
+                    if (duplicateSamples.size() < SAMPLE_SIZE) {
+                        duplicateSamples.add(rowCount + r);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Co-moments of two columns over the rows where both are numeric, mergeable like Welford's. */
+    private static final class CoMoments {
+
+        private long n;
+        private double meanX;
+        private double meanY;
+        private double m2X;
+        private double m2Y;
+        private double cXY;
+
+        void add(double x, double y) {
+            n++;
+            double dx = x - meanX;
+            meanX += dx / n;
+            double dy = y - meanY;
+            meanY += dy / n;
+            m2X += dx * (x - meanX);
+            m2Y += dy * (y - meanY);
+            cXY += dx * (y - meanY);
+        }
+
+        void merge(CoMoments other) {
+            long total = n + other.n;
+            double dx = other.meanX - meanX;
+            double dy = other.meanY - meanY;
+            double weight = (double) n * other.n / total;
+            m2X += other.m2X + dx * dx * weight;
+            m2Y += other.m2Y + dy * dy * weight;
+            cXY += other.cXY + dx * dy * weight;
+            meanX += dx * other.n / total;
+            meanY += dy * other.n / total;
+            n = total;
+        }
+
+        double correlation() {
+            double denominator = m2X * m2Y;
+            return denominator == 0 ? 0 : cXY / Math.sqrt(denominator);
+        }
+    }
+
+    /**
+     * Open-addressing set of 128-bit row fingerprints, each with the row it was first seen in.
+     * Unlike the one-off detector there are no source rows to confirm a match against, so equal
+     * fingerprints count as equal rows.
+     */
+    private static final class FingerprintSet {
+
+        private long[] hash1 = new long[1024];
+        private long[] hash2 = new long[1024];
+        private int[] rows = new int[1024];
+        private boolean[] used = new boolean[1024];
+        private int size;
+
+        /** Returns true if the fingerprint was not already present. */
+        boolean add(long h1, long h2, int row) {
+            int mask = used.length - 1;
+            int i = (int) h1 & mask;
+            while (used[i]) {
+                if (hash1[i] == h1 && hash2[i] == h2) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            used[i] = true;
+            hash1[i] = h1;
+            hash2[i] = h2;
+            rows[i] = row;
+            if (++size * 2 > used.length) {
+                grow();
+            }
+            return true;
+        }
+
+        /**
+         * Adds the fingerprints of a later block whose rows start at {@code offset}. Returns how many
+         * were already present and collects the rows they first appeared in within that block.
+         */
+        long addAll(FingerprintSet later, int offset, List<Integer> repeatedRows) {
+            long repeated = 0;
+            for (int j = 0; j < later.used.length; j++) {
+                if (later.used[j] && !add(later.hash1[j], later.hash2[j], offset + later.rows[j])) {
+                    repeated++;
+                    repeatedRows.add(offset + later.rows[j]);
+                }
+            }
+            return repeated;
+        }
+
+        private void grow() {
+            long[] old1 = hash1;
+            long[] old2 = hash2;
+            int[] oldRows = rows;
+            boolean[] oldUsed = used;
+            hash1 = new long[old1.length * 2];
+            hash2 = new long[old2.length * 2];
+            rows = new int[oldRows.length * 2];
+            used = new boolean[oldUsed.length * 2];
+            int mask = used.length - 1;
+            for (int j = 0; j < oldUsed.length; j++) {
+                if (oldUsed[j]) {
+                    int i = (int) old1[j] & mask;
+                    while (used[i]) {
+                        i = (i + 1) & mask;
+                    }
+                    used[i] = true;
+                    hash1[i] = old1[j];
+                    hash2[i] = old2[j];
+                    rows[i] = oldRows[j];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.unit00.exalyze.analysis;
+
+import com.unit00.exalyze.dataset.BooleanColumn;
+import com.unit00.exalyze.dataset.Column;
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dataset.DateColumn;
+import com.unit00.exalyze.dataset.NumericColumn;
+import com.unit00.exalyze.dataset.StringColumn;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Counts rows that repeat an earlier row, with the same equality the row maps had: every cell
+ * equal, doubles compared like {@link Double#equals}. Each row is reduced to a 128-bit fingerprint
+ * computed column by column over blocks of rows. In exact mode fingerprints go into an
+ * open-addressing table and a match is confirmed against the source rows before it counts. Above
+ * the approximate threshold a Bloom filter of bounded size is used instead.
+ */
+public class DuplicateDetector {
+
+    private static final int BLOCK_ROWS = 4096;
+    private static final int SAMPLE_SIZE = 5;
+
+    private static final long SEED_1 = 0x243F6A8885A308D3L;
+    private static final long SEED_2 = 0x13198A2E03707344L;
+    private static final long NULL_KEY = 0x6A09E667F3BCC909L;
+
+    private final int approximateThreshold;
+    private final long bloomMaxBytes;
+
+    public DuplicateDetector() {
+        this(0, 0);
+    }
+
+    /**
+     * @param approximateThreshold datasets with more rows than this use the Bloom filter; 0 keeps
+     *                             detection exact
+     * @param bloomMaxBytes        size cap of the Bloom filter's bit array
+     */
+    public DuplicateDetector(int approximateThreshold, long bloomMaxBytes) {
+        this.approximateThreshold = approximateThreshold;
+        this.bloomMaxBytes = bloomMaxBytes;
+    }
+
+    public DuplicateSummary detect(Dataset dataset) {
+        int rowCount = dataset.getRowCount();
+        boolean approximate = approximateThreshold > 0 && rowCount > approximateThreshold;
+        List<Column> columns = dataset.getColumns();
+        FingerprintTable table = approximate ? null : new FingerprintTable(columns, rowCount);
+        BloomFilter bloom = approximate ? new BloomFilter(rowCount, bloomMaxBytes) : null;
+
+        long duplicates = 0;
+        List<Integer> samples = new ArrayList<>();
+        long[] hash1 = new long[Math.min(BLOCK_ROWS, rowCount)];
+        long[] hash2 = new long[hash1.length];
+        for (int start = 0; start < rowCount; start += BLOCK_ROWS) {
+            int end = Math.min(rowCount, start + BLOCK_ROWS);
+            fingerprint(columns, start, end, hash1, hash2);
+            for (int row = start; row < end; row++) {
+                long h1 = hash1[row - start];
+                long h2 = hash2[row - start];
+                boolean seen = approximate ? bloom.put(h1, h2) : !table.add(h1, h2, row);
+                if (seen) {
+                    duplicates++;
+                    if (samples.size() < SAMPLE_SIZE) {
+                        samples.add(row);
+                    }
+                }
+            }
+        }
+        return new DuplicateSummary(duplicates, samples, approximate);
+    }
+
+    private static void fingerprint(List<Column> columns, int start, int end, long[] hash1, long[] hash2) {
+        int n = end - start;
+        for (int i = 0; i < n; i++) {
+            hash1[i] = SEED_1;
+            hash2[i] = SEED_2;
+        }
+        for (Column column : columns) {
+            if (column instanceof NumericColumn) {
+                NumericColumn numeric = (NumericColumn) column;
+                for (int i = 0; i < n; i++) {
+                    int row = start + i;
+                    mix(hash1, hash2, i, numeric.isNull(row) ? NULL_KEY : Double.doubleToLongBits(numeric.getDouble(row)));
+                }
+            } else if (column instanceof StringColumn) {
+                StringColumn strings = (StringColumn) column;
+                for (int i = 0; i < n; i++) {
+                    int code = strings.getCode(start + i);
+                    mix(hash1, hash2, i, code < 0 ? NULL_KEY : code);
+                }
+            } else if (column instanceof DateColumn) {
+                DateColumn dates = (DateColumn) column;
+                for (int i = 0; i < n; i++) {
+                    int row = start + i;
+                    mix(hash1, hash2, i, dates.isNull(row) ? NULL_KEY : dates.getMillis(row));
+                }
+            } else if (column instanceof BooleanColumn) {
+                BooleanColumn booleans = (BooleanColumn) column;
+                for (int i = 0; i < n; i++) {
+                    int row = start + i;
+                    mix(hash1, hash2, i, booleans.isNull(row) ? NULL_KEY : booleans.getBoolean(row) ? 1 : 0);
+                }
+            } else {
+                for (int i = 0; i < n; i++) {
+                    mix(hash1, hash2, i, objectKey(column.get(start + i)));
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            hash1[i] = fmix(hash1[i]);
+            hash2[i] = fmix(hash2[i]);
+        }
+    }
+
+    /**
+     * Fingerprints rows by cell content alone, so rows of different datasets (whose string
+     * dictionaries differ) can be compared. A null entry in {@code columns} stands for a column
+     * the dataset does not have, and hashes like a null cell.
+     */
+    static void contentFingerprint(Column[] columns, int start, int end, long[] hash1, long[] hash2) {
+        int n = end - start;
+        for (int i = 0; i < n; i++) {
+            hash1[i] = SEED_1;
+            hash2[i] = SEED_2;
+        }
+        for (Column column : columns) {
+            if (column == null) {
+                for (int i = 0; i < n; i++) {
+                    mix(hash1, hash2, i, NULL_KEY);
+                }
+            } else if (column instanceof NumericColumn) {
+                NumericColumn numeric = (NumericColumn) column;
+                for (int i = 0; i < n; i++) {
+                    int row = start + i;
+                    mix(hash1, hash2, i, numeric.isNull(row) ? NULL_KEY : Double.doubleToLongBits(numeric.getDouble(row)));
+                }
+            } else if (column instanceof StringColumn) {
+                StringColumn strings = (StringColumn) column;
+                String[] dictionary = strings.getDictionary();
+                long[] keys = new long[dictionary.length];
+                for (int code = 0; code < dictionary.length; code++) {
+                    keys[code] = stringKey(dictionary[code]);
+                }
+                for (int i = 0; i < n; i++) {
+                    int code = strings.getCode(start + i);
+                    mix(hash1, hash2, i, code < 0 ? NULL_KEY : keys[code]);
+                }
+            } else {
+                // Boxed cells hash the same way whichever column type holds them.
+                for (int i = 0; i < n; i++) {
+                    mix(hash1, hash2, i, objectKey(column.get(start + i)));
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            hash1[i] = fmix(hash1[i]);
+            hash2[i] = fmix(hash2[i]);
+        }
+    }
+
+    private static void mix(long[] hash1, long[] hash2, int i, long key) {
+        hash1[i] = (hash1[i] ^ fmix(key)) * 0x9E3779B97F4A7C15L;
+        hash2[i] = Long.rotateLeft(hash2[i] ^ (key * 0xC2B2AE3D27D4EB4FL), 31) * 0x165667B19E3779F9L;
+    }
+
+    private static long objectKey(Object value) {
+        if (value == null) {
+            return NULL_KEY;
+        }
+        if (value instanceof Double) {
+            return Double.doubleToLongBits((Double) value);
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime() ^ 0x5851F42D4C957F2DL;
+        }
+        if (value instanceof String) {
+            return stringKey((String) value);
+        }
+        return value.hashCode();
+    }
+
+    /** FNV-1a over the UTF-16 chars; the callers mix the result further. */
+    static long stringKey(String s) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    private static long fmix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Open-addressing table of fingerprints and the first row that produced each. It is sized for
+     * the whole dataset up front, so it never rehashes.
+     */
+    static final class FingerprintTable {
+
+        private final List<Column> columns;
+        private final long[] hash1;
+        private final long[] hash2;
+        private final int[] rows;
+        private final int mask;
+
+        FingerprintTable(List<Column> columns, int expected) {
+            this.columns = columns;
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+            hash1 = new long[capacity];
+            hash2 = new long[capacity];
+            rows = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        /** Returns true if no earlier row is equal to this one. */
+        boolean add(long h1, long h2, int row) {
+            int i = (int) h1 & mask;
+            while (rows[i] != 0) {
+                // Rows are stored off by one so that 0 marks an empty slot.
+                if (hash1[i] == h1 && hash2[i] == h2 && rowsEqual(rows[i] - 1, row)) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            hash1[i] = h1;
+            hash2[i] = h2;
+            rows[i] = row + 1;
+            return true;
+        }
+
+        private boolean rowsEqual(int a, int b) {
+            for (Column column : columns) {
+                if (column instanceof NumericColumn) {
+                    NumericColumn numeric = (NumericColumn) column;
+                    boolean nullA = numeric.isNull(a);
+                    if (nullA != numeric.isNull(b)) {
+                        return false;
+                    }
+                    if (!nullA && Double.doubleToLongBits(numeric.getDouble(a)) != Double.doubleToLongBits(numeric.getDouble(b))) {
+                        return false;
+                    }
+                } else if (column instanceof StringColumn) {
+                    StringColumn strings = (StringColumn) column;
+                    if (strings.getCode(a) != strings.getCode(b)) {
+                        return false;
+                    }
+                } else if (!Objects.equals(column.get(a), column.get(b))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
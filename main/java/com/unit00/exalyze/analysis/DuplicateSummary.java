@@ -0,0 +1,33 @@
+package com.unit00.exalyze.analysis;
+
+import java.util.List;
+
+/**
+ * Result of duplicate-row detection: how many rows repeat an earlier row, and the indices of the
+ * first few of them for the report's examples.
+ */
+public class DuplicateSummary {
+
+    private final long duplicateCount;
+    private final List<Integer> sampleRows;
+    private final boolean approximate;
+
+    public DuplicateSummary(long duplicateCount, List<Integer> sampleRows, boolean approximate) {
+        this.duplicateCount = duplicateCount;
+        this.sampleRows = sampleRows;
+        this.approximate = approximate;
+    }
+
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public List<Integer> getSampleRows() {
+        return sampleRows;
+    }
+
+    /** True when the count came from a Bloom filter and may include a few false positives. */
+    public boolean isApproximate() {
+        return approximate;
+    }
+}
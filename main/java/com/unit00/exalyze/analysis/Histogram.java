@@ -0,0 +1,109 @@
+package com.unit00.exalyze.analysis;
+
+import com.unit00.exalyze.Bin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts numbers in equal-width bins on a linear or log scale. Counting works on primitive values
+ * without sorting or boxing; the bins it hands out carry their edges and are only labelled when
+ * the chart data is serialized. Histograms over the same edges merge by adding their counts.
+ */
+public class Histogram {
+
+    public static final int DEFAULT_BINS = 10;
+    public static final int MAX_BINS = 200;
+
+    private final double lower;
+    private final double upper;
+    private final boolean log;
+    // Start and bin width on the histogram's own scale, i.e. of ln(value) for a log histogram.
+    private final double start;
+    private final double binSize;
+    private final long[] counts;
+
+    private Histogram(double lower, double upper, int bins, boolean log) {
+        this.lower = lower;
+        this.upper = upper;
+        this.log = log;
+        this.start = log ? Math.log(lower) : lower;
+        this.binSize = ((log ? Math.log(upper) : upper) - start) / bins;
+        this.counts = new long[bins];
+    }
+
+    /**
+     * An empty histogram for values in {@code [min, max]}. The quartiles and value count are only
+     * used by {@link Binning#FREEDMAN_DIACONIS}; a bin count outside 1..{@link #MAX_BINS} is clamped.
+     */
+    public static Histogram create(Binning binning, int bins, double min, double max, double q1, double q3, long n) {
+        int count = Math.max(1, Math.min(MAX_BINS, bins));
+        if (!(max > min)) {
+            return new Histogram(min, min, 1, false);
+        }
+        if (binning == Binning.LOG && min > 0) {
+            return new Histogram(min, max, count, true);
+        }
+        if (binning == Binning.FREEDMAN_DIACONIS) {
+            double width = 2 * (q3 - q1) / Math.cbrt(n);
+            if (width > 0) {
+                count = (int) Math.max(1, Math.min(MAX_BINS, Math.ceil((max - min) / width)));
+            }
+        }
+        return new Histogram(min, max, count, false);
+    }
+
+    public boolean isLog() {
+        return log;
+    }
+
+    public void add(double value) {
+        if (!log || value > 0) {
+            addScaled(log ? Math.log(value) : value, 1);
+        }
+    }
+
+    public void addAll(double[] values) {
+        for (double value : values) {
+            add(value);
+        }
+    }
+
+    /** Counts a position given on the histogram's own scale; positions beyond the edges go to the outer bins. */
+    void addScaled(double position, long count) {
+        if (Double.isNaN(position)) {
+            return;
+        }
+        if (binSize == 0) {
+            counts[0] += count;
+            return;
+        }
+        int i = (int) Math.min(Math.floor((position - start) / binSize), counts.length - 1);
+        counts[Math.max(0, i)] += count;
+    }
+
+    public void merge(Histogram other) {
+        if (other.lower != lower || other.upper != upper || other.log != log || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Only histograms over the same bins can be merged");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+    }
+
+    public List<Bin> toBins() {
+        List<Bin> bins = new ArrayList<>(counts.length);
+        if (binSize == 0) {
+            bins.add(new Bin(lower, lower, counts[0]));
+            return bins;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            bins.add(new Bin(edge(i), edge(i + 1), counts[i]));
+        }
+        return bins;
+    }
+
+    private double edge(int i) {
+        return log ? Math.exp(start + i * binSize) : start + i * binSize;
+    }
+}
@@ -0,0 +1,189 @@
+package com.unit00.exalyze.analysis;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * KLL quantile sketch (Karnin, Lang, Liberty). Keeps O(k log(n/k)) values; quantile queries are
+ * within roughly 2.7/k of the true rank. Level h holds values that each stand for 2^h inputs;
+ * a full level is sorted and every other value is promoted. Sketches of the same k can be merged.
+ */
+public class KllSketch {
+
+    private static final double DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 2;
+
+    private final int k;
+    private final SplittableRandom random;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public KllSketch(int k) {
+        this.k = Math.max(8, k);
+        // Fixed seed keeps reports reproducible for the same input.
+        this.random = new SplittableRandom(0x5DEECE66DL);
+        this.levels[0] = new double[this.k];
+    }
+
+    /** Sketch sized for the given normalized rank error, e.g. 0.01 for about 1%. */
+    public static KllSketch forRankError(double rankError) {
+        return new KllSketch((int) Math.ceil(2.7 / rankError));
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void update(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (value < min) min = value;
+        if (value > max) max = value;
+        append(0, value);
+        count++;
+        compressWhileFull();
+    }
+
+    public void merge(KllSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compressWhileFull();
+    }
+
+    /** Value at normalized rank q in [0, 1]. */
+    public double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0) return min;
+        if (q >= 1) return max;
+        int retained = 0;
+        for (int size : sizes) {
+            retained += size;
+        }
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int n = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[n] = levels[h][i];
+                weights[n++] = 1L << h;
+            }
+        }
+        Integer[] order = new Integer[retained];
+        for (int i = 0; i < retained; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        long total = 0;
+        for (long w : weights) {
+            total += w;
+        }
+        double target = q * total;
+        long cumulative = 0;
+        for (int index : order) {
+            cumulative += weights[index];
+            if (cumulative >= target) {
+                return values[index];
+            }
+        }
+        return max;
+    }
+
+    /** Estimated fraction of inputs less than or equal to {@code value}. */
+    public double rank(double value) {
+        if (count == 0) {
+            return 0.0;
+        }
+        long below = 0;
+        long total = 0;
+        for (int h = 0; h < levels.length; h++) {
+            long weight = 1L << h;
+            for (int i = 0; i < sizes[h]; i++) {
+                total += weight;
+                if (levels[h][i] <= value) {
+                    below += weight;
+                }
+            }
+        }
+        return (double) below / total;
+    }
+
+    private int capacity(int level) {
+        int depth = levels.length - 1 - level;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(DECAY, depth)));
+    }
+
+    private void append(int level, double value) {
+        while (level >= levels.length) {
+            levels = Arrays.copyOf(levels, levels.length + 1);
+            sizes = Arrays.copyOf(sizes, sizes.length + 1);
+            levels[levels.length - 1] = new double[MIN_CAPACITY];
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(MIN_CAPACITY, levels[level].length * 2));
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    private void compressWhileFull() {
+        boolean compacted = true;
+        while (compacted) {
+            compacted = false;
+            for (int h = 0; h < levels.length; h++) {
+                if (sizes[h] >= capacity(h)) {
+                    compact(h);
+                    compacted = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Sorts level h and promotes every other value (random offset) to level h + 1. */
+    private void compact(int h) {
+        int size = sizes[h];
+        double[] level = levels[h];
+        Arrays.sort(level, 0, size);
+        // An odd value out stays behind so no weight is lost.
+        int pairs = size / 2;
+        double leftover = size % 2 == 1 ? level[size - 1] : Double.NaN;
+        int offset = random.nextBoolean() ? 1 : 0;
+        double[] promoted = new double[pairs];
+        for (int i = 0; i < pairs; i++) {
+            promoted[i] = level[2 * i + offset];
+        }
+        sizes[h] = 0;
+        if (size % 2 == 1) {
+            level[sizes[h]++] = leftover;
+        }
+        for (double value : promoted) {
+            append(h + 1, value);
+        }
+    }
+}
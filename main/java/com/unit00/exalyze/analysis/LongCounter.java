@@ -0,0 +1,83 @@
+package com.unit00.exalyze.analysis;
+
+/**
+ * Open-addressing map from primitive longs to how often each was added; the counting sibling of
+ * {@link LongHashSet}.
+ */
+class LongCounter {
+
+    private static final long EMPTY = 0L;
+
+    /** Receives one distinct value and its count. */
+    interface Entry {
+        void accept(long value, long count);
+    }
+
+    private long[] keys = new long[16];
+    private long[] counts = new long[16];
+    private long zeroCount;
+    private int size;
+    private int mask = 15;
+
+    void add(long value, long count) {
+        if (value == EMPTY) {
+            if (zeroCount == 0) {
+                size++;
+            }
+            zeroCount += count;
+            return;
+        }
+        int i = LongHashSet.mix(value) & mask;
+        while (keys[i] != EMPTY) {
+            if (keys[i] == value) {
+                counts[i] += count;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = value;
+        counts[i] = count;
+        size++;
+        if (size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    /** Number of distinct values. */
+    int size() {
+        return size;
+    }
+
+    void addAll(LongCounter other) {
+        other.forEach(this::add);
+    }
+
+    void forEach(Entry action) {
+        if (zeroCount > 0) {
+            action.accept(EMPTY, zeroCount);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                action.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new long[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != EMPTY) {
+                int i = LongHashSet.mix(oldKeys[j]) & mask;
+                while (keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                counts[i] = oldCounts[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.unit00.exalyze.analysis;
+
+/**
+ * Open-addressing set of primitive longs, used to count distinct numeric cells without boxing
+ * every value into a HashSet.
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = 0L;
+
+    private long[] slots;
+    private boolean containsZero;
+    private int size;
+    private int mask;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    public LongHashSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        slots = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /** Returns true if the value was not already present. */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int i = mix(value) & mask;
+        while (slots[i] != EMPTY) {
+            if (slots[i] == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        slots[i] = value;
+        size++;
+        if (size * 2 > slots.length) {
+            grow();
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void addAll(LongHashSet other) {
+        if (other.containsZero) {
+            add(EMPTY);
+        }
+        for (long value : other.slots) {
+            if (value != EMPTY) {
+                add(value);
+            }
+        }
+    }
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        mask = slots.length - 1;
+        for (long value : old) {
+            if (value != EMPTY) {
+                int i = mix(value) & mask;
+                while (slots[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = value;
+            }
+        }
+    }
+
+    static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,84 @@
+package com.unit00.exalyze.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Spreads independent per-column work over a shared pool while capping how many workers a
+ * single request may occupy. The calling thread always works too, so a request still makes
+ * progress when every pool thread is busy with other uploads. Results keep input order. When a
+ * task fails, no further items are started and the failure is thrown once every worker stopped.
+ */
+public class ParallelRunner {
+
+    private final ForkJoinPool pool;
+    private final int maxParallelism;
+
+    public ParallelRunner(ForkJoinPool pool, int maxParallelism) {
+        this.pool = pool;
+        this.maxParallelism = Math.max(1, maxParallelism);
+    }
+
+    public static ParallelRunner sequential() {
+        return new ParallelRunner(null, 1);
+    }
+
+    public <T, R> List<R> map(List<T> items, Function<? super T, ? extends R> task) {
+        int size = items.size();
+        Object[] results = new Object[size];
+        int workers = pool == null ? 1 : Math.min(maxParallelism, size);
+        if (workers <= 1) {
+            for (int i = 0; i < size; i++) {
+                results[i] = task.apply(items.get(i));
+            }
+        } else {
+            AtomicInteger next = new AtomicInteger();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Runnable worker = () -> {
+                try {
+                    for (int i = next.getAndIncrement(); i < size; i = next.getAndIncrement()) {
+                        results[i] = task.apply(items.get(i));
+                    }
+                } catch (RuntimeException | Error e) {
+                    // No worker claims another item once one has failed.
+                    next.set(size);
+                    if (!failure.compareAndSet(null, e) && failure.get() != e) {
+                        failure.get().addSuppressed(e);
+                    }
+                }
+            };
+            List<ForkJoinTask<?>> helpers = new ArrayList<>(workers - 1);
+            for (int i = 1; i < workers; i++) {
+                helpers.add(pool.submit(worker));
+            }
+            worker.run();
+            // Helpers are always waited for, so none is still running when the caller sees a failure.
+            for (ForkJoinTask<?> helper : helpers) {
+                helper.join();
+            }
+            Throwable failed = failure.get();
+            if (failed instanceof RuntimeException) {
+                throw (RuntimeException) failed;
+            }
+            if (failed instanceof Error) {
+                throw (Error) failed;
+            }
+        }
+        @SuppressWarnings("unchecked")
+        List<R> list = (List<R>) Arrays.asList(results);
+        return list;
+    }
+
+    public void run(List<? extends Runnable> tasks) {
+        map(tasks, task -> {
+            task.run();
+            return null;
+        });
+    }
+}
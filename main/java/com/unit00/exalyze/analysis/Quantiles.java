@@ -0,0 +1,139 @@
+package com.unit00.exalyze.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Median and quartiles over primitive arrays. The exact path picks only the order statistics the
+ * report needs with introselect instead of sorting the column; the approximate path reads them
+ * from a {@link KllSketch}.
+ */
+public final class Quantiles {
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final double median;
+    private final double q1;
+    private final double q3;
+
+    private Quantiles(double median, double q1, double q3) {
+        this.median = median;
+        this.q1 = q1;
+        this.q3 = q3;
+    }
+
+    public double getMedian() {
+        return median;
+    }
+
+    public double getQ1() {
+        return q1;
+    }
+
+    public double getQ3() {
+        return q3;
+    }
+
+    /**
+     * Exact median and quartiles, using the same positions the report has always used: the
+     * quartiles are the medians of the lower and upper halves. At n = 2 and n = 4 those positions
+     * run past the ends, where the report used to fail; they are clamped to the first or last value.
+     * Does not modify {@code values}.
+     */
+    public static Quantiles exact(double[] values) {
+        int n = values.length;
+        if (n == 0) {
+            return new Quantiles(0.0, 0.0, 0.0);
+        }
+        int mid = n / 2;
+        boolean odd = n % 2 == 1;
+        int q1Index = odd ? mid / 2 : Math.max(mid / 2 - 1, 0);
+        int q3Index = Math.min(mid + mid / 2, n - 1);
+        int q3Upper = Math.min(mid + mid / 2 + 1, n - 1);
+        int[] ranks = odd
+                ? new int[]{q1Index, mid, q3Index}
+                : new int[]{q1Index, Math.min(mid / 2, n - 1), mid - 1, mid, q3Index, q3Upper};
+        double[] picked = select(values.clone(), ranks);
+
+        if (odd) {
+            return new Quantiles(picked[1], picked[0], picked[2]);
+        }
+        return new Quantiles((picked[2] + picked[3]) / 2.0, (picked[0] + picked[1]) / 2.0, (picked[4] + picked[5]) / 2.0);
+    }
+
+    public static Quantiles approximate(KllSketch sketch) {
+        if (sketch.getCount() == 0) {
+            return new Quantiles(0.0, 0.0, 0.0);
+        }
+        return new Quantiles(sketch.quantile(0.5), sketch.quantile(0.25), sketch.quantile(0.75));
+    }
+
+    /**
+     * Values at the given ranks (positions in sorted order), in the order the ranks were given.
+     * Partially reorders {@code work}.
+     */
+    static double[] select(double[] work, int[] ranks) {
+        int[] order = ranks.clone();
+        Arrays.sort(order);
+        int lo = 0;
+        for (int rank : order) {
+            if (rank >= lo) {
+                introselect(work, lo, work.length - 1, rank);
+                lo = rank + 1;
+            }
+            // Ranks below lo are already in their final position from an earlier selection.
+        }
+        double[] result = new double[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            result[i] = work[ranks[i]];
+        }
+        return result;
+    }
+
+    /** Moves the k-th smallest element of a[lo..hi] to index k; falls back to sorting on bad pivots. */
+    private static void introselect(double[] a, int lo, int hi, int k) {
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(hi - lo + 1));
+        while (hi - lo > INSERTION_SORT_THRESHOLD) {
+            if (depthLimit-- == 0) {
+                Arrays.sort(a, lo, hi + 1);
+                return;
+            }
+            int p = partition(a, lo, hi, medianOfThree(a, lo, lo + (hi - lo) / 2, hi));
+            if (k == p) {
+                return;
+            } else if (k < p) {
+                hi = p - 1;
+            } else {
+                lo = p + 1;
+            }
+        }
+        Arrays.sort(a, lo, hi + 1);
+    }
+
+    private static int medianOfThree(double[] a, int i, int j, int k) {
+        if (Double.compare(a[i], a[j]) < 0) {
+            if (Double.compare(a[j], a[k]) < 0) return j;
+            return Double.compare(a[i], a[k]) < 0 ? k : i;
+        }
+        if (Double.compare(a[i], a[k]) < 0) return i;
+        return Double.compare(a[j], a[k]) < 0 ? k : j;
+    }
+
+    private static int partition(double[] a, int lo, int hi, int pivotIndex) {
+        double pivot = a[pivotIndex];
+        swap(a, pivotIndex, hi);
+        int store = lo;
+        for (int i = lo; i < hi; i++) {
+            if (Double.compare(a[i], pivot) < 0) {
+                swap(a, store++, i);
+            }
+        }
+        swap(a, store, hi);
+        return store;
+    }
+
+    private static void swap(double[] a, int i, int j) {
+        double t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+}
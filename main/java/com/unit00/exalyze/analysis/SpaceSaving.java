@@ -0,0 +1,161 @@
+package com.unit00.exalyze.analysis;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy hitters (Metwally et al.) with weighted updates. At most {@code capacity}
+ * values are monitored in a min-heap by count; a new value replaces the smallest one and inherits
+ * its count as error. A monitored count overestimates the true count by at most its error, and an
+ * unmonitored value occurred at most {@link #minCount()} times. Summaries merge by adding counts,
+ * using the other summary's minimum for values it does not monitor.
+ */
+class SpaceSaving {
+
+    private final int capacity;
+    private final String[] values;
+    private final long[] counts;
+    private final long[] errors;
+    private final Map<String, Integer> positions = new HashMap<>();
+    private int size;
+
+    SpaceSaving(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.values = new String[this.capacity];
+        this.counts = new long[this.capacity];
+        this.errors = new long[this.capacity];
+    }
+
+    /** A summary of exactly counted values: the largest {@code capacity} counts, with no error. */
+    static SpaceSaving ofExact(Map<String, Long> exactCounts, int capacity) {
+        SpaceSaving summary = new SpaceSaving(capacity);
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(exactCounts.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        for (int i = 0; i < entries.size() && i < summary.capacity; i++) {
+            summary.add(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+        return summary;
+    }
+
+    void add(String value, long weight) {
+        Integer position = positions.get(value);
+        if (position != null) {
+            counts[position] += weight;
+            siftDown(position);
+        } else if (size < capacity) {
+            set(size, value, weight, 0);
+            siftUp(size++);
+        } else {
+            long min = counts[0];
+            positions.remove(values[0]);
+            set(0, value, min + weight, min);
+            siftDown(0);
+        }
+    }
+
+    /** Upper bound on the count of any value that is not monitored. */
+    long minCount() {
+        return size < capacity ? 0 : counts[0];
+    }
+
+    void merge(SpaceSaving other) {
+        Map<String, long[]> combined = new HashMap<>();
+        long otherMin = other.minCount();
+        for (int i = 0; i < size; i++) {
+            Integer there = other.positions.get(values[i]);
+            combined.put(values[i], there == null
+                    ? new long[]{counts[i] + otherMin, errors[i] + otherMin}
+                    : new long[]{counts[i] + other.counts[there], errors[i] + other.errors[there]});
+        }
+        long ownMin = minCount();
+        for (int i = 0; i < other.size; i++) {
+            if (!positions.containsKey(other.values[i])) {
+                combined.put(other.values[i], new long[]{other.counts[i] + ownMin, other.errors[i] + ownMin});
+            }
+        }
+
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(combined.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, long[]> e) -> e.getValue()[0]).reversed());
+        positions.clear();
+        size = 0;
+        for (int i = 0; i < entries.size() && i < capacity; i++) {
+            set(size, entries.get(i).getKey(), entries.get(i).getValue()[0], entries.get(i).getValue()[1]);
+            siftUp(size++);
+        }
+    }
+
+    /** The {@code n} largest estimated counts, largest first. */
+    List<Map.Entry<String, Long>> top(int n) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(values[i], counts[i]));
+        }
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return entries.size() > n ? entries.subList(0, n) : entries;
+    }
+
+    SpaceSaving copy() {
+        SpaceSaving copy = new SpaceSaving(capacity);
+        System.arraycopy(values, 0, copy.values, 0, size);
+        System.arraycopy(counts, 0, copy.counts, 0, size);
+        System.arraycopy(errors, 0, copy.errors, 0, size);
+        copy.positions.putAll(positions);
+        copy.size = size;
+        return copy;
+    }
+
+    private void set(int i, String value, long count, long error) {
+        values[i] = value;
+        counts[i] = count;
+        errors[i] = error;
+        positions.put(value, i);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (counts[parent] <= counts[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String value = values[a];
+        long count = counts[a];
+        long error = errors[a];
+        values[a] = values[b];
+        counts[a] = counts[b];
+        errors[a] = errors[b];
+        values[b] = value;
+        counts[b] = count;
+        errors[b] = error;
+        positions.put(values[a], a);
+        positions.put(values[b], b);
+    }
+}
@@ -0,0 +1,171 @@
+package com.unit00.exalyze.analysis;
+
+/**
+ * Histogram of a stream of numbers whose range is not known up front. Values are counted in at
+ * most 1024 buckets whose width is a power of two and whose edges are multiples of that width,
+ * once on a linear scale and once on a log scale for the positive values. When a value falls
+ * outside the buckets' span, the width doubles and neighbouring buckets combine. Since all edges
+ * sit on the same power-of-two grid, the buckets of two streams line up exactly once the finer one
+ * is coarsened, which is how chunks merge. {@link #fill(Histogram)} then counts every bucket at its
+ * midpoint into the display bins.
+ */
+public class StreamingHistogram {
+
+    private final Grid linear = new Grid();
+    private final Grid log = new Grid();
+
+    public void add(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        linear.add(value, 1);
+        if (value > 0) {
+            log.add(Math.log(value), 1);
+        }
+    }
+
+    public void merge(StreamingHistogram other) {
+        linear.merge(other.linear);
+        log.merge(other.log);
+    }
+
+    public void fill(Histogram histogram) {
+        (histogram.isLog() ? log : linear).fill(histogram);
+    }
+
+    public StreamingHistogram copy() {
+        StreamingHistogram copy = new StreamingHistogram();
+        copy.linear.merge(linear);
+        copy.log.merge(log);
+        return copy;
+    }
+
+    /** Bucket counts of width 2^exponent; counts[j] is the bucket [(offset + j) * w, (offset + j + 1) * w). */
+    private static final class Grid {
+
+        private static final int BUCKETS = 1024;
+        // Bucket indexes stay well inside the range where doubles hold integers exactly.
+        private static final double MAX_INDEX = 0x1p52;
+
+        private int exponent;
+        private long offset;
+        private long[] counts;
+
+        void add(double value, long count) {
+            if (counts == null) {
+                // Start fine, about a millionth of the first value; the first spread-out values coarsen it.
+                exponent = Math.getExponent(value == 0 ? 1.0 : value) - 20;
+                counts = new long[BUCKETS];
+                offset = index(value, exponent) - BUCKETS / 2;
+            }
+            double scaled = Math.scalb(value, -exponent);
+            long k = (long) Math.floor(scaled);
+            if (Math.abs(scaled) >= MAX_INDEX || k < offset || k >= offset + BUCKETS) {
+                cover(value, value);
+                k = index(value, exponent);
+            }
+            counts[(int) (k - offset)] += count;
+        }
+
+        void merge(Grid other) {
+            if (other.counts == null) {
+                return;
+            }
+            if (counts == null) {
+                exponent = other.exponent;
+                offset = other.offset;
+                counts = other.counts.clone();
+                return;
+            }
+            if (other.exponent > exponent) {
+                rebuild(other.exponent);
+            }
+            // The lower edges of the other grid's outer buckets fall into the buckets that must exist here.
+            int[] range = other.usedRange();
+            cover(Math.scalb((double) (other.offset + range[0]), other.exponent),
+                    Math.scalb((double) (other.offset + range[1]), other.exponent));
+            for (int j = 0; j < BUCKETS; j++) {
+                if (other.counts[j] != 0) {
+                    counts[(int) (rescale(other.offset + j, other.exponent, exponent) - offset)] += other.counts[j];
+                }
+            }
+        }
+
+        void fill(Histogram histogram) {
+            if (counts == null) {
+                return;
+            }
+            for (int j = 0; j < BUCKETS; j++) {
+                if (counts[j] != 0) {
+                    histogram.addScaled(Math.scalb(offset + j + 0.5, exponent), counts[j]);
+                }
+            }
+        }
+
+        /** Coarsens until the buckets span both their current contents and [low, high], then re-centers them. */
+        private void cover(double low, double high) {
+            int[] used = usedRange();
+            int e = exponent;
+            while (true) {
+                double lowScaled = Math.scalb(low, -e);
+                double highScaled = Math.scalb(high, -e);
+                if (Math.abs(lowScaled) < MAX_INDEX && Math.abs(highScaled) < MAX_INDEX) {
+                    long lo = (long) Math.floor(lowScaled);
+                    long hi = (long) Math.floor(highScaled);
+                    if (used != null) {
+                        lo = Math.min(lo, rescale(offset + used[0], exponent, e));
+                        hi = Math.max(hi, rescale(offset + used[1], exponent, e));
+                    }
+                    if (hi - lo < BUCKETS) {
+                        rebuild(e, lo - (BUCKETS - 1 - (hi - lo)) / 2);
+                        return;
+                    }
+                }
+                e++;
+            }
+        }
+
+        private void rebuild(int newExponent) {
+            int[] used = usedRange();
+            long lo = used == null ? 0 : rescale(offset + used[0], exponent, newExponent);
+            long hi = used == null ? 0 : rescale(offset + used[1], exponent, newExponent);
+            rebuild(newExponent, lo - (BUCKETS - 1 - (hi - lo)) / 2);
+        }
+
+        private void rebuild(int newExponent, long newOffset) {
+            long[] rebuilt = new long[BUCKETS];
+            for (int j = 0; j < BUCKETS; j++) {
+                if (counts[j] != 0) {
+                    rebuilt[(int) (rescale(offset + j, exponent, newExponent) - newOffset)] += counts[j];
+                }
+            }
+            counts = rebuilt;
+            exponent = newExponent;
+            offset = newOffset;
+        }
+
+        /** First and last non-empty bucket, or null when the grid is empty. */
+        private int[] usedRange() {
+            int first = -1;
+            int last = -1;
+            for (int j = 0; j < BUCKETS; j++) {
+                if (counts[j] != 0) {
+                    if (first < 0) {
+                        first = j;
+                    }
+                    last = j;
+                }
+            }
+            return first < 0 ? null : new int[]{first, last};
+        }
+
+        private static long index(double value, int exponent) {
+            return (long) Math.floor(Math.scalb(value, -exponent));
+        }
+
+        /** The bucket at a coarser (or equal) exponent that contains bucket k. */
+        private static long rescale(long k, int from, int to) {
+            return (long) Math.floor(Math.scalb((double) k, from - to));
+        }
+    }
+}
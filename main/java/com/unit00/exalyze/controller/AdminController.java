@@ -0,0 +1,25 @@
+package com.unit00.exalyze.controller;
+
+import com.unit00.exalyze.service.SlowUploadLog;
+import com.unit00.exalyze.service.UploadTrace;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final SlowUploadLog slowUploadLog;
+
+    public AdminController(SlowUploadLog slowUploadLog) {
+        this.slowUploadLog = slowUploadLog;
+    }
+
+    /** The slowest of the recent uploads with the time, rows and columns of each stage, slowest first. */
+    @GetMapping("/slow-uploads")
+    public ResponseEntity<List<UploadTrace>> slowUploads(@RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(slowUploadLog.slowest(limit != null ? limit : slowUploadLog.getDefaultLimit()));
+    }
+}
@@ -0,0 +1,78 @@
+package com.unit00.exalyze.controller;
+
+import com.unit00.exalyze.RequestTimingFilter;
+import com.unit00.exalyze.dto.JobStatusDto;
+import com.unit00.exalyze.service.AnalysisJob;
+import com.unit00.exalyze.service.AnalysisJobService;
+import com.unit00.exalyze.service.PipelineMetrics;
+import com.unit00.exalyze.service.SheetMode;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/api/jobs")
+public class AnalysisJobController {
+
+    private final AnalysisJobService jobService;
+    private final PipelineMetrics metrics;
+
+    public AnalysisJobController(AnalysisJobService jobService, PipelineMetrics metrics) {
+        this.jobService = jobService;
+        this.metrics = metrics;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestParam("file") MultipartFile file,
+                                    @RequestParam(value = "sheetMode", required = false) SheetMode sheetMode,
+                                    @RequestAttribute(value = RequestTimingFilter.START_ATTRIBUTE, required = false) Long requestStart) {
+        if (file.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("No file uploaded!");
+        }
+        if (requestStart != null) {
+            metrics.recordReceipt(requestStart, file.getSize());
+        }
+        try {
+            AnalysisJob job = jobService.submit(file, sheetMode);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("jobId", job.getId()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many jobs queued, try again later.");
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Failed to store file: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<JobStatusDto> status(@PathVariable String id) {
+        AnalysisJob job = jobService.get(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        JobStatusDto status = new JobStatusDto();
+        status.setJobId(job.getId());
+        status.setFilename(job.getFilename());
+        status.setStage(job.getStage().name());
+        status.setRowsParsed(job.getRowsParsed());
+        status.setColumnsProfiled(job.getColumnsProfiled());
+        status.setTotalColumns(job.getTotalColumns());
+        status.setError(job.getError());
+        if (job.getStage() == AnalysisJob.Stage.DONE) {
+            status.setDatasetId(job.getDatasetId());
+            status.setRowCount(job.getRowCount());
+            status.setColumnCount(job.getColumnCount());
+            status.setAnalysis(job.getAnalysis());
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> cancel(@PathVariable String id) {
+        return jobService.cancel(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+}
@@ -1,7 +1,11 @@
 package com.unit00.exalyze.controller;
 
+import com.unit00.exalyze.analysis.Binning;
+import com.unit00.exalyze.dataset.Dataset;
 import com.unit00.exalyze.dto.ChartDataDto;
 import com.unit00.exalyze.service.AIAnalysisService;
+import com.unit00.exalyze.service.AnalysisResultCache;
+import com.unit00.exalyze.service.DatasetCache;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -13,16 +17,40 @@ import java.util.Map;
 public class ExcelAnalysisController {
 
     private final AIAnalysisService analysisService;
+    private final DatasetCache datasetCache;
+    private final AnalysisResultCache resultCache;
 
-    public ExcelAnalysisController(AIAnalysisService analysisService) {
+    public ExcelAnalysisController(AIAnalysisService analysisService, DatasetCache datasetCache, AnalysisResultCache resultCache) {
         this.analysisService = analysisService;
+        this.datasetCache = datasetCache;
+        this.resultCache = resultCache;
     }
 
     // ... constructor and other methods
 
+    /** bins and binning (FIXED, FREEDMAN_DIACONIS or LOG) change the histograms; without them the default 10 fixed bins are used. */
     @PostMapping("/chart-data")
-    public ResponseEntity<ChartDataDto> getChartData(@RequestBody List<Map<String, Object>> excelData) {
-        ChartDataDto chartData = analysisService.getChartData(excelData);
+    public ResponseEntity<ChartDataDto> getChartData(@RequestBody List<Map<String, Object>> excelData,
+                                                     @RequestParam(value = "bins", required = false) Integer bins,
+                                                     @RequestParam(value = "binning", required = false) Binning binning) {
+        ChartDataDto chartData = analysisService.getChartData(Dataset.fromRows(excelData), bins, binning);
         return ResponseEntity.ok(chartData);
     }
+
+    @GetMapping("/chart-data")
+    public ResponseEntity<ChartDataDto> getChartData(@RequestParam("datasetId") String datasetId,
+                                                     @RequestParam(value = "bins", required = false) Integer bins,
+                                                     @RequestParam(value = "binning", required = false) Binning binning) {
+        Dataset data = datasetCache.get(datasetId);
+        if (data == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // Same Dataset instance the upload analyzed, so its profiles are reused.
+        return ResponseEntity.ok(analysisService.getChartData(data, bins, binning));
+    }
+
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(resultCache.stats());
+    }
 }
\ No newline at end of file
@@ -1,16 +1,34 @@
 package com.unit00.exalyze.controller;
 
 
+import com.unit00.exalyze.ReleaseOnCompletionInterceptor;
+import com.unit00.exalyze.RequestTimingFilter;
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dto.ChartDataDto;
 import com.unit00.exalyze.service.AIAnalysisService;
+import com.unit00.exalyze.service.AnalysisResult;
+import com.unit00.exalyze.service.ConcurrencyLimits;
+import com.unit00.exalyze.service.DatasetCache;
+import com.unit00.exalyze.service.DatasetJsonWriter;
 import com.unit00.exalyze.service.ExcelService;
-import org.springframework.core.io.ByteArrayResource;
+import com.unit00.exalyze.service.IncrementalAnalysisService;
+import com.unit00.exalyze.service.PipelineMetrics;
+import com.unit00.exalyze.service.ProgressListener;
+import com.unit00.exalyze.service.SheetMode;
+import com.unit00.exalyze.service.UploadAdmission;
+import com.unit00.exalyze.service.UploadAnalyzer;
+import io.micrometer.observation.Observation;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
@@ -20,75 +38,277 @@ public class FileUploadController {
 
     private final ExcelService excelService;
     private final AIAnalysisService aiAnalysisService;
+    private final DatasetCache datasetCache;
+    private final UploadAnalyzer uploadAnalyzer;
+    private final DatasetJsonWriter jsonWriter;
+    private final IncrementalAnalysisService incrementalAnalysisService;
+    private final PipelineMetrics metrics;
+    private final ConcurrencyLimits limits;
+    private final UploadAdmission admission;
 
-    public FileUploadController(ExcelService excelService, AIAnalysisService aiAnalysisService) {
+    public FileUploadController(ExcelService excelService, AIAnalysisService aiAnalysisService,
+                                DatasetCache datasetCache, UploadAnalyzer uploadAnalyzer, DatasetJsonWriter jsonWriter,
+                                IncrementalAnalysisService incrementalAnalysisService, PipelineMetrics metrics,
+                                ConcurrencyLimits limits, UploadAdmission admission) {
         this.excelService = excelService;
         this.aiAnalysisService = aiAnalysisService;
+        this.datasetCache = datasetCache;
+        this.uploadAnalyzer = uploadAnalyzer;
+        this.jsonWriter = jsonWriter;
+        this.incrementalAnalysisService = incrementalAnalysisService;
+        this.metrics = metrics;
+        this.limits = limits;
+        this.admission = admission;
     }
 
+    /**
+     * Parses and analyzes the upload, then streams the analysis followed by the rows. offset/limit
+     * page the rows (a negative limit means all of them), includeRows=false leaves them out, and
+     * an Accept header of application/x-ndjson switches to one JSON object per line.
+     * sheetMode (FIRST, MERGE or SEPARATE) overrides the configured handling of multi-sheet workbooks.
+     * Uploads that would exceed the memory budget wait their turn, or get a 429 with Retry-After.
+     */
     @PostMapping("/upload")
-    public ResponseEntity<?> uploadExcel(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<StreamingResponseBody> uploadExcel(@RequestParam("file") MultipartFile file,
+                                         @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                         @RequestParam(value = "limit", defaultValue = "-1") int limit,
+                                         @RequestParam(value = "includeRows", defaultValue = "true") boolean includeRows,
+                                         @RequestParam(value = "sheetMode", required = false) SheetMode sheetMode,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                         @RequestAttribute(value = RequestTimingFilter.START_ATTRIBUTE, required = false) Long requestStart) {
         if (file.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("No file uploaded!");
+            return text(ResponseEntity.status(HttpStatus.BAD_REQUEST), "No file uploaded!");
         }
 
+        // Stopped once the response is written, so the upload's trace also covers serialization.
+        Observation upload = metrics.startUpload(file.getOriginalFilename(), file.getSize(), requestStart);
         try {
-            List<Map<String, Object>> data;
-            String filename = file.getOriginalFilename();
-
-            if (filename != null && filename.toLowerCase().endsWith(".csv")) {
-                data = excelService.readCsvData(file);
-            } else {
-                data = excelService.readExcelData(file);
+            AnalysisResult result;
+            try (Observation.Scope scope = upload.openScope()) {
+                // The multipart body is already read; only parsing and analysis wait for memory and a permit.
+                long reserved = admission.admit(file.getOriginalFilename(), file.getSize());
+                if (reserved < 0) {
+                    upload.stop();
+                    return text(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                            .header(HttpHeaders.RETRY_AFTER, String.valueOf(admission.getRetryAfterSeconds())),
+                            "Not enough memory for this upload right now, try again later.");
+                }
+                try {
+                    if (!limits.tryAcquire(ConcurrencyLimits.Endpoint.UPLOAD)) {
+                        upload.stop();
+                        return text(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE), "Too many uploads in progress, try again later.");
+                    }
+                    try {
+                        result = uploadAnalyzer.analyze(file, file.getOriginalFilename(), file.getSize(), sheetMode, includeRows, ProgressListener.NONE);
+                    } finally {
+                        limits.release(ConcurrencyLimits.Endpoint.UPLOAD);
+                    }
+                } finally {
+                    admission.release(reserved);
+                }
             }
+            // Left out when the rows were not asked for, even if they had to be parsed.
+            Dataset data = includeRows ? result.getData() : null;
+            String datasetId = result.getDatasetId();
+            String analysis = result.getAnalysis();
+            int totalRows = result.getRowCount();
 
-            String analysis = aiAnalysisService.analyzeData(data);
-
-            return ResponseEntity.ok(Map.of(
-                    "data", data,
-                    "analysis", analysis
-            ));
+            if (accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE)) {
+                StreamingResponseBody body = traced(upload, "ndjson", result,
+                        out -> jsonWriter.writeUploadResponseNdjson(out, datasetId, analysis, totalRows, data, offset, limit));
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+            }
+            StreamingResponseBody body = traced(upload, "json", result,
+                    out -> jsonWriter.writeUploadResponse(out, datasetId, analysis, totalRows, data, offset, limit));
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
         } catch (Exception e) {
             e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body("Failed to process file: " + e.getMessage());
+            upload.error(e);
+            upload.stop();
+            return text(ResponseEntity.status(HttpStatus.BAD_REQUEST), "Failed to process file: " + e.getMessage());
         }
     }
 
-    @PostMapping("/download/pdf")
-    public ResponseEntity<ByteArrayResource> downloadPdf(@RequestBody Map<String, Object> payload) {
-        try {
-            String reportContent = (String) payload.get("reportContent");
-            Map<String, String> chartImages = (Map<String, String>) payload.get("chartImages");
+    /**
+     * A plain-text error body. Endpoints that stream their results must be declared as returning
+     * StreamingResponseBody for Spring to stream it, so their errors are written the same way.
+     */
+    private static ResponseEntity<StreamingResponseBody> text(ResponseEntity.BodyBuilder response, String message) {
+        return response.contentType(MediaType.TEXT_PLAIN)
+                .body(out -> out.write(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** Writes the response as the serialization stage of the upload, then ends the upload. */
+    private StreamingResponseBody traced(Observation upload, String format, AnalysisResult result, StreamingResponseBody write) {
+        return out -> {
+            Observation stage = metrics.startStage("exalyze.response.serialization", "format", format, upload);
+            try {
+                write.writeTo(out);
+                metrics.stopStage(stage, result.getRowCount(), result.getColumnCount());
+            } catch (IOException | RuntimeException e) {
+                upload.error(e);
+                throw e;
+            } finally {
+                upload.stop();
+            }
+        };
+    }
+
+    /**
+     * Appends the rows of another file to a stored dataset and returns the updated analysis.
+     * Only the new rows are analyzed; the earlier ones are represented by the dataset's running
+     * summary. Rows are left out of the response unless includeRows=true. Like uploads, appends that
+     * would exceed the memory budget wait their turn, or get a 429 with Retry-After.
+     */
+    @PostMapping("/datasets/{datasetId}/append")
+    public ResponseEntity<StreamingResponseBody> appendRows(@PathVariable String datasetId,
+                                                            @RequestParam("file") MultipartFile file,
+                                                            @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                            @RequestParam(value = "limit", defaultValue = "-1") int limit,
+                                                            @RequestParam(value = "includeRows", defaultValue = "false") boolean includeRows) {
+        if (file.isEmpty()) {
+            return text(ResponseEntity.status(HttpStatus.BAD_REQUEST), "No file uploaded!");
+        }
 
-            byte[] pdfBytes = aiAnalysisService.generatePdfReport(reportContent, chartImages);
-            ByteArrayResource resource = new ByteArrayResource(pdfBytes);
+        if (!datasetCache.contains(datasetId)) {
+            return ResponseEntity.notFound().build();
+        }
 
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=analysis_report.pdf")
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .contentLength(pdfBytes.length)
-                    .body(resource);
+        try {
+            AnalysisResult result;
+            // Memory first, then the permit, in the same order as uploads.
+            long reserved = admission.admit(file.getOriginalFilename(), file.getSize());
+            if (reserved < 0) {
+                return text(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(admission.getRetryAfterSeconds())),
+                        "Not enough memory for this upload right now, try again later.");
+            }
+            try {
+                if (!limits.tryAcquire(ConcurrencyLimits.Endpoint.UPLOAD)) {
+                    return text(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE), "Too many uploads in progress, try again later.");
+                }
+                try {
+                    result = incrementalAnalysisService.append(datasetId, file, file.getOriginalFilename(), file.getSize());
+                } finally {
+                    limits.release(ConcurrencyLimits.Endpoint.UPLOAD);
+                }
+            } finally {
+                admission.release(reserved);
+            }
+            if (result == null) {
+                return ResponseEntity.notFound().build();
+            }
+            Dataset data = includeRows ? result.getData() : null;
+            String analysis = result.getAnalysis();
+            int totalRows = result.getRowCount();
+            StreamingResponseBody body = out -> jsonWriter.writeUploadResponse(out, datasetId, analysis, totalRows, data, offset, limit);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
         } catch (Exception e) {
             e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            return text(ResponseEntity.status(HttpStatus.BAD_REQUEST), "Failed to process file: " + e.getMessage());
         }
     }
 
-    @PostMapping("/download/excel")
-    public ResponseEntity<ByteArrayResource> downloadExcel(@RequestBody List<Map<String, Object>> data) {
+    @GetMapping("/datasets/{datasetId}/rows")
+    public ResponseEntity<StreamingResponseBody> getRows(@PathVariable String datasetId,
+                                                         @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                         @RequestParam(value = "limit", defaultValue = "1000") int limit) {
+        Dataset data = datasetCache.get(datasetId);
+        if (data == null) {
+            return ResponseEntity.notFound().build();
+        }
+        StreamingResponseBody body = out -> jsonWriter.writeRowsPage(out, data, offset, limit);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Streams the PDF report. Chart images posted as data URLs are embedded as before; with a
+     * datasetId the charts are also drawn on the server from that dataset's chart data, so the
+     * client can leave the images out.
+     */
+    @PostMapping("/download/pdf")
+    public ResponseEntity<StreamingResponseBody> downloadPdf(@RequestBody Map<String, Object> payload,
+                                                             @RequestParam(value = "datasetId", required = false) String datasetId,
+                                                             HttpServletRequest request) {
+        String reportContent;
+        Map<String, String> chartImages;
         try {
-            byte[] excelBytes = excelService.generateExcelFile(data);
-            ByteArrayResource resource = new ByteArrayResource(excelBytes);
-
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=raw_data.xlsx")
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .contentLength(excelBytes.length)
-                    .body(resource);
-        } catch (Exception e) {
+            reportContent = (String) payload.get("reportContent");
+            chartImages = (Map<String, String>) payload.get("chartImages");
+        } catch (ClassCastException e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
+        Dataset data = datasetId == null ? null : datasetCache.get(datasetId);
+        if (datasetId != null && data == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // The permit is held until the report is written, so chart data is computed on the response thread too.
+        if (!limits.tryAcquire(ConcurrencyLimits.Endpoint.DOWNLOAD_PDF)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        Runnable release = releaseOnCompletion(request, ConcurrencyLimits.Endpoint.DOWNLOAD_PDF);
+        StreamingResponseBody body = out -> {
+            try {
+                ChartDataDto chartData = data == null ? null : aiAnalysisService.getChartData(data);
+                aiAnalysisService.writePdfReport(reportContent == null ? "" : reportContent, chartImages, chartData, out);
+            } finally {
+                release.run();
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=analysis_report.pdf")
+                .contentType(MediaType.APPLICATION_PDF)
+                .body(body);
+    }
+
+    @PostMapping("/download/excel")
+    public ResponseEntity<StreamingResponseBody> downloadExcel(@RequestBody List<Map<String, Object>> data,
+                                                               HttpServletRequest request) {
+        return excelResponse(Dataset.fromRows(data), request);
+    }
+
+    @GetMapping("/download/excel")
+    public ResponseEntity<StreamingResponseBody> downloadExcel(@RequestParam("datasetId") String datasetId,
+                                                               HttpServletRequest request) {
+        Dataset data = datasetCache.get(datasetId);
+        if (data == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return excelResponse(data, request);
+    }
+
+    /**
+     * The workbook is written straight into the response, so its length is not known up front.
+     * The permit is released once it has been written, or once the request ends without it.
+     */
+    private ResponseEntity<StreamingResponseBody> excelResponse(Dataset data, HttpServletRequest request) {
+        if (!limits.tryAcquire(ConcurrencyLimits.Endpoint.DOWNLOAD_EXCEL)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        Runnable release = releaseOnCompletion(request, ConcurrencyLimits.Endpoint.DOWNLOAD_EXCEL);
+        StreamingResponseBody body = out -> {
+            try {
+                excelService.writeExcelFile(data, out);
+            } finally {
+                release.run();
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=raw_data.xlsx")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    /**
+     * A streamed body may never run: the client can go away while it is queued, the async timeout
+     * can cancel it, or the executor can reject it. The permit is then released when the request
+     * completes, by {@link ReleaseOnCompletionInterceptor}.
+     */
+    private Runnable releaseOnCompletion(HttpServletRequest request, ConcurrencyLimits.Endpoint endpoint) {
+        Runnable release = limits.releaseOnce(endpoint);
+        request.setAttribute(ReleaseOnCompletionInterceptor.ATTRIBUTE, release);
+        return release;
     }
 }
\ No newline at end of file
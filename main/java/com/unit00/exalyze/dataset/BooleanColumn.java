@@ -0,0 +1,55 @@
+package com.unit00.exalyze.dataset;
+
+import java.util.BitSet;
+
+public class BooleanColumn extends Column {
+
+    private static final long serialVersionUID = 1L;
+
+    private final BitSet values;
+    private final BitSet nulls;
+
+    public BooleanColumn(String name, BitSet values, BitSet nulls, int size) {
+        super(name, size);
+        this.values = values;
+        this.nulls = nulls;
+    }
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.BOOLEAN;
+    }
+
+    @Override
+    public boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    @Override
+    public Object get(int row) {
+        return nulls.get(row) ? null : values.get(row);
+    }
+
+    @Override
+    public int nullCount() {
+        return nulls.cardinality();
+    }
+
+    public boolean getBoolean(int row) {
+        return values.get(row);
+    }
+
+    /** The backing storage, for {@link ColumnBuilder#extending}. */
+    BitSet values() {
+        return values;
+    }
+
+    BitSet nulls() {
+        return nulls;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return (values.size() + nulls.size()) / 8;
+    }
+}
@@ -0,0 +1,47 @@
+package com.unit00.exalyze.dataset;
+
+import java.io.Serializable;
+
+/**
+ * One column of a {@link Dataset}. Subclasses store cells in primitive arrays; {@link #get(int)}
+ * boxes a single cell back into the type the parsers used to put in row maps.
+ */
+public abstract class Column implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final int size;
+
+    protected Column(String name, int size) {
+        this.name = name;
+        this.size = size;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public abstract ColumnType getType();
+
+    public abstract boolean isNull(int row);
+
+    public abstract Object get(int row);
+
+    /** Rough heap footprint of the cell storage, used to bound caches. */
+    public abstract long estimatedBytes();
+
+    public int nullCount() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (isNull(i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
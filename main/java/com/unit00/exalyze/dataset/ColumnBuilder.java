@@ -0,0 +1,333 @@
+package com.unit00.exalyze.dataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accumulates one column cell by cell. The storage type is fixed by the first non-null cell;
+ * a cell of a different type later on switches the column to a {@link MixedColumn}.
+ */
+public class ColumnBuilder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final String name;
+    private ColumnType type = ColumnType.EMPTY;
+    private int size;
+
+    private final BitSet nulls = new BitSet();
+    private double[] doubles;
+    private long[] longs;
+    private int[] codes;
+    private BitSet booleans;
+    private Object[] objects;
+    private Map<String, Integer> dictionaryIndex;
+    private String[] dictionary;
+
+    public ColumnBuilder(String name) {
+        this.name = name;
+    }
+
+    /**
+     * A builder that continues {@code column}. Its arrays are taken over rather than copied: the
+     * rows the column holds are never written again, so it stays valid, while new rows go to
+     * spare room at the end of the arrays or, once that is used up, to a grown copy. Bit sets and
+     * the dictionary are small and copied. A column must only be continued by one builder.
+     */
+    public static ColumnBuilder extending(Column column) {
+        ColumnBuilder builder = new ColumnBuilder(column.getName());
+        int size = column.size();
+        if (column instanceof NumericColumn) {
+            NumericColumn numbers = (NumericColumn) column;
+            builder.type = ColumnType.NUMERIC;
+            builder.doubles = numbers.values();
+            builder.nulls.or(numbers.nulls());
+        } else if (column instanceof DateColumn) {
+            DateColumn dates = (DateColumn) column;
+            builder.type = ColumnType.DATE;
+            builder.longs = dates.millis();
+            builder.nulls.or(dates.nulls());
+        } else if (column instanceof BooleanColumn) {
+            BooleanColumn booleans = (BooleanColumn) column;
+            builder.type = ColumnType.BOOLEAN;
+            builder.booleans = (BitSet) booleans.values().clone();
+            builder.nulls.or(booleans.nulls());
+        } else if (column instanceof StringColumn && column.getType() == ColumnType.STRING) {
+            StringColumn strings = (StringColumn) column;
+            String[] dictionary = strings.getDictionary();
+            builder.type = ColumnType.STRING;
+            builder.codes = strings.codes();
+            builder.dictionary = Arrays.copyOf(dictionary, Math.max(16, dictionary.length * 2));
+            builder.dictionaryIndex = new HashMap<>();
+            for (int code = 0; code < dictionary.length; code++) {
+                builder.dictionaryIndex.put(dictionary[code], code);
+            }
+        } else if (column instanceof MixedColumn && ((MixedColumn) column).values().length > 0) {
+            builder.type = ColumnType.MIXED;
+            builder.objects = ((MixedColumn) column).values();
+        } else {
+            // An all-null column, or a kind of column without shareable storage.
+            for (int row = 0; row < size; row++) {
+                builder.append(column.get(row));
+            }
+            return builder;
+        }
+        builder.size = size;
+        return builder;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void appendNull() {
+        switch (type) {
+            case STRING:
+                ensureCodes();
+                codes[size] = -1;
+                break;
+            case MIXED:
+                ensureObjects();
+                objects[size] = null;
+                break;
+            default:
+                nulls.set(size);
+        }
+        size++;
+    }
+
+    /** Appends {@code count} nulls; cheap while the column holds no values yet. */
+    public void appendNulls(int count) {
+        if (type == ColumnType.EMPTY) {
+            nulls.set(size, size + count);
+            size += count;
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            appendNull();
+        }
+    }
+
+    public void appendDouble(double value) {
+        if (type == ColumnType.EMPTY) {
+            type = ColumnType.NUMERIC;
+            doubles = new double[Math.max(INITIAL_CAPACITY, size + 1)];
+        }
+        if (type == ColumnType.NUMERIC) {
+            if (size >= doubles.length) {
+                doubles = Arrays.copyOf(doubles, Math.max(doubles.length * 2, size + 1));
+            }
+            doubles[size++] = value;
+        } else {
+            appendObject(value);
+        }
+    }
+
+    public void appendDate(long millis) {
+        if (type == ColumnType.EMPTY) {
+            type = ColumnType.DATE;
+            longs = new long[Math.max(INITIAL_CAPACITY, size + 1)];
+        }
+        if (type == ColumnType.DATE) {
+            if (size >= longs.length) {
+                longs = Arrays.copyOf(longs, Math.max(longs.length * 2, size + 1));
+            }
+            longs[size++] = millis;
+        } else {
+            appendObject(new Date(millis));
+        }
+    }
+
+    public void appendBoolean(boolean value) {
+        if (type == ColumnType.EMPTY) {
+            type = ColumnType.BOOLEAN;
+            booleans = new BitSet();
+        }
+        if (type == ColumnType.BOOLEAN) {
+            booleans.set(size++, value);
+        } else {
+            appendObject(value);
+        }
+    }
+
+    public void appendString(String value) {
+        if (value == null) {
+            appendNull();
+            return;
+        }
+        if (type == ColumnType.EMPTY) {
+            type = ColumnType.STRING;
+            dictionaryIndex = new HashMap<>();
+            dictionary = new String[16];
+            ensureCodes();
+            Arrays.fill(codes, 0, size, -1);
+        }
+        if (type == ColumnType.STRING) {
+            ensureCodes();
+            Integer code = dictionaryIndex.get(value);
+            if (code == null) {
+                code = dictionaryIndex.size();
+                dictionaryIndex.put(value, code);
+                if (code == dictionary.length) {
+                    dictionary = Arrays.copyOf(dictionary, code * 2);
+                }
+                dictionary[code] = value;
+            }
+            codes[size++] = code;
+        } else {
+            appendObject(value);
+        }
+    }
+
+    /** Appends a value as produced by a parser or taken from a row map. */
+    public void append(Object value) {
+        if (value == null) {
+            appendNull();
+        } else if (value instanceof String) {
+            appendString((String) value);
+        } else if (value instanceof Double) {
+            appendDouble((Double) value);
+        } else if (value instanceof Date) {
+            appendDate(((Date) value).getTime());
+        } else if (value instanceof Boolean) {
+            appendBoolean((Boolean) value);
+        } else {
+            // Integers, BigDecimals and anything else keep their exact boxed form.
+            appendObject(value);
+        }
+    }
+
+    public Column build() {
+        switch (type) {
+            case NUMERIC:
+                return new NumericColumn(name, Arrays.copyOf(doubles, size), nulls, size);
+            case DATE:
+                return new DateColumn(name, Arrays.copyOf(longs, size), nulls, size);
+            case BOOLEAN:
+                return new BooleanColumn(name, booleans, nulls, size);
+            case STRING:
+                ensureCodes();
+                return new StringColumn(name, Arrays.copyOf(codes, size), Arrays.copyOf(dictionary, dictionaryIndex.size()), size);
+            case MIXED:
+                ensureObjects();
+                return new MixedColumn(name, Arrays.copyOf(objects, size), size);
+            default:
+                int[] allNull = new int[size];
+                Arrays.fill(allNull, -1);
+                return new StringColumn(name, allNull, new String[0], size);
+        }
+    }
+
+    /**
+     * Like {@link #build()}, but hands the arrays over with their spare room instead of trimming
+     * them, so a builder that keeps appending copies nothing. The column stays valid because rows
+     * already built are never written again; bit sets and the dictionary are copied.
+     */
+    public Column buildShared() {
+        switch (type) {
+            case NUMERIC:
+                return new NumericColumn(name, doubles, (BitSet) nulls.clone(), size);
+            case DATE:
+                return new DateColumn(name, longs, (BitSet) nulls.clone(), size);
+            case BOOLEAN:
+                return new BooleanColumn(name, (BitSet) booleans.clone(), (BitSet) nulls.clone(), size);
+            case STRING:
+                ensureCodes();
+                return new StringColumn(name, codes, Arrays.copyOf(dictionary, dictionaryIndex.size()), size);
+            case MIXED:
+                return new MixedColumn(name, objects, size);
+            default:
+                return build();
+        }
+    }
+
+    /**
+     * A column of the rows {@code [from, to)} only, copied so the builder can keep growing while
+     * another thread reads it. Text cells get a dictionary of the values in the range.
+     */
+    public Column buildRange(int from, int to) {
+        int n = to - from;
+        switch (type) {
+            case NUMERIC:
+                return new NumericColumn(name, Arrays.copyOfRange(doubles, from, to), nulls.get(from, to), n);
+            case DATE:
+                return new DateColumn(name, Arrays.copyOfRange(longs, from, to), nulls.get(from, to), n);
+            case BOOLEAN:
+                return new BooleanColumn(name, booleans.get(from, to), nulls.get(from, to), n);
+            case STRING:
+                ensureCodes();
+                int[] rangeCodes = new int[n];
+                Map<Integer, Integer> recoded = new HashMap<>();
+                List<String> rangeDictionary = new ArrayList<>();
+                for (int i = 0; i < n; i++) {
+                    int code = codes[from + i];
+                    if (code < 0) {
+                        rangeCodes[i] = -1;
+                        continue;
+                    }
+                    Integer local = recoded.get(code);
+                    if (local == null) {
+                        local = rangeDictionary.size();
+                        recoded.put(code, local);
+                        rangeDictionary.add(dictionary[code]);
+                    }
+                    rangeCodes[i] = local;
+                }
+                return new StringColumn(name, rangeCodes, rangeDictionary.toArray(new String[0]), n);
+            case MIXED:
+                ensureObjects();
+                return new MixedColumn(name, Arrays.copyOfRange(objects, from, to), n);
+            default:
+                int[] allNull = new int[n];
+                Arrays.fill(allNull, -1);
+                return new StringColumn(name, allNull, new String[0], n);
+        }
+    }
+
+    private void appendObject(Object value) {
+        if (type != ColumnType.MIXED) {
+            promoteToMixed();
+        }
+        ensureObjects();
+        objects[size++] = value;
+    }
+
+    private void promoteToMixed() {
+        Column current = build();
+        Object[] boxed = new Object[Math.max(INITIAL_CAPACITY, size + 1)];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = current.get(i);
+        }
+        type = ColumnType.MIXED;
+        objects = boxed;
+        doubles = null;
+        longs = null;
+        codes = null;
+        booleans = null;
+        dictionary = null;
+        dictionaryIndex = null;
+    }
+
+    private void ensureCodes() {
+        if (codes == null) {
+            codes = new int[Math.max(INITIAL_CAPACITY, size + 1)];
+        } else if (size >= codes.length) {
+            codes = Arrays.copyOf(codes, Math.max(codes.length * 2, size + 1));
+        }
+    }
+
+    private void ensureObjects() {
+        if (size >= objects.length) {
+            objects = Arrays.copyOf(objects, objects.length * 2);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.unit00.exalyze.dataset;
+
+public enum ColumnType {
+    NUMERIC,
+    STRING,
+    DATE,
+    BOOLEAN,
+    /** Cells of more than one type; values are kept boxed exactly as parsed. */
+    MIXED,
+    /** No non-null cell was seen. */
+    EMPTY
+}
@@ -0,0 +1,124 @@
+package com.unit00.exalyze.dataset;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented in-memory table produced by the parsers and read by the analysis code.
+ * Numeric cells live in primitive arrays and repeated text is dictionary-encoded, so a large
+ * upload costs a handful of arrays per column instead of one map per row.
+ */
+public class Dataset implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Column> columns;
+    private final Map<String, Integer> columnIndex;
+    private final int rowCount;
+
+    public Dataset(List<Column> columns, int rowCount) {
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        this.columnIndex = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            columnIndex.put(columns.get(i).getName(), i);
+        }
+        this.rowCount = rowCount;
+    }
+
+    public static Dataset empty() {
+        return new Dataset(Collections.emptyList(), 0);
+    }
+
+    /** Builds a dataset from the row-map shape the JSON endpoints still accept. */
+    public static Dataset fromRows(List<Map<String, Object>> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return empty();
+        }
+        List<String> headers = new ArrayList<>(rows.get(0).keySet());
+        DatasetBuilder builder = new DatasetBuilder(headers);
+        for (Map<String, Object> row : rows) {
+            for (int i = 0; i < headers.size(); i++) {
+                builder.append(i, row.get(headers.get(i)));
+            }
+            builder.endRow();
+        }
+        return builder.build();
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    public Column getColumn(int index) {
+        return columns.get(index);
+    }
+
+    public Column getColumn(String name) {
+        Integer index = columnIndex.get(name);
+        return index == null ? null : columns.get(index);
+    }
+
+    public List<String> getColumnNames() {
+        List<String> names = new ArrayList<>(columns.size());
+        for (Column column : columns) {
+            names.add(column.getName());
+        }
+        return names;
+    }
+
+    public Object get(int row, int column) {
+        return columns.get(column).get(row);
+    }
+
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (Column column : columns) {
+            bytes += column.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    public Map<String, Object> getRow(int row) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (Column column : columns) {
+            map.put(column.getName(), column.get(row));
+        }
+        return map;
+    }
+
+    /**
+     * Row-map view for JSON responses. Maps are created one at a time while the view is
+     * iterated, so serializing it does not materialize the whole table as maps.
+     */
+    public List<Map<String, Object>> toRows() {
+        return new AbstractList<>() {
+            @Override
+            public Map<String, Object> get(int index) {
+                return getRow(index);
+            }
+
+            @Override
+            public int size() {
+                return rowCount;
+            }
+        };
+    }
+}
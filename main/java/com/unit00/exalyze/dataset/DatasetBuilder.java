@@ -0,0 +1,213 @@
+package com.unit00.exalyze.dataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Fills a {@link Dataset} row by row, straight from a parser. Cells must arrive in column order
+ * within a row; skipped cells and the tail of a short row are filled with nulls by {@link #endRow()}.
+ * A builder given a block listener also hands out every {@code blockRows} rows as a dataset of their
+ * own while it keeps filling, so they can be analyzed while the parser is still reading.
+ */
+public class DatasetBuilder {
+
+    private ColumnBuilder[] columns;
+    private final Set<String> used = new HashSet<>();
+    private int cursor;
+    private int rowCount;
+    private final int blockRows;
+    private final Consumer<Dataset> blocks;
+    private int blockStart;
+
+    public DatasetBuilder(List<String> headers) {
+        this(headers, 0, null);
+    }
+
+    /**
+     * @param blockRows rows per block; 0 hands out no blocks
+     * @param blocks    receives each full block, and the remaining rows on {@link #build()}, on the
+     *                  thread that fills the builder
+     */
+    public DatasetBuilder(List<String> headers, int blockRows, Consumer<Dataset> blocks) {
+        this.blockRows = blocks == null ? 0 : Math.max(0, blockRows);
+        this.blocks = blocks;
+        this.columns = new ColumnBuilder[headers.size()];
+        for (int i = 0; i < headers.size(); i++) {
+            columns[i] = new ColumnBuilder(uniqueName(headers.get(i)));
+        }
+    }
+
+    private DatasetBuilder(ColumnBuilder[] columns, int rowCount) {
+        this.blockRows = 0;
+        this.blocks = null;
+        this.columns = columns;
+        this.rowCount = rowCount;
+        for (ColumnBuilder column : columns) {
+            used.add(column.getName());
+        }
+    }
+
+    /**
+     * A builder that appends rows to {@code base}, with the columns in the given order. Columns of
+     * the base are continued through {@link ColumnBuilder#extending} without copying their rows;
+     * names the base lacks start out null. Build it with {@link #buildShared()}, and extend a
+     * dataset at most once, as its arrays are shared with the new one.
+     */
+    public static DatasetBuilder extending(Dataset base, List<String> names) {
+        ColumnBuilder[] columns = new ColumnBuilder[names.size()];
+        for (int i = 0; i < columns.length; i++) {
+            Column column = base.getColumn(names.get(i));
+            if (column != null) {
+                columns[i] = ColumnBuilder.extending(column);
+            } else {
+                columns[i] = new ColumnBuilder(names.get(i));
+                columns[i].appendNulls(base.getRowCount());
+            }
+        }
+        return new DatasetBuilder(columns, base.getRowCount());
+    }
+
+    /** Adds a column after the existing ones, null in every row so far, and returns its index. Call it between rows. */
+    public int addColumn(String header) {
+        ColumnBuilder column = new ColumnBuilder(uniqueName(header));
+        column.appendNulls(rowCount);
+        columns = Arrays.copyOf(columns, columns.length + 1);
+        columns[columns.length - 1] = column;
+        return columns.length - 1;
+    }
+
+    private String uniqueName(String header) {
+        String name = header;
+        // Row maps silently collapsed repeated headers; keep both columns under distinct keys instead.
+        for (int n = 2; !used.add(name); n++) {
+            name = header + "_" + n;
+        }
+        return name;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public void appendNull(int column) {
+        if (moveTo(column)) {
+            columns[column].appendNull();
+        }
+    }
+
+    public void appendDouble(int column, double value) {
+        if (moveTo(column)) {
+            columns[column].appendDouble(value);
+        }
+    }
+
+    public void appendString(int column, String value) {
+        if (moveTo(column)) {
+            columns[column].appendString(value);
+        }
+    }
+
+    public void appendDate(int column, long millis) {
+        if (moveTo(column)) {
+            columns[column].appendDate(millis);
+        }
+    }
+
+    public void appendBoolean(int column, boolean value) {
+        if (moveTo(column)) {
+            columns[column].appendBoolean(value);
+        }
+    }
+
+    public void append(int column, Object value) {
+        if (moveTo(column)) {
+            columns[column].append(value);
+        }
+    }
+
+    /** Copies one cell of another dataset's column without boxing it; a null source column appends a null. */
+    public void appendFrom(int column, Column source, int row) {
+        if (source == null || source.isNull(row)) {
+            appendNull(column);
+        } else if (source instanceof NumericColumn) {
+            appendDouble(column, ((NumericColumn) source).getDouble(row));
+        } else if (source instanceof StringColumn) {
+            StringColumn strings = (StringColumn) source;
+            appendString(column, strings.getDictionary()[strings.getCode(row)]);
+        } else if (source instanceof DateColumn) {
+            appendDate(column, ((DateColumn) source).getMillis(row));
+        } else if (source instanceof BooleanColumn) {
+            appendBoolean(column, ((BooleanColumn) source).getBoolean(row));
+        } else {
+            append(column, source.get(row));
+        }
+    }
+
+    public void endRow() {
+        while (cursor < columns.length) {
+            columns[cursor++].appendNull();
+        }
+        cursor = 0;
+        rowCount++;
+        if (blockRows > 0 && rowCount - blockStart == blockRows) {
+            emitBlock();
+        }
+    }
+
+    public void addRow(Object[] values) {
+        for (int i = 0; i < columns.length && i < values.length; i++) {
+            columns[i].append(values[i]);
+        }
+        cursor = Math.min(values.length, columns.length);
+        endRow();
+    }
+
+    public Dataset build() {
+        if (blockRows > 0 && rowCount > blockStart) {
+            emitBlock();
+        }
+        List<Column> built = new ArrayList<>(columns.length);
+        for (ColumnBuilder column : columns) {
+            built.add(column.build());
+        }
+        return new Dataset(built, rowCount);
+    }
+
+    /** Like {@link #build()}, but the columns keep the builders' spare room; see {@link ColumnBuilder#buildShared()}. */
+    public Dataset buildShared() {
+        List<Column> built = new ArrayList<>(columns.length);
+        for (ColumnBuilder column : columns) {
+            built.add(column.buildShared());
+        }
+        return new Dataset(built, rowCount);
+    }
+
+    private void emitBlock() {
+        List<Column> block = new ArrayList<>(columns.length);
+        for (ColumnBuilder column : columns) {
+            block.add(column.buildRange(blockStart, rowCount));
+        }
+        int rows = rowCount - blockStart;
+        blockStart = rowCount;
+        blocks.accept(new Dataset(block, rows));
+    }
+
+    private boolean moveTo(int column) {
+        if (column < cursor || column >= columns.length) {
+            return false;
+        }
+        while (cursor < column) {
+            columns[cursor++].appendNull();
+        }
+        cursor = column + 1;
+        return true;
+    }
+}
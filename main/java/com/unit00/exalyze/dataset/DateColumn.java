@@ -0,0 +1,56 @@
+package com.unit00.exalyze.dataset;
+
+import java.util.BitSet;
+import java.util.Date;
+
+public class DateColumn extends Column {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long[] millis;
+    private final BitSet nulls;
+
+    public DateColumn(String name, long[] millis, BitSet nulls, int size) {
+        super(name, size);
+        this.millis = millis;
+        this.nulls = nulls;
+    }
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.DATE;
+    }
+
+    @Override
+    public boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    @Override
+    public Object get(int row) {
+        return nulls.get(row) ? null : new Date(millis[row]);
+    }
+
+    @Override
+    public int nullCount() {
+        return nulls.cardinality();
+    }
+
+    public long getMillis(int row) {
+        return millis[row];
+    }
+
+    /** The backing storage, for {@link ColumnBuilder#extending}. */
+    long[] millis() {
+        return millis;
+    }
+
+    BitSet nulls() {
+        return nulls;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return 8L * millis.length + nulls.size() / 8;
+    }
+}
@@ -0,0 +1,52 @@
+package com.unit00.exalyze.dataset;
+
+/**
+ * Fallback for columns whose cells do not share one type, e.g. numbers with the odd "N/A" text.
+ * Values stay boxed so analysis sees exactly what the parser produced.
+ */
+public class MixedColumn extends Column {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Object[] values;
+
+    public MixedColumn(String name, Object[] values, int size) {
+        super(name, size);
+        this.values = values;
+    }
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.MIXED;
+    }
+
+    @Override
+    public boolean isNull(int row) {
+        return values[row] == null;
+    }
+
+    @Override
+    public Object get(int row) {
+        return values[row];
+    }
+
+    /** The backing storage, for {@link ColumnBuilder#extending}. */
+    Object[] values() {
+        return values;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long bytes = 8L * values.length;
+        // The array may have spare room that a later version of the column fills.
+        for (int i = 0; i < size(); i++) {
+            Object value = values[i];
+            if (value instanceof String) {
+                bytes += 40 + 2L * ((String) value).length();
+            } else if (value != null) {
+                bytes += 24;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,67 @@
+package com.unit00.exalyze.dataset;
+
+import java.util.BitSet;
+
+public class NumericColumn extends Column {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double[] values;
+    private final BitSet nulls;
+
+    public NumericColumn(String name, double[] values, BitSet nulls, int size) {
+        super(name, size);
+        this.values = values;
+        this.nulls = nulls;
+    }
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.NUMERIC;
+    }
+
+    @Override
+    public boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    @Override
+    public Object get(int row) {
+        return nulls.get(row) ? null : values[row];
+    }
+
+    @Override
+    public int nullCount() {
+        return nulls.cardinality();
+    }
+
+    public double getDouble(int row) {
+        return values[row];
+    }
+
+    /** Non-null values in row order, as a fresh array the caller may reorder. */
+    public double[] nonNullValues() {
+        double[] result = new double[size() - nulls.cardinality()];
+        int n = 0;
+        for (int i = 0; i < size(); i++) {
+            if (!nulls.get(i)) {
+                result[n++] = values[i];
+            }
+        }
+        return result;
+    }
+
+    /** The backing storage, for {@link ColumnBuilder#extending}. */
+    double[] values() {
+        return values;
+    }
+
+    BitSet nulls() {
+        return nulls;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return 8L * values.length + nulls.size() / 8;
+    }
+}
@@ -0,0 +1,59 @@
+package com.unit00.exalyze.dataset;
+
+/**
+ * Dictionary-encoded text column: each row holds an index into {@link #getDictionary()}, or -1
+ * for a missing cell. Repeated category labels are stored once.
+ */
+public class StringColumn extends Column {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] codes;
+    private final String[] dictionary;
+
+    public StringColumn(String name, int[] codes, String[] dictionary, int size) {
+        super(name, size);
+        this.codes = codes;
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public ColumnType getType() {
+        return dictionary.length == 0 ? ColumnType.EMPTY : ColumnType.STRING;
+    }
+
+    @Override
+    public boolean isNull(int row) {
+        return codes[row] < 0;
+    }
+
+    @Override
+    public Object get(int row) {
+        int code = codes[row];
+        return code < 0 ? null : dictionary[code];
+    }
+
+    public int getCode(int row) {
+        return codes[row];
+    }
+
+    /** The backing storage, for {@link ColumnBuilder#extending}. */
+    int[] codes() {
+        return codes;
+    }
+
+    public String[] getDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long bytes = 4L * codes.length + 8L * dictionary.length;
+        for (String value : dictionary) {
+            if (value != null) {
+                bytes += 40 + 2L * value.length();
+            }
+        }
+        return bytes;
+    }
+}
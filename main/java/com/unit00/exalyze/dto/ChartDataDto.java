@@ -1,9 +1,12 @@
 package com.unit00.exalyze.dto;
 
 
+import java.io.Serializable;
 import java.util.Map;
 
-public class ChartDataDto {
+public class ChartDataDto implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     // This is the updated line: it no longer holds a List<Double>
     private Map<String, NumericSummaryDto> numericData;
     private Map<String, Map<String, Long>> categoricalFrequencies;
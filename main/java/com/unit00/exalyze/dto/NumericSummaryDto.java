@@ -1,8 +1,11 @@
 package com.unit00.exalyze.dto;
 import com.unit00.exalyze.Bin;
+import java.io.Serializable;
 import java.util.List;
 
-public class NumericSummaryDto {
+public class NumericSummaryDto implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private Double min;
     private Double max;
     private Double avg;
@@ -1,46 +1,128 @@
 package com.unit00.exalyze.service;
-import com.itextpdf.text.Image;
-import com.unit00.exalyze.Bin;
+import com.unit00.exalyze.analysis.Binning;
+import com.unit00.exalyze.analysis.CategorySketch;
+import com.unit00.exalyze.analysis.ChunkedSummarizer;
+import com.unit00.exalyze.analysis.ColumnProfile;
+import com.unit00.exalyze.analysis.CorrelationEngine;
+import com.unit00.exalyze.analysis.DatasetAnalysis;
+import com.unit00.exalyze.analysis.DatasetProfiler;
+import com.unit00.exalyze.analysis.DatasetSummary;
+import com.unit00.exalyze.analysis.DuplicateDetector;
+import com.unit00.exalyze.analysis.DuplicateSummary;
+import com.unit00.exalyze.analysis.Histogram;
+import com.unit00.exalyze.analysis.ParallelRunner;
+import com.unit00.exalyze.dataset.Dataset;
 import com.unit00.exalyze.dto.ChartDataDto;
 import com.unit00.exalyze.dto.NumericSummaryDto;
-import org.apache.commons.io.output.ByteArrayOutputStream;
+import io.micrometer.observation.Observation;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.util.Base64;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
-import com.itextpdf.text.Document;
- import com.itextpdf.text.Paragraph;
-import com.itextpdf.text.pdf.PdfWriter;
-import org.apache.poi.ss.usermodel.*;
- import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 @Service
 public class AIAnalysisService {
 
-    private static final long EXCEL_EPOCH_OFFSET = 25569;
+    private final ParallelRunner runner;
+    private final DatasetProfiler profiler;
+    private final DuplicateDetector duplicateDetector;
+    private final ExcelExportWriter excelExportWriter;
+    private final PdfReportWriter pdfReportWriter;
+    private final PipelineMetrics metrics;
+    private final CorrelationEngine correlationEngine;
+    // Keyed by identity; lets getChartData reuse the profiles and correlations of a dataset the report already analyzed.
+    private final Map<Dataset, DatasetAnalysis> analyses = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<Dataset, ChartDataDto> chartData = Collections.synchronizedMap(new WeakHashMap<>());
+    private final String settingsFingerprint;
+    private final ForkJoinPool chunkPool;
+    private final int maxParallelismPerRequest;
+    private final double sketchRankError;
+    private final int categoryThreshold;
+    private final int categoryCapacity;
+    private final int chunkRows;
+
+    public AIAnalysisService(ForkJoinPool analysisPool,
+                             ExcelExportWriter excelExportWriter,
+                             PdfReportWriter pdfReportWriter,
+                             PipelineMetrics metrics,
+                             @Value("${exalyze.analysis.parallel-enabled:true}") boolean parallelEnabled,
+                             @Value("${exalyze.analysis.max-parallelism-per-request:4}") int maxParallelismPerRequest,
+                             @Value("${exalyze.analysis.quantiles.sketch-threshold:0}") int sketchThreshold,
+                             @Value("${exalyze.analysis.quantiles.sketch-rank-error:0.005}") double sketchRankError,
+                             @Value("${exalyze.analysis.duplicates.approximate-threshold:0}") int duplicatesApproximateThreshold,
+                             @Value("${exalyze.analysis.duplicates.bloom-max-mb:64}") int duplicatesBloomMaxMb,
+                             @Value("${exalyze.analysis.chunk-rows:0}") int chunkRows,
+                             @Value("${exalyze.analysis.categories.exact-threshold:0}") int categoryThreshold,
+                             @Value("${exalyze.analysis.categories.top-capacity:1024}") int categoryCapacity) {
+        this.runner = parallelEnabled ? new ParallelRunner(analysisPool, maxParallelismPerRequest) : ParallelRunner.sequential();
+        this.profiler = new DatasetProfiler(runner, sketchThreshold, sketchRankError, categoryThreshold, categoryCapacity);
+        this.excelExportWriter = excelExportWriter;
+        this.pdfReportWriter = pdfReportWriter;
+        this.metrics = metrics;
+        this.duplicateDetector = new DuplicateDetector(duplicatesApproximateThreshold, duplicatesBloomMaxMb * 1024L * 1024L);
+        // Bump the version when the report or chart output changes, so stored results are not reused.
+        this.settingsFingerprint = "report=4,sketch=" + sketchThreshold + "/" + sketchRankError
+                + ",duplicates=" + duplicatesApproximateThreshold + "/" + duplicatesBloomMaxMb
+                + ",chunks=" + chunkRows + ",categories=" + categoryThreshold + "/" + categoryCapacity;
+        this.correlationEngine = new CorrelationEngine(runner);
+        this.chunkPool = parallelEnabled ? analysisPool : null;
+        this.maxParallelismPerRequest = maxParallelismPerRequest;
+        this.sketchRankError = sketchRankError;
+        this.categoryThreshold = categoryThreshold;
+        this.categoryCapacity = categoryCapacity;
+        this.chunkRows = Math.max(0, chunkRows);
+    }
+
+    public String analyzeExcelData(Dataset excelData) {
+        return analyzeExcelData(excelData, ProgressListener.NONE);
+    }
 
-    public String analyzeExcelData(List<Map<String, Object>> excelData) {
+    public String analyzeExcelData(Dataset excelData, ProgressListener progress) {
         if (excelData == null || excelData.isEmpty()) {
             return "✅ **Analysis Complete**: No data was provided to analyze.";
         }
 
+        DatasetAnalysis analysis = analyze(excelData, progress);
+        Observation stage = metrics.startStage("exalyze.analysis", "stage", "duplicates");
+        DuplicateSummary duplicates = duplicateDetector.detect(excelData);
+        metrics.stopStage(stage, excelData.getRowCount(), excelData.getColumnCount());
+        return report(excelData, analysis, duplicates);
+    }
+
+    /**
+     * Report for a dataset built from its running summary instead of a pass over every row: the
+     * summary of appended rows, or of the row blocks summarized while parsing. Median, outliers and
+     * histograms are sketch estimates.
+     */
+    public String analyzeIncrementally(Dataset excelData, DatasetSummary summary) {
+        if (excelData == null || excelData.isEmpty()) {
+            return "✅ **Analysis Complete**: No data was provided to analyze.";
+        }
+        DatasetAnalysis analysis = summary.toAnalysis();
+        // Chart data for the grown dataset then reads this analysis instead of profiling every row.
+        analyses.put(excelData, analysis);
+        return report(excelData, analysis, summary.getDuplicates());
+    }
+
+    private String report(Dataset excelData, DatasetAnalysis analysis, DuplicateSummary duplicates) {
+        Observation stage = metrics.startStage("exalyze.analysis", "stage", "report");
         StringBuilder report = new StringBuilder();
-        int totalRows = excelData.size();
-        Set<String> allColumns = excelData.get(0).keySet();
-        int totalColumns = allColumns.size();
+        int totalRows = excelData.getRowCount();
+        List<ColumnProfile> profiles = analysis.getProfiles();
+        int totalColumns = profiles.size();
 
-        List<Map<String, Object>> duplicateRows = findDuplicateRows(excelData);
-        long totalDuplicates = duplicateRows.size();
+        long totalDuplicates = duplicates.getDuplicateCount();
 
-        long emptyCells = excelData.stream()
-                .flatMap(row -> row.values().stream())
-                .filter(value -> value == null || (value instanceof String && ((String) value).isBlank()))
-                .count();
+        long emptyCells = profiles.stream()
+                .mapToLong(ColumnProfile::getEmptyCount)
+                .sum();
         double emptyPercentage = (double) emptyCells / (totalRows * totalColumns);
         double duplicatePercentage = (double) totalDuplicates / totalRows;
         double overallQualityScore = calculateOverallQualityScore(emptyPercentage, duplicatePercentage);
@@ -48,62 +130,44 @@ public class AIAnalysisService {
         report.append("### 📊 Data Quality Summary\n\n");
         report.append("The dataset contains **").append(totalRows).append("** rows and **").append(totalColumns).append("** columns.\n\n");
         report.append("Your data has an **Overall Quality Score** of **").append(String.format("%.2f", overallQualityScore * 100)).append(" / 100**.\n\n");
-        report.append("A total of **").append(emptyCells).append("** (").append(String.format("%.2f", emptyPercentage * 100)).append("%) empty cells and **").append(totalDuplicates).append("** duplicate rows were found.\n");
+        report.append("A total of **").append(emptyCells).append("** (").append(String.format("%.2f", emptyPercentage * 100)).append("%) empty cells and **").append(totalDuplicates).append("** duplicate rows were found")
+                .append(duplicates.isApproximate() ? " (estimated).\n" : ".\n");
 
-        if (!duplicateRows.isEmpty()) {
+        if (!duplicates.getSampleRows().isEmpty()) {
             report.append("\n---");
             report.append("\n### 📋 Examples of Duplicate Rows\n\n");
             report.append("Below are some examples of the duplicate rows detected in your dataset:\n\n");
             int count = 0;
-            for (Map<String, Object> duplicate : duplicateRows) {
-                if (count >= 5) break;
-                report.append("  - Row ").append(count + 1).append(": `").append(duplicate.toString()).append("`\n");
+            for (int row : duplicates.getSampleRows()) {
+                report.append("  - Row ").append(count + 1).append(": `").append(excelData.getRow(row).toString()).append("`\n");
                 count++;
             }
         }
 
         report.append("\n---\n\n### 🔍 Column-by-Column Insights\n");
-        Map<String, List<Double>> numericColumnData = new HashMap<>();
-        Map<String, List<String>> categoricalColumnData = new HashMap<>();
-
-        for (String col : allColumns) {
-            List<Object> values = excelData.stream().map(row -> row.get(col)).collect(Collectors.toList());
-            List<Object> nonNullValues = values.stream().filter(Objects::nonNull).collect(Collectors.toList());
-
-            report.append("\n**`").append(col).append("`**\n");
-            long emptyCount = values.stream().filter(v -> v == null || v.toString().isBlank()).count();
-            String inferredType = inferType(values);
-            long uniqueCount = nonNullValues.stream().distinct().count();
-            double uniquePercentage = (double) uniqueCount / totalRows * 100;
-
-            report.append("- **Type**: ").append(inferredType).append("\n");
-            report.append("- **Missing Values**: ").append(emptyCount).append(" (").append(String.format("%.2f", (double) emptyCount / totalRows * 100)).append("%)\n");
-            report.append("- **Unique Values**: ").append(uniqueCount).append(" (Cardinality: ").append(String.format("%.2f", uniquePercentage)).append("%)\n");
-
+        Map<String, double[]> numericColumnData = new HashMap<>();
+        Map<String, ColumnProfile> categoricalColumnData = new HashMap<>();
+
+        // Sections are rendered concurrently and appended in column order.
+        List<String> columnSections = runner.map(profiles, profile -> columnInsight(profile, totalRows));
+        for (int i = 0; i < profiles.size(); i++) {
+            ColumnProfile profile = profiles.get(i);
+            report.append(columnSections.get(i));
+            String inferredType = profile.getInferredType();
             if ("Numeric".equals(inferredType)) {
-                List<Double> numericVals = nonNullValues.stream()
-                        .filter(v -> v instanceof Number)
-                        .map(v -> ((Number) v).doubleValue())
-                        .collect(Collectors.toList());
-                numericColumnData.put(col, numericVals);
-                analyzeNumericColumn(report, col, numericVals, totalRows);
-            } else if ("Date".equals(inferredType)) {
-                report.append("- **Date Range**: **").append(convertToDate(nonNullValues.stream().min(Comparator.comparingDouble(v -> ((Number) v).doubleValue())).map(v -> ((Number)v).doubleValue()).orElse(0.0)))
-                        .append("** to **").append(convertToDate(nonNullValues.stream().max(Comparator.comparingDouble(v -> ((Number) v).doubleValue())).map(v -> ((Number)v).doubleValue()).orElse(0.0))).append("**.\n");
-            } else {
-                List<String> catVals = nonNullValues.stream().map(Object::toString).collect(Collectors.toList());
-                categoricalColumnData.put(col, catVals);
-                analyzeCategoricalColumn(report, col, catVals, totalRows);
+                numericColumnData.put(profile.getName(), profile.getNumericValues());
+            } else if (!"Date".equals(inferredType)) {
+                categoricalColumnData.put(profile.getName(), profile);
             }
         }
 
+        Map<String, Map<String, Double>> correlations = analysis.getCorrelationMatrix();
         final AtomicBoolean insightsAdded = new AtomicBoolean(false);
         report.append("\n---\n\n### 📈 Correlation Analysis & Dynamic Insights\n\n");
 
         if (!numericColumnData.isEmpty()) {
             report.append("To better understand the relationships between your variables, a correlation heatmap is a powerful tool. \n\n");
             report.append("Here's a look at some of the most notable relationships:\n");
-            Map<String, Map<String, Double>> correlations = calculateCorrelationMatrix(numericColumnData);
             correlations.forEach((col1, innerMap) -> {
                 innerMap.forEach((col2, corr) -> {
                     if (corr > 0.95 || corr < -0.95) {
@@ -120,8 +184,8 @@ public class AIAnalysisService {
         if (!categoricalColumnData.isEmpty()) {
             report.append("\n---\n\n### 📊 Distribution Insights\n\n");
             report.append("These insights highlight key characteristics about the distribution of your data.\n\n");
-            categoricalColumnData.forEach((col, values) -> {
-                if (isHighlyImbalanced(values)) {
+            categoricalColumnData.forEach((col, profile) -> {
+                if (isHighlyImbalanced(profile)) {
                     report.append(String.format("- **⚠️ Imbalance Detected**: The column `**%s**` is highly imbalanced, with a few categories dominating the data. This could affect model performance.\n", col));
                     insightsAdded.set(true);
                 }
@@ -144,15 +208,9 @@ public class AIAnalysisService {
             recommendationsAdded.set(true);
         }
 
-        Map<String, List<Object>> columnDataMap = allColumns.stream()
-                .collect(Collectors.toMap(
-                        col -> col,
-                        col -> excelData.stream().map(row -> row.get(col)).collect(Collectors.toList())
-                ));
-
-        for (String col : allColumns) {
-            List<Object> values = columnDataMap.get(col);
-            long emptyCount = values.stream().filter(v -> v == null || v.toString().isBlank()).count();
+        for (ColumnProfile profile : profiles) {
+            String col = profile.getName();
+            long emptyCount = profile.getEmptyCount();
             double missingPercentage = (double) emptyCount / totalRows;
 
             if (missingPercentage > 0.90) {
@@ -164,16 +222,13 @@ public class AIAnalysisService {
             }
 
             if (numericColumnData.containsKey(col)) {
-                List<Double> numericVals = numericColumnData.get(col);
-                List<Double> outliers = detectOutliers(numericVals);
-                if (!outliers.isEmpty()) {
-                    report.append(String.format("- **Investigate Outliers**: The column `**%s**` has **%d** potential outliers. This may indicate data entry errors or unusual events that need to be investigated.\n", col, outliers.size()));
+                if (profile.getOutlierCount() > 0) {
+                    report.append(String.format("- **Investigate Outliers**: The column `**%s**` has **%d** potential outliers. This may indicate data entry errors or unusual events that need to be investigated.\n", col, profile.getOutlierCount()));
                     recommendationsAdded.set(true);
                 }
             }
 
             if (numericColumnData.containsKey(col)) {
-                Map<String, Map<String, Double>> correlations = calculateCorrelationMatrix(numericColumnData);
                 for (String otherCol : correlations.getOrDefault(col, Collections.emptyMap()).keySet()) {
                     if (!col.equals(otherCol) && Math.abs(correlations.get(col).get(otherCol)) > 0.95) {
                         report.append(String.format("- **Check Redundancy**: The column `**%s**` is highly correlated (**%.2f**) with `**%s**`. Consider if one of these columns is redundant.\n", col, correlations.get(col).get(otherCol), otherCol));
@@ -183,11 +238,9 @@ public class AIAnalysisService {
             }
         }
 
-        allColumns.stream()
-                .filter(col -> {
-                    List<Object> values = excelData.stream().map(row -> row.get(col)).collect(Collectors.toList());
-                    return values.stream().filter(Objects::nonNull).distinct().count() == 1;
-                })
+        profiles.stream()
+                .filter(ColumnProfile::isConstant)
+                .map(ColumnProfile::getName)
                 .forEach(col -> {
                     report.append(String.format("- **Drop Constant Column**: The column `**%s**` has only one unique value. It provides no predictive power and can be dropped.\n", col));
                     recommendationsAdded.set(true);
@@ -197,136 +250,162 @@ public class AIAnalysisService {
             report.append("No actionable recommendations were identified for this dataset. The data appears to be well-structured.");
         }
 
+        metrics.stopStage(stage, totalRows, totalColumns);
         return report.toString();
     }
 
-    public ChartDataDto getChartData(List<Map<String, Object>> excelData) {
+    /** Rows per block summarized while an upload is parsed; 0 profiles the whole dataset afterwards. */
+    public int getChunkRows() {
+        return chunkRows;
+    }
+
+    /** Summarizes the row blocks of one upload on the analysis pool, one block per allowed worker. */
+    public ChunkedSummarizer newChunkedSummarizer() {
+        return new ChunkedSummarizer(chunkPool, maxParallelismPerRequest, this::newDatasetSummary);
+    }
+
+    /** An empty running summary with the configured sketch settings. */
+    public DatasetSummary newDatasetSummary() {
+        return new DatasetSummary(sketchRankError, categoryThreshold, categoryCapacity);
+    }
+
+    /** The settings that change the report or chart data; part of the result cache key. */
+    public String getSettingsFingerprint() {
+        return settingsFingerprint;
+    }
+
+    /** Stores chart data computed earlier for this dataset, e.g. restored from the result cache. */
+    public void rememberChartData(Dataset dataset, ChartDataDto dto) {
+        chartData.put(dataset, dto);
+    }
+
+    public ChartDataDto getChartData(Dataset excelData) {
         if (excelData == null || excelData.isEmpty()) {
             return new ChartDataDto();
         }
+        ChartDataDto remembered = chartData.get(excelData);
+        if (remembered != null) {
+            return remembered;
+        }
+
+        ChartDataDto dto = buildChartData(analyze(excelData, ProgressListener.NONE), null, 0);
+        chartData.put(excelData, dto);
+
+        return dto;
+    }
+
+    /**
+     * Chart data whose histograms have {@code bins} bins laid out by {@code binning}; when both are
+     * null it is the default chart data. The histograms are rebuilt from the dataset's analysis,
+     * not from another pass over the rows, and are not kept.
+     */
+    public ChartDataDto getChartData(Dataset excelData, Integer bins, Binning binning) {
+        if ((bins == null && binning == null) || excelData == null || excelData.isEmpty()) {
+            return getChartData(excelData);
+        }
+        return buildChartData(analyze(excelData, ProgressListener.NONE),
+                binning == null ? Binning.FIXED : binning, bins == null ? Histogram.DEFAULT_BINS : bins);
+    }
 
+    /** A null binning keeps each profile's default histogram. */
+    private ChartDataDto buildChartData(DatasetAnalysis analysis, Binning binning, int bins) {
         ChartDataDto dto = new ChartDataDto();
-        Set<String> allColumns = excelData.get(0).keySet();
         Map<String, NumericSummaryDto> numericSummaries = new HashMap<>();
         Map<String, Map<String, Long>> categoricalFrequencies = new HashMap<>();
-        Map<String, List<Double>> numericColumnDataForCorrelation = new HashMap<>();
 
-        for (String col : allColumns) {
-            List<Object> values = excelData.stream().map(row -> row.get(col)).collect(Collectors.toList());
-            List<Object> nonNullValues = values.stream().filter(Objects::nonNull).collect(Collectors.toList());
-            String inferredType = inferType(values);
+        for (ColumnProfile profile : analysis.getProfiles()) {
+            String col = profile.getName();
+            String inferredType = profile.getInferredType();
 
             if ("Numeric".equals(inferredType)) {
-                List<Double> numericVals = nonNullValues.stream()
-                        .filter(v -> v instanceof Number)
-                        .map(v -> ((Number) v).doubleValue())
-                        .collect(Collectors.toList());
-
-                numericSummaries.put(col, calculateNumericSummary(numericVals));
-                numericColumnDataForCorrelation.put(col, numericVals);
+                numericSummaries.put(col, binning == null ? profile.toNumericSummary() : profile.toNumericSummary(bins, binning));
             } else if ("Categorical".equals(inferredType)) {
-                Map<String, Long> freq = nonNullValues.stream()
-                        .map(Object::toString)
-                        .collect(Collectors.groupingBy(s -> s, Collectors.counting()));
-
-                categoricalFrequencies.put(col, topNWithOther(freq, 20));
+                categoricalFrequencies.put(col, topNWithOther(profile.getCategories(), 20));
             }
         }
 
         dto.setNumericData(numericSummaries);
         dto.setCategoricalFrequencies(categoricalFrequencies);
-        dto.setCorrelationMatrix(calculateCorrelationMatrix(numericColumnDataForCorrelation));
-
+        dto.setCorrelationMatrix(analysis.getCorrelationMatrix());
         return dto;
     }
 
-    public byte[] generatePdfReport(String reportContent, Map<String, String> chartImages) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            Document document = new Document();
-            PdfWriter.getInstance(document, baos);
-            document.open();
-
-            document.add(new Paragraph(reportContent));
-
-            document.add(new Paragraph("\n\n---"));
-            document.add(new Paragraph("### Charts & Visualizations"));
-
-            for (Map.Entry<String, String> entry : chartImages.entrySet()) {
-                String base64Data = entry.getValue().split(",")[1];
-                byte[] imageBytes = Base64.getDecoder().decode(base64Data);
-                Image chartImage = Image.getInstance(imageBytes);
+    /** Writes the report to {@code out}, with the uploaded chart images and, when given, charts drawn from the chart data. */
+    public void writePdfReport(String reportContent, Map<String, String> chartImages, ChartDataDto chartData,
+                               OutputStream out) throws IOException {
+        pdfReportWriter.write(reportContent, chartImages, chartData, out);
+    }
 
-                float documentWidth = document.getPageSize().getWidth() - document.leftMargin() - document.rightMargin();
-                float scale = (documentWidth / chartImage.getWidth()) * 100;
-                chartImage.scalePercent(scale);
+    public void writeExcelReport(Dataset data, OutputStream out) throws IOException {
+        excelExportWriter.write(data, "Data Analysis", out);
+    }
 
-                document.add(chartImage);
-                document.add(new Paragraph("\n"));
-            }
+    // --- Helper Methods ---
 
-            document.close();
-            return baos.toByteArray();
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
+    private String columnInsight(ColumnProfile profile, int totalRows) {
+        StringBuilder section = new StringBuilder();
+        section.append("\n**`").append(profile.getName()).append("`**\n");
+        long emptyCount = profile.getEmptyCount();
+        String inferredType = profile.getInferredType();
+        long uniqueCount = profile.getDistinctCount();
+        double uniquePercentage = (double) uniqueCount / totalRows * 100;
+
+        section.append("- **Type**: ").append(inferredType).append("\n");
+        section.append("- **Missing Values**: ").append(emptyCount).append(" (").append(String.format("%.2f", (double) emptyCount / totalRows * 100)).append("%)\n");
+        section.append("- **Unique Values**: ").append(uniqueCount).append(" (Cardinality: ").append(String.format("%.2f", uniquePercentage)).append("%)\n");
+
+        if ("Numeric".equals(inferredType)) {
+            analyzeNumericColumn(section, profile, totalRows);
+        } else if ("Date".equals(inferredType)) {
+            section.append("- **Date Range**: **").append(convertToDate(profile.getMin()))
+                    .append("** to **").append(convertToDate(profile.getMax())).append("**.\n");
+        } else {
+            analyzeCategoricalColumn(section, profile);
         }
+        return section.toString();
     }
 
-    public byte[] generateExcelReport(List<Map<String, Object>> data) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            Workbook workbook = new XSSFWorkbook(); // Correct instantiation
-            Sheet sheet = workbook.createSheet("Data Analysis");
-
-            Row headerRow = sheet.createRow(0);
-            List<String> columns = new ArrayList<>(data.get(0).keySet());
-            for (int i = 0; i < columns.size(); i++) {
-                headerRow.createCell(i).setCellValue(columns.get(i));
-            }
-
-            for (int i = 0; i < data.size(); i++) {
-                Row row = sheet.createRow(i + 1);
-                Map<String, Object> rowData = data.get(i);
-                for (int j = 0; j < columns.size(); j++) {
-                    Object value = rowData.get(columns.get(j));
-                    if (value != null) {
-                        if (value instanceof Number) {
-                            row.createCell(j).setCellValue(((Number) value).doubleValue());
-                        } else {
-                            row.createCell(j).setCellValue(value.toString());
-                        }
-                    }
+    private DatasetAnalysis analyze(Dataset dataset, ProgressListener progress) {
+        DatasetAnalysis analysis = analyses.get(dataset);
+        if (analysis == null) {
+            int totalColumns = dataset.getColumnCount();
+            AtomicInteger profiled = new AtomicInteger();
+            Observation stage = metrics.startStage("exalyze.analysis", "stage", "profiling");
+            List<ColumnProfile> profiles = runner.map(dataset.getColumns(), column -> {
+                long columnStart = System.nanoTime();
+                ColumnProfile profile = profiler.profile(column);
+                metrics.recordColumn(profile.getInferredType(), columnStart);
+                progress.columnsProfiled(profiled.incrementAndGet(), totalColumns);
+                return profile;
+            });
+            metrics.stopStage(stage, dataset.getRowCount(), totalColumns);
+            Map<String, double[]> numericColumns = new LinkedHashMap<>();
+            for (ColumnProfile profile : profiles) {
+                if ("Numeric".equals(profile.getInferredType())) {
+                    numericColumns.put(profile.getName(), profile.getNumericValues());
                 }
             }
-            workbook.write(baos);
-            return baos.toByteArray();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
+            stage = metrics.startStage("exalyze.analysis", "stage", "correlation");
+            Map<String, Map<String, Double>> correlations = correlationEngine.correlate(numericColumns);
+            metrics.stopStage(stage, dataset.getRowCount(), numericColumns.size());
+            // The analysis lives as long as the dataset; it keeps histograms, not copies of the numeric columns.
+            profiles.forEach(ColumnProfile::dropNumericValues);
+            analysis = new DatasetAnalysis(dataset.getRowCount(), profiles, correlations);
+            analyses.put(dataset, analysis);
         }
+        return analysis;
     }
 
-    // --- Helper Methods ---
-
-    private Map<String, Long> topNWithOther(Map<String, Long> freq, int n) {
-        if (freq.size() <= n) {
-            return freq;
-        }
-
-        List<Map.Entry<String, Long>> sortedEntries = freq.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .collect(Collectors.toList());
-
+    private Map<String, Long> topNWithOther(CategorySketch categories, int n) {
         Map<String, Long> topNMap = new LinkedHashMap<>();
-        long otherCount = 0;
+        long otherCount = categories.getTotal();
 
-        for (int i = 0; i < sortedEntries.size(); i++) {
-            if (i < n) {
-                topNMap.put(sortedEntries.get(i).getKey(), sortedEntries.get(i).getValue());
-            } else {
-                otherCount += sortedEntries.get(i).getValue();
-            }
+        for (Map.Entry<String, Long> entry : categories.top(n)) {
+            topNMap.put(entry.getKey(), entry.getValue());
+            otherCount -= entry.getValue();
         }
 
+        // Sketched counts may overestimate, so the remainder is clamped.
         if (otherCount > 0) {
             topNMap.put("Other", otherCount);
         }
@@ -334,199 +413,48 @@ public class AIAnalysisService {
         return topNMap;
     }
 
-    private String createNumericSummaryText(String columnName, List<Double> values, int totalRows) {
-        if (values.isEmpty()) {
+    private String createNumericSummaryText(ColumnProfile profile, int totalRows) {
+        if (profile.getNumericCount() == 0) {
             return "This column is empty.";
         }
-        Collections.sort(values);
-        double min = values.get(0);
-        double max = values.get(values.size() - 1);
-        double median = calculateMedian(values);
-        long missingCount = totalRows - values.size();
+        long missingCount = totalRows - profile.getNumericCount();
         double missingPercentage = (double) missingCount / totalRows * 100;
-        List<Double> outliers = detectOutliers(values);
         StringBuilder summary = new StringBuilder();
-        summary.append("The '").append(columnName).append("' data ranges from **").append(String.format("%.2f", min)).append("** to **").append(String.format("%.2f", max)).append("**. ");
-        summary.append("The median value is **").append(String.format("%.2f", median)).append("**. ");
+        summary.append("The '").append(profile.getName()).append("' data ranges from **").append(String.format("%.2f", profile.getMin())).append("** to **").append(String.format("%.2f", profile.getMax())).append("**. ");
+        summary.append("The median value is **").append(String.format("%.2f", profile.getMedian())).append("**. ");
         if (missingCount > 0) {
             summary.append("About **").append(String.format("%.0f%%", missingPercentage)).append(" of the values are missing**. ");
         }
-        if (!outliers.isEmpty()) {
-            summary.append("**").append(outliers.size()).append(" potential outliers** were detected.");
+        if (profile.getOutlierCount() > 0) {
+            summary.append("**").append(profile.getOutlierCount()).append(" potential outliers** were detected.");
         }
         return summary.toString();
     }
 
-    private NumericSummaryDto calculateNumericSummary(List<Double> values) {
-        NumericSummaryDto summary = new NumericSummaryDto();
-        if (values.isEmpty()) {
-            return summary;
-        }
-        Collections.sort(values);
-        summary.setMin(values.get(0));
-        summary.setMax(values.get(values.size() - 1));
-        summary.setAvg(values.stream().mapToDouble(Double::doubleValue).average().orElse(0.0));
-        summary.setMedian(calculateMedian(values));
-        summary.setStDev(calculateStandardDeviation(values, summary.getAvg()));
-        summary.setHistogramBins(createHistogramBins(values));
-        return summary;
-    }
-
-    private List<Bin> createHistogramBins(List<Double> values) {
-        final int numBins = 10;
-        if (values.size() < 2) {
-            return Collections.emptyList();
-        }
-        double min = values.get(0);
-        double max = values.get(values.size() - 1);
-        double range = max - min;
-        double binSize = range / numBins;
-        if (binSize == 0) {
-            Bin bin = new Bin();
-            bin.setLabel(String.format("%.2f", min));
-            bin.setCount(values.size());
-            return Collections.singletonList(bin);
-        }
-        List<Bin> bins = new ArrayList<>(numBins);
-        for (int i = 0; i < numBins; i++) {
-            Bin bin = new Bin();
-            bin.setLabel(String.format("%.2f-%.2f", min + i * binSize, min + (i + 1) * binSize));
-            bin.setCount(0);
-            bins.add(bin);
-        }
-        for (Double value : values) {
-            int binIndex = (int) Math.min(Math.floor((value - min) / binSize), numBins - 1);
-            if (binIndex >= 0) {
-                bins.get(binIndex).setCount(bins.get(binIndex).getCount() + 1);
-            }
-        }
-        return bins;
-    }
-
-    private List<Map<String, Object>> findDuplicateRows(List<Map<String, Object>> excelData) {
-        Set<Map<String, Object>> seen = new HashSet<>();
-        List<Map<String, Object>> duplicates = new ArrayList<>();
-        for (Map<String, Object> row : excelData) {
-            if (!seen.add(row)) {
-                duplicates.add(row);
-            }
-        }
-        return duplicates;
-    }
-
-    private String inferType(List<Object> values) {
-        List<Object> nonNullValues = values.stream().filter(Objects::nonNull).collect(Collectors.toList());
-        if (nonNullValues.isEmpty()) {
-            return "Empty";
-        }
-        long numericCount = nonNullValues.stream().filter(v -> v instanceof Number).count();
-        if ((double) numericCount / nonNullValues.size() > 0.8) {
-            long dateLikeValues = nonNullValues.stream()
-                    .filter(v -> v instanceof Number)
-                    .map(v -> ((Number) v).doubleValue())
-                    .filter(d -> {
-                        double minDateSerial = LocalDate.of(1970, 1, 1).toEpochDay() + EXCEL_EPOCH_OFFSET;
-                        double maxDateSerial = LocalDate.of(2100, 1, 1).toEpochDay() + EXCEL_EPOCH_OFFSET;
-                        return d >= minDateSerial && d <= maxDateSerial;
-                    })
-                    .count();
-
-            if ((double) dateLikeValues / nonNullValues.size() > 0.8) {
-                return "Date";
-            }
-            return "Numeric";
-        }
-        long uniqueCount = nonNullValues.stream().distinct().count();
-        if (uniqueCount == nonNullValues.size()) {
-            return "ID/Text";
-        }
-        return "Categorical";
-    }
-
-    private void analyzeNumericColumn(StringBuilder report, String columnName, List<Double> values, int totalRows) {
-        if (values.isEmpty()) return;
-        String summaryText = createNumericSummaryText(columnName, values, totalRows);
+    private void analyzeNumericColumn(StringBuilder report, ColumnProfile profile, int totalRows) {
+        if (profile.getNumericCount() == 0) return;
+        String summaryText = createNumericSummaryText(profile, totalRows);
         report.append("- **Summary**: ").append(summaryText).append("\n");
-        double min = values.stream().min(Double::compare).orElse(0.0);
-        double max = values.stream().max(Double::compare).orElse(0.0);
-        double avg = values.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-        double median = calculateMedian(values);
-        double stDev = calculateStandardDeviation(values, avg);
-        List<Double> outliers = detectOutliers(values);
-        report.append("- **Range**: **").append(String.format("%.2f", min)).append(" - ").append(String.format("%.2f", max)).append("**\n");
-        report.append("- **Median**: **").append(String.format("%.2f", median)).append("**\n");
-        report.append("- **Standard Deviation**: **").append(String.format("%.2f", stDev)).append("**\n");
-        report.append("- **Outliers**: ").append(outliers.size()).append(" detected.\n");
+        report.append("- **Range**: **").append(String.format("%.2f", profile.getMin())).append(" - ").append(String.format("%.2f", profile.getMax())).append("**\n");
+        report.append("- **Median**: **").append(String.format("%.2f", profile.getMedian())).append("**\n");
+        report.append("- **Standard Deviation**: **").append(String.format("%.2f", profile.getStandardDeviation())).append("**\n");
+        report.append("- **Outliers**: ").append(profile.getOutlierCount()).append(" detected.\n");
     }
 
-    private void analyzeCategoricalColumn(StringBuilder report, String columnName, List<String> values, int totalRows) {
-        Map<String, Long> freq = values.stream().collect(Collectors.groupingBy(s -> s, Collectors.counting()));
-        if (freq.isEmpty()) return;
-        long uniqueCount = values.stream().distinct().count();
+    private void analyzeCategoricalColumn(StringBuilder report, ColumnProfile profile) {
+        CategorySketch categories = profile.getCategories();
+        if (categories == null || categories.getTotal() == 0) return;
+        long nonNullCount = profile.getNonNullCount();
         report.append("- **Top Categories**:\n");
-        freq.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(5)
-                .forEach(e -> report.append("  - **").append(e.getKey()).append("** (").append(String.format("%.1f", (double) e.getValue() / values.size() * 100)).append("%)\n"));
-    }
-
-    private boolean isHighlyImbalanced(List<String> values) {
-        Map<String, Long> freq = values.stream().collect(Collectors.groupingBy(s -> s, Collectors.counting()));
-        if (freq.size() <= 1) return false;
-        long maxCount = freq.values().stream().max(Long::compare).orElse(0L);
-        return (double) maxCount / values.size() > 0.90;
-    }
-
-    private Map<String, Map<String, Double>> calculateCorrelationMatrix(Map<String, List<Double>> numericData) {
-        Map<String, Map<String, Double>> correlations = new HashMap<>();
-        List<String> columns = new ArrayList<>(numericData.keySet());
-        for (int i = 0; i < columns.size(); i++) {
-            for (int j = i; j < columns.size(); j++) {
-                String col1 = columns.get(i);
-                String col2 = columns.get(j);
-                if (i == j) {
-                    correlations.computeIfAbsent(col1, k -> new HashMap<>()).put(col2, 1.0);
-                    continue;
-                }
-                List<Double> vals1 = numericData.get(col1);
-                List<Double> vals2 = numericData.get(col2);
-                if (vals1.size() == vals2.size() && vals1.size() > 1) {
-                    double mean1 = vals1.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-                    double mean2 = vals2.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-                    double numerator = 0.0;
-                    double denominator1 = 0.0;
-                    double denominator2 = 0.0;
-                    for (int k = 0; k < vals1.size(); k++) {
-                        double diff1 = vals1.get(k) - mean1;
-                        double diff2 = vals2.get(k) - mean2;
-                        numerator += diff1 * diff2;
-                        denominator1 += diff1 * diff1;
-                        denominator2 += diff2 * diff2;
-                    }
-                    double correlation = (denominator1 * denominator2 == 0) ? 0 : numerator / Math.sqrt(denominator1 * denominator2);
-                    correlations.computeIfAbsent(col1, k -> new HashMap<>()).put(col2, correlation);
-                    correlations.computeIfAbsent(col2, k -> new HashMap<>()).put(col1, correlation);
-                }
-            }
-        }
-        return correlations;
-    }
-
-    private double calculateMedian(List<Double> values) {
-        if (values.isEmpty()) return 0.0;
-        Collections.sort(values);
-        int mid = values.size() / 2;
-        if (values.size() % 2 == 1) {
-            return values.get(mid);
-        } else {
-            return (values.get(mid - 1) + values.get(mid)) / 2.0;
-        }
+        categories.top(5)
+                .forEach(e -> report.append("  - **").append(e.getKey()).append("** (").append(String.format("%.1f", (double) e.getValue() / nonNullCount * 100)).append("%)\n"));
     }
 
-    private double calculateStandardDeviation(List<Double> values, double mean) {
-        if (values.size() < 2) return 0.0;
-        double sumOfSquares = values.stream().mapToDouble(v -> Math.pow(v - mean, 2)).sum();
-        return Math.sqrt(sumOfSquares / values.size());
+    private boolean isHighlyImbalanced(ColumnProfile profile) {
+        CategorySketch categories = profile.getCategories();
+        if (categories == null || categories.getDistinctCount() <= 1) return false;
+        long maxCount = categories.top(1).get(0).getValue();
+        return (double) maxCount / profile.getNonNullCount() > 0.90;
     }
 
     private String convertToDate(double excelSerial) {
@@ -535,17 +463,6 @@ public class AIAnalysisService {
         return date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
     }
 
-    private List<Double> detectOutliers(List<Double> values) {
-        if (values.size() < 4) return Collections.emptyList();
-        Collections.sort(values);
-        int mid = values.size() / 2;
-        double q1 = (values.size() % 2 == 1) ? values.get(mid / 2) : (values.get(mid / 2 - 1) + values.get(mid / 2)) / 2.0;
-        double q3 = (values.size() % 2 == 1) ? values.get(mid + mid / 2) : (values.get(mid + mid / 2) + values.get(mid + mid / 2 + 1)) / 2.0;
-        double iqr = q3 - q1;
-        double lowerBound = q1 - 1.5 * iqr;
-        double upperBound = q3 + 1.5 * iqr;
-        return values.stream().filter(v -> v < lowerBound || v > upperBound).collect(Collectors.toList());
-    }
     private double calculateOverallQualityScore(double emptyPercentage, double duplicatePercentage) {
         // These weights can be adjusted based on the importance of each factor
         double missingWeight = 0.5;
@@ -559,8 +476,25 @@ public class AIAnalysisService {
     }
 
 
-    public String analyzeData(List<Map<String, Object>> data) {
+    public String analyzeData(Dataset data) {
         // This is the one-line fix!
         return analyzeExcelData(data);
     }
+
+    public String analyzeData(Dataset data, ProgressListener progress) {
+        return analyzeExcelData(data, progress);
+    }
+
+    /** One report per sheet, each under a heading with the sheet's name. */
+    public String analyzeSheets(List<SheetDataset> sheets, ProgressListener progress) {
+        StringBuilder report = new StringBuilder();
+        for (SheetDataset sheet : sheets) {
+            if (report.length() > 0) {
+                report.append("\n\n---\n\n");
+            }
+            report.append("## 🗂️ Sheet: ").append(sheet.getName()).append("\n\n");
+            report.append(analyzeExcelData(sheet.getData(), progress));
+        }
+        return report.toString();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,151 @@
+package com.unit00.exalyze.service;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * One upload being parsed and analyzed in the background. Progress fields are written by the
+ * worker thread and read by status requests, hence volatile. Cancelling only sets a flag. The
+ * worker sees it at its next progress callback or stage change, and a queued job stops as soon
+ * as it starts, so the worker always cleans up its own upload copy. A finished job refers to its
+ * rows by dataset id only, so they stay under the {@link DatasetCache} budget.
+ */
+public class AnalysisJob implements ProgressListener {
+
+    public enum Stage { QUEUED, PARSING, PROFILING, REPORTING, DONE, FAILED, CANCELLED }
+
+    private final String id;
+    private final String filename;
+    private final long createdAt = System.currentTimeMillis();
+
+    private volatile Stage stage = Stage.QUEUED;
+    private volatile long rowsParsed;
+    private volatile int columnsProfiled;
+    private volatile int totalColumns;
+    private volatile long finishedAt;
+    private volatile String error;
+    private volatile String analysis;
+    private volatile String datasetId;
+    private volatile int rowCount;
+    private volatile int columnCount;
+    private volatile boolean cancelRequested;
+
+    AnalysisJob(String id, String filename) {
+        this.id = id;
+        this.filename = filename;
+    }
+
+    @Override
+    public void rowsParsed(long rows) {
+        checkCancelled();
+        rowsParsed = rows;
+    }
+
+    @Override
+    public void analysisStarted() {
+        moveTo(Stage.PROFILING);
+    }
+
+    @Override
+    public void columnsProfiled(int profiled, int total) {
+        checkCancelled();
+        columnsProfiled = profiled;
+        totalColumns = total;
+    }
+
+    void checkCancelled() {
+        if (cancelRequested) {
+            throw new CancellationException("Job " + id + " was cancelled");
+        }
+    }
+
+    void moveTo(Stage stage) {
+        checkCancelled();
+        this.stage = stage;
+    }
+
+    // The first terminal stage wins: a job cancelled while it finishes stays cancelled.
+    synchronized void complete(String analysis, String datasetId, int rowCount, int columnCount) {
+        if (!isFinished()) {
+            this.analysis = analysis;
+            this.datasetId = datasetId;
+            this.rowCount = rowCount;
+            this.columnCount = columnCount;
+            finish(Stage.DONE);
+        }
+    }
+
+    synchronized void fail(String error) {
+        if (!isFinished()) {
+            this.error = error;
+            finish(Stage.FAILED);
+        }
+    }
+
+    synchronized void cancel() {
+        cancelRequested = true;
+        if (!isFinished()) {
+            finish(Stage.CANCELLED);
+        }
+    }
+
+    private void finish(Stage stage) {
+        this.stage = stage;
+        finishedAt = System.currentTimeMillis();
+    }
+
+    public boolean isFinished() {
+        return stage == Stage.DONE || stage == Stage.FAILED || stage == Stage.CANCELLED;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public long getRowsParsed() {
+        return rowsParsed;
+    }
+
+    public int getColumnsProfiled() {
+        return columnsProfiled;
+    }
+
+    public int getTotalColumns() {
+        return totalColumns;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public String getAnalysis() {
+        return analysis;
+    }
+
+    public String getDatasetId() {
+        return datasetId;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+}
@@ -0,0 +1,148 @@
+package com.unit00.exalyze.service;
+
+import io.micrometer.observation.Observation;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Runs upload parsing and analysis on a dedicated executor, so the HTTP request only has to store
+ * the upload. Jobs are kept in memory and evicted once they have been finished for longer than
+ * the TTL. Eviction is checked whenever a job is submitted or looked up.
+ */
+@Service
+public class AnalysisJobService {
+
+    private final UploadAnalyzer uploadAnalyzer;
+    private final ExecutorService executor;
+    private final long ttlMillis;
+    private final PipelineMetrics metrics;
+    private final UploadAdmission admission;
+    private final Map<String, AnalysisJob> jobs = new ConcurrentHashMap<>();
+
+    public AnalysisJobService(UploadAnalyzer uploadAnalyzer,
+                              @Qualifier("analysisJobExecutor") ExecutorService executor,
+                              @Value("${exalyze.jobs.ttl-minutes:30}") long ttlMinutes,
+                              PipelineMetrics metrics,
+                              UploadAdmission admission) {
+        this.uploadAnalyzer = uploadAnalyzer;
+        this.executor = executor;
+        this.ttlMillis = ttlMinutes * 60_000;
+        this.metrics = metrics;
+        this.admission = admission;
+        metrics.gauge("exalyze.jobs.active", "Background jobs queued or running",
+                () -> jobs.values().stream().filter(job -> !job.isFinished()).count());
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            metrics.gauge("exalyze.jobs.queued", "Background jobs waiting for a worker", () -> pool.getQueue().size());
+        }
+    }
+
+    public AnalysisJob submit(MultipartFile file) throws IOException {
+        return submit(file, null);
+    }
+
+    /** A null sheet mode uses the configured default. */
+    public AnalysisJob submit(MultipartFile file, SheetMode sheetMode) throws IOException {
+        evictExpired();
+        // The multipart temp file is deleted when the request ends, so the job works on its own copy.
+        Path upload = Files.createTempFile("exalyze-job-", ".upload");
+        // Until the job is queued nothing else deletes the copy, so every failure up to then must.
+        boolean queued = false;
+        try {
+            file.transferTo(upload);
+            String filename = file.getOriginalFilename();
+            long size = file.getSize();
+
+            AnalysisJob job = new AnalysisJob(UUID.randomUUID().toString(), filename);
+            jobs.put(job.getId(), job);
+            try {
+                executor.execute(() -> run(job, upload, filename, size, sheetMode));
+            } catch (RejectedExecutionException e) {
+                jobs.remove(job.getId());
+                throw e;
+            }
+            queued = true;
+            return job;
+        } finally {
+            if (!queued) {
+                try {
+                    Files.deleteIfExists(upload);
+                } catch (IOException e) {
+                    System.err.println("Could not delete upload copy " + upload + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public AnalysisJob get(String id) {
+        evictExpired();
+        return jobs.get(id);
+    }
+
+    /** Returns false if there is no such job. */
+    public boolean cancel(String id) {
+        AnalysisJob job = jobs.get(id);
+        if (job == null) {
+            return false;
+        }
+        job.cancel();
+        return true;
+    }
+
+    private void run(AnalysisJob job, Path upload, String filename, long size, SheetMode sheetMode) {
+        Observation observation = metrics.startUpload(filename, size, null);
+        try (Observation.Scope scope = observation.openScope()) {
+            // Jobs share the memory budget of direct uploads; a queued job holds no worker memory until admitted.
+            long reserved = admission.admit(filename, size);
+            if (reserved < 0) {
+                job.fail("Not enough memory for this upload right now, try again later.");
+                return;
+            }
+            AnalysisResult result;
+            try {
+                job.moveTo(AnalysisJob.Stage.PARSING);
+                // Status only reports the counts; clients page through the stored rows.
+                result = uploadAnalyzer.analyze(new FileSystemResource(upload), filename, size, sheetMode, false, job);
+            } finally {
+                admission.release(reserved);
+            }
+            Files.deleteIfExists(upload);
+
+            job.moveTo(AnalysisJob.Stage.REPORTING);
+            job.complete(result.getAnalysis(), result.getDatasetId(), result.getRowCount(), result.getColumnCount());
+        } catch (CancellationException e) {
+            System.out.println("Job " + job.getId() + " cancelled.");
+            observation.error(e);
+        } catch (Exception e) {
+            e.printStackTrace();
+            job.fail("Failed to process file: " + e.getMessage());
+            observation.error(e);
+        } finally {
+            observation.stop();
+            try {
+                Files.deleteIfExists(upload);
+            } catch (IOException e) {
+                System.err.println("Could not delete upload copy " + upload + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void evictExpired() {
+        long cutoff = System.currentTimeMillis() - ttlMillis;
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt() < cutoff);
+    }
+}
@@ -0,0 +1,60 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dto.ChartDataDto;
+
+/**
+ * Everything an upload produces: the parsed rows, the markdown report and the chart data. Only the
+ * report and chart data outlive the request, as a {@link StoredAnalysis} in the result cache.
+ * Once the rows are stored in the {@link DatasetCache} the result also carries their dataset id,
+ * and the rows themselves may then be left out when the caller does not need them.
+ */
+public class AnalysisResult {
+
+    private final String datasetId;
+    private final Dataset data;
+    private final String analysis;
+    private final ChartDataDto chartData;
+    private final int rowCount;
+    private final int columnCount;
+
+    public AnalysisResult(Dataset data, String analysis, ChartDataDto chartData) {
+        this(null, data, analysis, chartData, data.getRowCount(), data.getColumnCount());
+    }
+
+    public AnalysisResult(String datasetId, Dataset data, String analysis, ChartDataDto chartData,
+                          int rowCount, int columnCount) {
+        this.datasetId = datasetId;
+        this.data = data;
+        this.analysis = analysis;
+        this.chartData = chartData;
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+    }
+
+    /** Null until the rows are stored. */
+    public String getDatasetId() {
+        return datasetId;
+    }
+
+    /** Null if the rows are stored and were not asked for. */
+    public Dataset getData() {
+        return data;
+    }
+
+    public String getAnalysis() {
+        return analysis;
+    }
+
+    public ChartDataDto getChartData() {
+        return chartData;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+}
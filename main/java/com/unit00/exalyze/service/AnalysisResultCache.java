@@ -0,0 +1,224 @@
+package com.unit00.exalyze.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of upload results. The key is a SHA-256 over the analysis settings and
+ * the uploaded bytes, so the same file analyzed under the same configuration is analyzed only
+ * once. Only the report and chart data are kept; the rows of a repeated upload come from the
+ * {@link DatasetCache} while it still holds them and are parsed again otherwise, so parsed
+ * datasets are bounded by its budget alone. The memory tier is a Caffeine cache (W-TinyLFU)
+ * weighted by estimated result size. With the disk tier enabled, results evicted for size are serialized to a directory, which
+ * is itself trimmed oldest-first to its own budget.
+ */
+@Service
+public class AnalysisResultCache {
+
+    private final boolean enabled;
+    private final Cache<String, StoredAnalysis> memory;
+    private final Path diskDir;
+    private final long maxDiskBytes;
+
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong diskMisses = new AtomicLong();
+    private final AtomicLong diskWrites = new AtomicLong();
+
+    public AnalysisResultCache(@Value("${exalyze.results.enabled:true}") boolean enabled,
+                               @Value("${exalyze.results.max-memory-mb:64}") long maxMemoryMb,
+                               @Value("${exalyze.results.ttl-minutes:1440}") long ttlMinutes,
+                               @Value("${exalyze.results.disk-enabled:false}") boolean diskEnabled,
+                               @Value("${exalyze.results.disk-dir:}") String diskDir,
+                               @Value("${exalyze.results.max-disk-mb:2048}") long maxDiskMb) throws IOException {
+        this.enabled = enabled;
+        this.maxDiskBytes = maxDiskMb * 1024 * 1024;
+        if (enabled && diskEnabled) {
+            Path dir = diskDir.isBlank()
+                    ? Paths.get(System.getProperty("java.io.tmpdir"), "exalyze-results")
+                    : Paths.get(diskDir);
+            this.diskDir = Files.createDirectories(dir);
+        } else {
+            this.diskDir = null;
+        }
+        this.memory = Caffeine.newBuilder()
+                .maximumWeight(maxMemoryMb * 1024 * 1024)
+                .weigher((String key, StoredAnalysis result) -> (int) Math.min(Integer.MAX_VALUE, result.estimatedBytes()))
+                .expireAfterAccess(Duration.ofMinutes(ttlMinutes))
+                .removalListener((String key, StoredAnalysis result, RemovalCause cause) -> {
+                    // Runs on Caffeine's executor, so spilling does not hold up the request that caused the eviction.
+                    if (cause == RemovalCause.SIZE && this.diskDir != null && key != null && result != null) {
+                        writeToDisk(key, result);
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** SHA-256 over the settings string and the content, as lowercase hex. */
+    public String key(InputStreamSource source, String settings) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(settings.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = source.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /** Returns null on a miss in both tiers. A disk hit is promoted back into memory. */
+    public StoredAnalysis get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        StoredAnalysis result = memory.getIfPresent(key);
+        if (result != null || diskDir == null) {
+            return result;
+        }
+        result = readFromDisk(key);
+        if (result == null) {
+            diskMisses.incrementAndGet();
+            return null;
+        }
+        diskHits.incrementAndGet();
+        memory.put(key, result);
+        return result;
+    }
+
+    public void put(String key, StoredAnalysis result) {
+        if (enabled) {
+            memory.put(key, result);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = memory.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("entries", memory.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("evictedBytes", stats.evictionWeight());
+        result.put("diskEnabled", diskDir != null);
+        result.put("diskHits", diskHits.get());
+        result.put("diskMisses", diskMisses.get());
+        result.put("diskWrites", diskWrites.get());
+        return result;
+    }
+
+    private Path diskFile(String key) {
+        return diskDir.resolve(key + ".bin");
+    }
+
+    private void writeToDisk(String key, StoredAnalysis result) {
+        Path target = diskFile(key);
+        try {
+            // Write to a temp name and move, so a concurrent read never sees a partial file.
+            Path temp = Files.createTempFile(diskDir, key, ".tmp");
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeObject(result);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            diskWrites.incrementAndGet();
+            trimDisk();
+        } catch (IOException e) {
+            System.err.println("Could not write cached result " + key + ": " + e.getMessage());
+        }
+    }
+
+    private StoredAnalysis readFromDisk(String key) {
+        Path file = diskFile(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            in.setObjectInputFilter(ObjectInputFilter.Config.createFilter("com.unit00.exalyze.**;java.**;!*"));
+            StoredAnalysis result = (StoredAnalysis) in.readObject();
+            // The modification time doubles as the last-use time for trimming.
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return result;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            System.err.println("Could not read cached result " + key + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized void trimDisk() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(diskDir)) {
+            listing.filter(p -> p.getFileName().toString().endsWith(".bin")).forEach(files::add);
+        }
+        long total = 0;
+        for (Path file : files) {
+            total += Files.size(file);
+        }
+        if (total <= maxDiskBytes) {
+            return;
+        }
+        files.sort(Comparator.comparing(AnalysisResultCache::lastModified));
+        for (Path file : files) {
+            if (total <= maxDiskBytes) {
+                break;
+            }
+            long size = Files.size(file);
+            if (Files.deleteIfExists(file)) {
+                total -= size;
+            }
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.unit00.exalyze.service;
+
+import io.micrometer.observation.Observation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caps how many requests of each endpoint parse, analyze or render at the same time. Requests
+ * beyond the limit wait in order for a permit; on virtual threads a waiting request holds no
+ * platform thread, so many uploads can be received while the CPU-heavy work stays bounded.
+ * Waits are observed, so they show up as a stage of the upload's trace.
+ */
+@Service
+public class ConcurrencyLimits {
+
+    public enum Endpoint {
+        UPLOAD, DOWNLOAD_PDF, DOWNLOAD_EXCEL
+    }
+
+    private final Map<Endpoint, Semaphore> permits = new EnumMap<>(Endpoint.class);
+    private final long waitMillis;
+    private final PipelineMetrics metrics;
+
+    public ConcurrencyLimits(@Value("${exalyze.limits.upload:0}") int uploads,
+                             @Value("${exalyze.limits.download-pdf:0}") int pdfDownloads,
+                             @Value("${exalyze.limits.download-excel:0}") int excelDownloads,
+                             @Value("${exalyze.limits.wait-seconds:30}") long waitSeconds,
+                             PipelineMetrics metrics) {
+        this.waitMillis = waitSeconds * 1000;
+        this.metrics = metrics;
+        permits.put(Endpoint.UPLOAD, semaphore(uploads));
+        permits.put(Endpoint.DOWNLOAD_PDF, semaphore(pdfDownloads));
+        permits.put(Endpoint.DOWNLOAD_EXCEL, semaphore(excelDownloads));
+        for (Map.Entry<Endpoint, Semaphore> entry : permits.entrySet()) {
+            String endpoint = tag(entry.getKey());
+            Semaphore semaphore = entry.getValue();
+            int limit = semaphore.availablePermits();
+            metrics.gauge("exalyze.limits.in.use", "endpoint", endpoint, "Requests holding a permit",
+                    () -> limit - semaphore.availablePermits());
+            metrics.gauge("exalyze.limits.waiting", "endpoint", endpoint, "Requests waiting for a permit",
+                    semaphore::getQueueLength);
+        }
+    }
+
+    /** 0 allows one request per core. */
+    private static Semaphore semaphore(int limit) {
+        return new Semaphore(limit > 0 ? limit : Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    private static String tag(Endpoint endpoint) {
+        return endpoint.name().toLowerCase().replace('_', '-');
+    }
+
+    /** Waits up to the configured time for a permit; false means the endpoint stayed busy. */
+    public boolean tryAcquire(Endpoint endpoint) {
+        Observation wait = metrics.startStage("exalyze.limits.wait", "endpoint", tag(endpoint));
+        try {
+            return permits.get(endpoint).tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            metrics.stopStage(wait, 0, 0);
+        }
+    }
+
+    public void release(Endpoint endpoint) {
+        permits.get(endpoint).release();
+    }
+
+    /** Releases the endpoint's permit the first time it runs; later runs do nothing. */
+    public Runnable releaseOnce(Endpoint endpoint) {
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                release(endpoint);
+            }
+        };
+    }
+}
@@ -0,0 +1,371 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.dataset.Dataset;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps parsed uploads on the server under a dataset id, so chart data and downloads can refer to
+ * the id instead of posting every row back. The in-memory tier is an LRU bounded by estimated
+ * dataset size. What falls out of it is serialized to local disk when spilling is enabled, and
+ * dropped otherwise. Entries in either tier expire once unused for longer than the TTL. Spilling
+ * and reading back happen outside the lock: an evicted dataset stays reachable until it is on disk,
+ * and concurrent requests for a spilled id share a single read. A dataset can be stored under the
+ * content key of the upload it was parsed from, so a repeated upload finds it again until it is
+ * replaced by an append, removed or expired.
+ */
+@Service
+public class DatasetCache {
+
+    private static final class Entry {
+        Dataset dataset;
+        Path file;
+        long bytes;
+        long lastAccess;
+        // Set while one request reads the file back; other requests for the id wait for it.
+        CompletableFuture<Dataset> loading;
+        // The upload this version was parsed from, if any; cleared when the dataset is replaced.
+        String contentKey;
+    }
+
+    private final long maxMemoryBytes;
+    private final long ttlMillis;
+    private final Path spillDir;
+
+    // Access-ordered, so iteration starts at the least recently used dataset.
+    private final LinkedHashMap<String, Entry> inMemory = new LinkedHashMap<>(16, 0.75f, true);
+    // Spilled entries, including those still being written out (dataset set, file not yet).
+    private final Map<String, Entry> spilled = new HashMap<>();
+    // Content key to dataset id; pruned as entries go.
+    private final Map<String, String> byContent = new HashMap<>();
+    private long memoryBytes;
+
+    public DatasetCache(@Value("${exalyze.datasets.max-memory-mb:512}") long maxMemoryMb,
+                        @Value("${exalyze.datasets.ttl-minutes:60}") long ttlMinutes,
+                        @Value("${exalyze.datasets.spill-enabled:false}") boolean spillEnabled,
+                        @Value("${exalyze.datasets.spill-dir:}") String spillDir) throws IOException {
+        this.maxMemoryBytes = maxMemoryMb * 1024 * 1024;
+        this.ttlMillis = ttlMinutes * 60_000;
+        if (spillEnabled) {
+            Path dir = spillDir.isBlank()
+                    ? Paths.get(System.getProperty("java.io.tmpdir"), "exalyze-datasets")
+                    : Paths.get(spillDir);
+            this.spillDir = Files.createDirectories(dir);
+        } else {
+            this.spillDir = null;
+        }
+    }
+
+    public String put(Dataset dataset) {
+        return put(dataset, null);
+    }
+
+    /** Stores the dataset so that {@link #findByContent} returns its id for the key; a null key stores it under its id alone. */
+    public String put(Dataset dataset, String contentKey) {
+        String id = UUID.randomUUID().toString();
+        Entry entry = new Entry();
+        entry.dataset = dataset;
+        entry.bytes = dataset.estimatedBytes();
+        entry.lastAccess = System.currentTimeMillis();
+        entry.contentKey = contentKey;
+        List<Runnable> io = new ArrayList<>();
+        synchronized (this) {
+            evictExpired(io);
+            promote(id, entry, io);
+            if (contentKey != null) {
+                byContent.put(contentKey, id);
+            }
+        }
+        runAll(io);
+        return id;
+    }
+
+    /**
+     * The id of the dataset stored for the content key, in memory or on disk, or null once it has
+     * been replaced, removed or expired. Like {@link #contains} it never reads a spilled dataset back.
+     */
+    public String findByContent(String contentKey) {
+        List<Runnable> io = new ArrayList<>();
+        String id;
+        synchronized (this) {
+            evictExpired(io);
+            id = byContent.get(contentKey);
+            Entry entry = id == null ? null : inMemory.containsKey(id) ? inMemory.get(id) : spilled.get(id);
+            if (entry != null && contentKey.equals(entry.contentKey)) {
+                entry.lastAccess = System.currentTimeMillis();
+            } else if (id != null) {
+                byContent.remove(contentKey);
+                id = null;
+            }
+        }
+        runAll(io);
+        return id;
+    }
+
+    /** Returns null if the id is unknown or has expired. */
+    public Dataset get(String id) {
+        List<Runnable> io = new ArrayList<>();
+        Dataset dataset = null;
+        Path file = null;
+        CompletableFuture<Dataset> loading = null;
+        boolean loader = false;
+        Entry entry;
+        synchronized (this) {
+            evictExpired(io);
+            entry = inMemory.get(id);
+            if (entry == null) {
+                entry = spilled.get(id);
+                if (entry != null && entry.dataset != null) {
+                    // Evicted but not yet written out, so it can be taken back as is.
+                    spilled.remove(id);
+                    promote(id, entry, io);
+                } else if (entry != null) {
+                    loader = entry.loading == null;
+                    if (loader) {
+                        entry.loading = new CompletableFuture<>();
+                    }
+                    loading = entry.loading;
+                    file = entry.file;
+                }
+            }
+            if (entry != null) {
+                entry.lastAccess = System.currentTimeMillis();
+                dataset = entry.dataset;
+            }
+        }
+        runAll(io);
+        if (loading == null) {
+            return dataset;
+        }
+        if (loader) {
+            load(id, entry, file, loading);
+        }
+        return loading.join();
+    }
+
+    /** Whether the id is stored, in memory or on disk; unlike {@link #get} it never reads a spilled dataset back. */
+    public boolean contains(String id) {
+        List<Runnable> io = new ArrayList<>();
+        boolean found;
+        synchronized (this) {
+            evictExpired(io);
+            found = inMemory.containsKey(id) || spilled.containsKey(id);
+        }
+        runAll(io);
+        return found;
+    }
+
+    /** Stores a new version of the dataset under an existing id; returns false if the id is unknown or has expired. */
+    public boolean replace(String id, Dataset dataset) {
+        List<Runnable> io = new ArrayList<>();
+        try {
+            synchronized (this) {
+                evictExpired(io);
+                Entry entry = inMemory.remove(id);
+                if (entry == null) {
+                    entry = spilled.remove(id);
+                    if (entry == null) {
+                        return false;
+                    }
+                    discardFile(entry, io);
+                } else {
+                    memoryBytes -= entry.bytes;
+                }
+                entry.dataset = dataset;
+                entry.bytes = dataset.estimatedBytes();
+                entry.lastAccess = System.currentTimeMillis();
+                // The new version no longer matches the upload it was parsed from.
+                if (entry.contentKey != null) {
+                    byContent.remove(entry.contentKey, id);
+                    entry.contentKey = null;
+                }
+                promote(id, entry, io);
+                return true;
+            }
+        } finally {
+            runAll(io);
+        }
+    }
+
+    public void remove(String id) {
+        List<Runnable> io = new ArrayList<>();
+        synchronized (this) {
+            Entry entry = inMemory.remove(id);
+            if (entry != null) {
+                memoryBytes -= entry.bytes;
+            }
+            entry = spilled.remove(id);
+            if (entry != null) {
+                discardFile(entry, io);
+            }
+            byContent.values().remove(id);
+        }
+        runAll(io);
+    }
+
+    @PreDestroy
+    public void clear() {
+        List<Runnable> io = new ArrayList<>();
+        synchronized (this) {
+            inMemory.clear();
+            memoryBytes = 0;
+            for (Entry entry : spilled.values()) {
+                discardFile(entry, io);
+            }
+            spilled.clear();
+            byContent.clear();
+        }
+        runAll(io);
+    }
+
+    /** Adds an entry as the most recently used and queues the spills that makes room for it. */
+    private void promote(String id, Entry entry, List<Runnable> io) {
+        inMemory.put(id, entry);
+        memoryBytes += entry.bytes;
+        evictOverflow(io);
+    }
+
+    private void evictOverflow(List<Runnable> io) {
+        Iterator<Map.Entry<String, Entry>> it = inMemory.entrySet().iterator();
+        // The newest dataset always stays, even when it alone exceeds the budget.
+        while (memoryBytes > maxMemoryBytes && inMemory.size() > 1 && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            it.remove();
+            Entry entry = eldest.getValue();
+            memoryBytes -= entry.bytes;
+            if (spillDir != null) {
+                String id = eldest.getKey();
+                Dataset dataset = entry.dataset;
+                spilled.put(id, entry);
+                io.add(() -> spill(id, entry, dataset));
+            }
+        }
+    }
+
+    private void evictExpired(List<Runnable> io) {
+        long cutoff = System.currentTimeMillis() - ttlMillis;
+        Iterator<Entry> it = inMemory.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.lastAccess < cutoff) {
+                it.remove();
+                memoryBytes -= entry.bytes;
+            }
+        }
+        Iterator<Entry> spilledIt = spilled.values().iterator();
+        while (spilledIt.hasNext()) {
+            Entry entry = spilledIt.next();
+            if (entry.lastAccess < cutoff) {
+                spilledIt.remove();
+                discardFile(entry, io);
+            }
+        }
+        // Also drops the keys of datasets that failed to spill or to be read back.
+        byContent.values().removeIf(id -> !inMemory.containsKey(id) && !spilled.containsKey(id));
+    }
+
+    /**
+     * Queues the deletion of an entry's file once it has left the spilled map. A file being read
+     * back is deleted by its reader, and one still being written by its writer.
+     */
+    private static void discardFile(Entry entry, List<Runnable> io) {
+        Path file = entry.file;
+        if (file != null && entry.loading == null) {
+            io.add(() -> deleteQuietly(file));
+        }
+        entry.file = null;
+    }
+
+    private static void runAll(List<Runnable> io) {
+        for (Runnable task : io) {
+            task.run();
+        }
+    }
+
+    private void spill(String id, Entry entry, Dataset dataset) {
+        Path file = null;
+        try {
+            // A unique name, as the same id may be spilled again before an earlier write finishes.
+            file = Files.createTempFile(spillDir, id, ".bin");
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+                out.writeObject(dataset);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not spill dataset " + id + ": " + e.getMessage());
+            deleteQuietly(file);
+            file = null;
+        }
+        synchronized (this) {
+            if (spilled.get(id) == entry && entry.dataset == dataset && entry.file == null) {
+                if (file == null) {
+                    // Dropped, as if spilling were disabled.
+                    spilled.remove(id);
+                } else {
+                    entry.dataset = null;
+                    entry.file = file;
+                }
+                return;
+            }
+        }
+        // Taken back, replaced or removed while it was being written.
+        deleteQuietly(file);
+    }
+
+    private void load(String id, Entry entry, Path file, CompletableFuture<Dataset> loading) {
+        Dataset dataset = null;
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            // Only our own column classes and the JDK types they hold may be deserialized.
+            in.setObjectInputFilter(ObjectInputFilter.Config.createFilter("com.unit00.exalyze.dataset.*;java.**;!*"));
+            dataset = (Dataset) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Could not read spilled dataset " + id + ": " + e.getMessage());
+        } finally {
+            deleteQuietly(file);
+            List<Runnable> io = new ArrayList<>();
+            synchronized (this) {
+                entry.loading = null;
+                // Unless it was replaced, removed or expired in the meantime.
+                if (spilled.get(id) == entry) {
+                    spilled.remove(id);
+                    entry.file = null;
+                    if (dataset != null) {
+                        entry.dataset = dataset;
+                        promote(id, entry, io);
+                    }
+                }
+            }
+            runAll(io);
+            loading.complete(dataset);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.unit00.exalyze.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unit00.exalyze.dataset.BooleanColumn;
+import com.unit00.exalyze.dataset.Column;
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dataset.NumericColumn;
+import com.unit00.exalyze.dataset.StringColumn;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes upload responses straight from the columnar dataset with a streaming JSON generator, so
+ * rows are never turned into maps and the response is never held in memory as a whole.
+ * Date and mixed cells go through the application's ObjectMapper, so they serialize exactly as
+ * they did inside row maps.
+ */
+@Service
+public class DatasetJsonWriter {
+
+    private final ObjectMapper objectMapper;
+
+    public DatasetJsonWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes {@code {"datasetId", "analysis", "totalRows", "offset", "data": [...]}}. The analysis
+     * comes first, so clients can render it before the rows arrive. With {@code data} null the
+     * data array is left out.
+     */
+    public void writeUploadResponse(OutputStream out, String datasetId, String analysis, int totalRows, Dataset data,
+                                    int offset, int limit) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeStringField("datasetId", datasetId);
+            generator.writeStringField("analysis", analysis);
+            generator.writeNumberField("totalRows", totalRows);
+            if (data != null) {
+                int from = Math.min(Math.max(0, offset), data.getRowCount());
+                generator.writeNumberField("offset", from);
+                generator.writeFieldName("data");
+                writeRows(generator, data, from, limit);
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Newline-delimited variant: a header object with the dataset id, analysis and row count,
+     * then one object per row, if there is {@code data}.
+     */
+    public void writeUploadResponseNdjson(OutputStream out, String datasetId, String analysis, int totalRows, Dataset data,
+                                          int offset, int limit) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            // Lines are separated explicitly below instead of by Jackson's default space.
+            generator.setRootValueSeparator(null);
+            generator.writeStartObject();
+            generator.writeStringField("datasetId", datasetId);
+            generator.writeStringField("analysis", analysis);
+            generator.writeNumberField("totalRows", totalRows);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            if (data != null) {
+                int from = Math.min(Math.max(0, offset), data.getRowCount());
+                int to = end(data, from, limit);
+                List<Column> columns = data.getColumns();
+                for (int row = from; row < to; row++) {
+                    writeRow(generator, columns, row);
+                    generator.writeRaw('\n');
+                }
+            }
+        }
+    }
+
+    /** Writes rows {@code [offset, offset + limit)} as a JSON array; a negative limit means all remaining rows. */
+    public void writeRows(JsonGenerator generator, Dataset data, int offset, int limit) throws IOException {
+        int to = end(data, offset, limit);
+        List<Column> columns = data.getColumns();
+        generator.writeStartArray();
+        for (int row = offset; row < to; row++) {
+            writeRow(generator, columns, row);
+        }
+        generator.writeEndArray();
+    }
+
+    public void writeRowsPage(OutputStream out, Dataset data, int offset, int limit) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            int from = Math.min(Math.max(0, offset), data.getRowCount());
+            generator.writeStartObject();
+            generator.writeNumberField("totalRows", data.getRowCount());
+            generator.writeNumberField("offset", from);
+            generator.writeFieldName("data");
+            writeRows(generator, data, from, limit);
+            generator.writeEndObject();
+        }
+    }
+
+    private static int end(Dataset data, int offset, int limit) {
+        return limit < 0 ? data.getRowCount() : (int) Math.min(data.getRowCount(), (long) offset + limit);
+    }
+
+    private void writeRow(JsonGenerator generator, List<Column> columns, int row) throws IOException {
+        generator.writeStartObject();
+        for (Column column : columns) {
+            generator.writeFieldName(column.getName());
+            if (column.isNull(row)) {
+                generator.writeNull();
+            } else if (column instanceof NumericColumn) {
+                generator.writeNumber(((NumericColumn) column).getDouble(row));
+            } else if (column instanceof StringColumn) {
+                StringColumn strings = (StringColumn) column;
+                generator.writeString(strings.getDictionary()[strings.getCode(row)]);
+            } else if (column instanceof BooleanColumn) {
+                generator.writeBoolean(((BooleanColumn) column).getBoolean(row));
+            } else {
+                generator.writeObject(column.get(row));
+            }
+        }
+        generator.writeEndObject();
+    }
+}
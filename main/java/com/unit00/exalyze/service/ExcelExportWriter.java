@@ -0,0 +1,98 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.dataset.BooleanColumn;
+import com.unit00.exalyze.dataset.Column;
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dataset.DateColumn;
+import com.unit00.exalyze.dataset.NumericColumn;
+import com.unit00.exalyze.dataset.StringColumn;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes a dataset as a single-sheet .xlsx with SXSSF. Only the last {@code windowRows} rows are
+ * kept in memory; older rows are flushed to a gzip-compressed temp file and the workbook is then
+ * written straight to the given stream. Date and number styles are created once per workbook and
+ * shared by all cells.
+ */
+@Service
+public class ExcelExportWriter {
+
+    private final int windowRows;
+
+    public ExcelExportWriter(@Value("${exalyze.excel.export-window-rows:100}") int windowRows) {
+        this.windowRows = windowRows;
+    }
+
+    public void write(Dataset data, String sheetName, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(windowRows);
+        workbook.setCompressTempFiles(true);
+        try {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+            CellStyle numberStyle = workbook.createCellStyle();
+            numberStyle.setDataFormat(workbook.createDataFormat().getFormat("General"));
+
+            Sheet sheet = workbook.createSheet(sheetName);
+            Row headerRow = sheet.createRow(0);
+            List<String> headers = data.getColumnNames();
+            for (int i = 0; i < headers.size(); i++) {
+                headerRow.createCell(i).setCellValue(headers.get(i));
+            }
+
+            List<Column> columns = data.getColumns();
+            for (int r = 0; r < data.getRowCount(); r++) {
+                Row row = sheet.createRow(r + 1);
+                for (int c = 0; c < columns.size(); c++) {
+                    Column column = columns.get(c);
+                    if (column.isNull(r)) {
+                        continue;
+                    }
+                    Cell cell = row.createCell(c);
+                    if (column instanceof NumericColumn) {
+                        cell.setCellValue(((NumericColumn) column).getDouble(r));
+                        cell.setCellStyle(numberStyle);
+                    } else if (column instanceof StringColumn) {
+                        StringColumn strings = (StringColumn) column;
+                        cell.setCellValue(strings.getDictionary()[strings.getCode(r)]);
+                    } else if (column instanceof DateColumn) {
+                        cell.setCellValue(new Date(((DateColumn) column).getMillis(r)));
+                        cell.setCellStyle(dateStyle);
+                    } else if (column instanceof BooleanColumn) {
+                        cell.setCellValue(((BooleanColumn) column).getBoolean(r));
+                    } else {
+                        writeObject(cell, column.get(r), dateStyle, numberStyle);
+                    }
+                }
+            }
+            workbook.write(out);
+        } finally {
+            // Also removes the flushed-rows temp file.
+            workbook.close();
+        }
+    }
+
+    private static void writeObject(Cell cell, Object value, CellStyle dateStyle, CellStyle numberStyle) {
+        if (value instanceof Number) {
+            cell.setCellValue(((Number) value).doubleValue());
+            cell.setCellStyle(numberStyle);
+        } else if (value instanceof Boolean) {
+            cell.setCellValue((Boolean) value);
+        } else if (value instanceof Date) {
+            cell.setCellValue((Date) value);
+            cell.setCellStyle(dateStyle);
+        } else {
+            cell.setCellValue(value.toString());
+        }
+    }
+}
@@ -2,168 +2,376 @@ package com.unit00.exalyze.service;
 
 
 
+import com.unit00.exalyze.analysis.ParallelRunner;
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dataset.DatasetBuilder;
+import io.micrometer.observation.Observation;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjIntConsumer;
 
 @Service
 public class ExcelService {
 
-    public List<Map<String, Object>> readExcelData(MultipartFile file) throws IOException {
-        System.out.println("Parsing Excel file: " + file.getOriginalFilename());
-        System.out.println("File size: " + file.getSize() + " bytes");
-        List<Map<String, Object>> data = new ArrayList<>();
-        try (InputStream is = file.getInputStream(); Workbook workbook = new XSSFWorkbook(is)) {
-            Sheet sheet = workbook.getSheetAt(0);
-            Row headerRow = sheet.getRow(0);
-            if (headerRow == null) {
-                return data;
-            }
+    private final boolean streamingEnabled;
+    private final FormulaStrategy formulaStrategy;
+    private final FormulaEvaluationStats formulaStats = new FormulaEvaluationStats();
+    private final StreamingXlsxReader streamingReader = new StreamingXlsxReader();
+    private final StreamingCsvReader csvReader;
+    private final ExcelExportWriter exportWriter;
+    private final SheetMode defaultSheetMode;
+    private final ParallelRunner sheetRunner;
+    private final String settingsFingerprint;
+    private final PipelineMetrics metrics;
 
-            List<String> headers = new ArrayList<>();
-            for (Cell cell : headerRow) {
-                headers.add(cell.getStringCellValue());
-            }
-            System.out.println("Headers found: " + headers);
+    public ExcelService(@Value("${exalyze.excel.streaming-enabled:true}") boolean streamingEnabled,
+                        @Value("${exalyze.excel.formula-strategy:CACHED}") FormulaStrategy formulaStrategy,
+                        @Value("${exalyze.csv.type-sniffing-enabled:true}") boolean csvTypeSniffing,
+                        @Value("${exalyze.csv.sample-rows:1000}") int csvSampleRows,
+                        @Value("${exalyze.excel.sheet-mode:FIRST}") SheetMode defaultSheetMode,
+                        @Value("${exalyze.excel.sheet-parallelism:4}") int sheetParallelism,
+                        ForkJoinPool analysisPool,
+                        ExcelExportWriter exportWriter,
+                        PipelineMetrics metrics) {
+        this.streamingEnabled = streamingEnabled;
+        this.formulaStrategy = formulaStrategy;
+        this.csvReader = new StreamingCsvReader(csvSampleRows, csvTypeSniffing);
+        this.exportWriter = exportWriter;
+        this.defaultSheetMode = defaultSheetMode;
+        // Caps how many sheets of one upload are held in parsers at once.
+        this.sheetRunner = new ParallelRunner(analysisPool, sheetParallelism);
+        this.settingsFingerprint = "formula=" + formulaStrategy + ",csvTypes=" + csvTypeSniffing + ",csvSample=" + csvSampleRows;
+        this.metrics = metrics;
+        metrics.bindFormulaStats(formulaStats);
+    }
 
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row currentRow = sheet.getRow(i);
-                if (currentRow == null) {
-                    continue;
-                }
-                Map<String, Object> rowMap = new LinkedHashMap<>();
-                for (int j = 0; j < headers.size(); j++) {
-                    Cell cell = currentRow.getCell(j, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
-                    switch (cell.getCellType()) {
-                        case STRING:
-                            rowMap.put(headers.get(j), cell.getStringCellValue());
-                            break;
-                        case NUMERIC:
-                            if (DateUtil.isCellDateFormatted(cell)) {
-                                rowMap.put(headers.get(j), cell.getDateCellValue());
-                            } else {
-                                rowMap.put(headers.get(j), cell.getNumericCellValue());
-                            }
-                            break;
-                        case BOOLEAN:
-                            rowMap.put(headers.get(j), cell.getBooleanCellValue());
-                            break;
-                        case FORMULA:
-                            FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
-                            CellValue cellValue = evaluator.evaluate(cell);
-                            switch (cellValue.getCellType()) {
-                                case STRING:
-                                    rowMap.put(headers.get(j), cellValue.getStringValue());
-                                    break;
-                                case NUMERIC:
-                                    rowMap.put(headers.get(j), cellValue.getNumberValue());
-                                    break;
-                                case BOOLEAN:
-                                    rowMap.put(headers.get(j), cellValue.getBooleanValue());
-                                    break;
-                                default:
-                                    rowMap.put(headers.get(j), null);
-                            }
-                            break;
-                        case BLANK:
-                        case ERROR:
-                        default:
-                            rowMap.put(headers.get(j), null);
-                    }
-                }
-                data.add(rowMap);
+    /** The settings that change what a file parses into; part of the result cache key. */
+    public String getSettingsFingerprint() {
+        return settingsFingerprint;
+    }
+
+    /** The requested mode, or the configured default when none was given; CSV files always have one table. */
+    public SheetMode resolveSheetMode(String filename, SheetMode requested) {
+        if (isCsv(filename)) {
+            return SheetMode.FIRST;
+        }
+        return requested != null ? requested : defaultSheetMode;
+    }
+
+    public FormulaEvaluationStats getFormulaStats() {
+        return formulaStats;
+    }
+
+    /** Reads a .csv upload as CSV and anything else as a workbook. */
+    public Dataset readData(InputStreamSource source, String filename, long size, ProgressListener progress) throws IOException {
+        if (isCsv(filename)) {
+            return readCsvData(source, filename, size, progress);
+        }
+        return readExcelData(source, filename, size, progress);
+    }
+
+    /** Reads the sheets the mode asks for; a CSV file comes back as one sheet named after the file. */
+    public List<SheetDataset> readSheets(InputStreamSource source, String filename, long size, SheetMode mode,
+                                         ProgressListener progress) throws IOException {
+        if (isCsv(filename)) {
+            List<SheetDataset> sheets = new ArrayList<>();
+            sheets.add(new SheetDataset(filename, readCsvData(source, filename, size, progress)));
+            return sheets;
+        }
+        return readExcelSheets(source, filename, size, mode == SheetMode.FIRST ? 1 : Integer.MAX_VALUE, progress);
+    }
+
+    /**
+     * Reads every sheet and stacks them as {@link #mergeSheets} does. Each sheet is copied into the
+     * merged dataset as soon as it and the sheets before it are parsed, rather than once all are.
+     */
+    public Dataset readMerged(InputStreamSource source, String filename, long size, ProgressListener progress) throws IOException {
+        SheetMerger merger = new SheetMerger();
+        if (isCsv(filename)) {
+            merger.accept(new SheetDataset(filename, readCsvData(source, filename, size, progress)), 0);
+        } else {
+            readExcelSheets(source, filename, size, Integer.MAX_VALUE, progress, merger);
+        }
+        return merger.build();
+    }
+
+    private static boolean isCsv(String filename) {
+        return filename != null && filename.toLowerCase().endsWith(".csv");
+    }
+
+    public Dataset readExcelData(MultipartFile file) throws IOException {
+        return readExcelData(file, file.getOriginalFilename(), file.getSize(), ProgressListener.NONE);
+    }
+
+    public Dataset readExcelData(InputStreamSource source, String filename, long size, ProgressListener progress) throws IOException {
+        List<SheetDataset> sheets = readExcelSheets(source, filename, size, 1, progress);
+        return sheets.isEmpty() ? Dataset.empty() : sheets.get(0).getData();
+    }
+
+    private List<SheetDataset> readExcelSheets(InputStreamSource source, String filename, long size, int maxSheets,
+                                               ProgressListener progress) throws IOException {
+        Map<Integer, SheetDataset> sheets = new ConcurrentSkipListMap<>();
+        readExcelSheets(source, filename, size, maxSheets, progress, (sheet, index) -> sheets.put(index, sheet));
+        return new ArrayList<>(sheets.values());
+    }
+
+    /** Hands each parsed sheet and its workbook position to {@code finished}, possibly out of order and from several threads. */
+    private void readExcelSheets(InputStreamSource source, String filename, long size, int maxSheets,
+                                 ProgressListener progress, ObjIntConsumer<SheetDataset> finished) throws IOException {
+        System.out.println("Parsing Excel file: " + filename);
+        System.out.println("File size: " + size + " bytes");
+        String format = filename != null && filename.toLowerCase().endsWith(".xls") ? "xls" : "xlsx";
+        long start = System.nanoTime();
+        Observation parse = metrics.startStage("exalyze.parse", "format", format);
+        AtomicLong rows = new AtomicLong();
+        AtomicInteger columns = new AtomicInteger();
+        ObjIntConsumer<SheetDataset> counted = (sheet, index) -> {
+            Dataset data = sheet.getData();
+            rows.addAndGet(data.getRowCount());
+            columns.accumulateAndGet(data.getColumnCount(), Math::max);
+            if (maxSheets == 1) {
+                System.out.println("Parsed " + data.getRowCount() + " rows successfully.");
+            } else {
+                System.out.println("Parsed " + data.getRowCount() + " rows from sheet " + sheet.getName() + ".");
             }
-            System.out.println("Parsed " + data.size() + " rows successfully.");
+            finished.accept(sheet, index);
+        };
+        // The event model only sees the results stored in the file, so evaluating strategies need the DOM.
+        if (streamingEnabled && formulaStrategy == FormulaStrategy.CACHED && isOoxml(source)) {
+            readExcelDataStreaming(source, maxSheets, progress, counted);
+        } else {
+            readExcelDataDom(source, maxSheets, progress, counted);
+        }
+        metrics.recordParse(parse, format, size, rows.get(), columns.get(), start);
+    }
+
+    private boolean isOoxml(InputStreamSource source) throws IOException {
+        try (InputStream is = FileMagic.prepareToCheckMagic(source.getInputStream())) {
+            return FileMagic.valueOf(is) == FileMagic.OOXML;
+        }
+    }
+
+    private void readExcelDataStreaming(InputStreamSource source, int maxSheets, ProgressListener progress,
+                                        ObjIntConsumer<SheetDataset> finished) throws IOException {
+        if (source instanceof FileSystemResource) {
+            readExcelDataStreaming(((FileSystemResource) source).getFile(), maxSheets, progress, finished);
+            return;
+        }
+        // OPCPackage reads parts lazily from a file, but buffers the whole zip when given a stream.
+        Path tempFile = Files.createTempFile("exalyze-", ".xlsx");
+        try (InputStream is = source.getInputStream()) {
+            Files.copy(is, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            readExcelDataStreaming(tempFile.toFile(), maxSheets, progress, finished);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void readExcelDataStreaming(File file, int maxSheets, ProgressListener progress,
+                                        ObjIntConsumer<SheetDataset> finished) throws IOException {
+        try {
+            streamingReader.readSheets(file, maxSheets, sheetRunner, progress, finished);
         } catch (Exception e) {
             System.err.println("Excel parsing error: " + e.getMessage());
             e.printStackTrace();
             throw e;
         }
-        return data;
     }
 
-    public List<Map<String, Object>> readCsvData(MultipartFile file) throws IOException {
-        System.out.println("Parsing CSV file: " + file.getOriginalFilename());
-        System.out.println("File size: " + file.getSize() + " bytes");
-        List<Map<String, Object>> data = new ArrayList<>();
-        try (Reader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            CSVParser csvParser = CSVFormat.Builder.create(CSVFormat.DEFAULT)
-                    .setHeader()
-                    .setSkipHeaderRecord(false)
-                    .build()
-                    .parse(reader);
-
-            List<String> headers = csvParser.getHeaderNames();
-            System.out.println("Headers found: " + headers);
+    private void readExcelDataDom(InputStreamSource source, int maxSheets, ProgressListener progress,
+                                  ObjIntConsumer<SheetDataset> finished) throws IOException {
+        // WorkbookFactory also covers legacy .xls files, which the streaming reader cannot open.
+        try (InputStream is = source.getInputStream(); Workbook workbook = WorkbookFactory.create(is)) {
+            // One evaluator per workbook, so its cache of already evaluated cells is shared.
+            FormulaEvaluator evaluator = formulaStrategy == FormulaStrategy.CACHED
+                    ? null : workbook.getCreationHelper().createFormulaEvaluator();
+            long[] formulaCells = new long[1];
+            long[] evaluationNanos = new long[1];
+            if (formulaStrategy == FormulaStrategy.EVALUATE_ALL) {
+                long start = System.nanoTime();
+                evaluator.evaluateAll();
+                evaluationNanos[0] += System.nanoTime() - start;
+            }
 
-            for (CSVRecord csvRecord : csvParser) {
-                Map<String, Object> row = new LinkedHashMap<>();
-                for (String header : headers) {
-                    row.put(header, csvRecord.get(header));
-                }
-                data.add(row);
+            // The whole workbook is already in memory here, so sheets are simply read one after another.
+            long rowsBefore = 0;
+            int sheetCount = Math.min(maxSheets, workbook.getNumberOfSheets());
+            for (int s = 0; s < sheetCount; s++) {
+                Sheet sheet = workbook.getSheetAt(s);
+                long offset = rowsBefore;
+                ProgressListener sheetProgress = sheetCount == 1 ? progress : new ProgressListener() {
+                    @Override
+                    public void rowsParsed(long rows) {
+                        progress.rowsParsed(offset + rows);
+                    }
+                };
+                Dataset data = readSheetDom(sheet, evaluator, formulaCells, evaluationNanos, sheetProgress);
+                rowsBefore += data.getRowCount();
+                finished.accept(new SheetDataset(sheet.getSheetName(), data), s);
+            }
+            formulaStats.record(formulaCells[0], evaluationNanos[0]);
+            if (formulaCells[0] > 0) {
+                System.out.println("Formula cells: " + formulaCells[0] + " (" + formulaStrategy + "), evaluation time: "
+                        + evaluationNanos[0] / 1_000_000 + " ms");
             }
-            System.out.println("Parsed " + data.size() + " rows successfully.");
         } catch (Exception e) {
-            System.err.println("CSV parsing error: " + e.getMessage());
+            System.err.println("Excel parsing error: " + e.getMessage());
             e.printStackTrace();
             throw e;
         }
-        return data;
     }
 
-    public byte[] generateExcelFile(List<Map<String, Object>> data) throws IOException {
-        if (data == null || data.isEmpty()) {
-            return new byte[0];
+    private Dataset readSheetDom(Sheet sheet, FormulaEvaluator evaluator, long[] formulaCells, long[] evaluationNanos,
+                                 ProgressListener progress) {
+        Row headerRow = sheet.getRow(0);
+        if (headerRow == null) {
+            return Dataset.empty();
         }
 
-        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            Sheet sheet = workbook.createSheet("Raw Data");
+        List<String> headers = new ArrayList<>();
+        for (Cell cell : headerRow) {
+            headers.add(cell.getStringCellValue());
+        }
+        System.out.println("Headers found: " + headers);
 
-            Row headerRow = sheet.createRow(0);
-            List<String> headers = new ArrayList<>(data.get(0).keySet());
-            for (int i = 0; i < headers.size(); i++) {
-                Cell cell = headerRow.createCell(i);
-                cell.setCellValue(headers.get(i));
+        DatasetBuilder data = new DatasetBuilder(headers, progress.blockRows(), progress::rowBlock);
+        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+            Row currentRow = sheet.getRow(i);
+            if (currentRow == null) {
+                continue;
             }
-
-            int rowNum = 1;
-            for (Map<String, Object> rowData : data) {
-                Row row = sheet.createRow(rowNum++);
-                int colNum = 0;
-                for (String header : headers) {
-                    Cell cell = row.createCell(colNum++);
-                    Object value = rowData.get(header);
-                    if (value != null) {
-                        if (value instanceof String) {
-                            cell.setCellValue((String) value);
-                        } else if (value instanceof Number) {
-                            cell.setCellValue(((Number) value).doubleValue());
-                        } else if (value instanceof Boolean) {
-                            cell.setCellValue((Boolean) value);
+            for (int j = 0; j < headers.size(); j++) {
+                Cell cell = currentRow.getCell(j, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
+                switch (cell.getCellType()) {
+                    case STRING:
+                        data.appendString(j, cell.getStringCellValue());
+                        break;
+                    case NUMERIC:
+                        if (DateUtil.isCellDateFormatted(cell)) {
+                            data.appendDate(j, cell.getDateCellValue().getTime());
                         } else {
-                            cell.setCellValue(value.toString());
+                            data.appendDouble(j, cell.getNumericCellValue());
                         }
-                    }
+                        break;
+                    case BOOLEAN:
+                        data.appendBoolean(j, cell.getBooleanCellValue());
+                        break;
+                    case FORMULA:
+                        formulaCells[0]++;
+                        if (formulaStrategy == FormulaStrategy.LAZY) {
+                            long start = System.nanoTime();
+                            CellValue cellValue = evaluator.evaluate(cell);
+                            evaluationNanos[0] += System.nanoTime() - start;
+                            appendFormulaResult(data, j, cellValue);
+                        } else {
+                            // EVALUATE_ALL has already written its results into the cells' caches.
+                            appendCachedFormulaResult(data, j, cell);
+                        }
+                        break;
+                    case BLANK:
+                    case ERROR:
+                    default:
+                        data.appendNull(j);
                 }
             }
-            workbook.write(out);
-            return out.toByteArray();
+            data.endRow();
+            progress.rowsParsed(data.getRowCount());
+        }
+        return data.build();
+    }
+
+    /**
+     * Stacks the sheets into one dataset with a leading "Sheet" column; see {@link SheetMerger}.
+     * Each sheet's entry in the list is cleared once it has been copied, so its columns can be
+     * collected before the next sheet is copied.
+     */
+    public Dataset mergeSheets(List<SheetDataset> sheets) {
+        SheetMerger merger = new SheetMerger();
+        for (int s = 0; s < sheets.size(); s++) {
+            merger.accept(sheets.get(s), s);
+            sheets.set(s, null);
+        }
+        return merger.build();
+    }
+
+    private static void appendFormulaResult(DatasetBuilder data, int column, CellValue cellValue) {
+        switch (cellValue.getCellType()) {
+            case STRING:
+                data.appendString(column, cellValue.getStringValue());
+                break;
+            case NUMERIC:
+                data.appendDouble(column, cellValue.getNumberValue());
+                break;
+            case BOOLEAN:
+                data.appendBoolean(column, cellValue.getBooleanValue());
+                break;
+            default:
+                data.appendNull(column);
+        }
+    }
+
+    private static void appendCachedFormulaResult(DatasetBuilder data, int column, Cell cell) {
+        switch (cell.getCachedFormulaResultType()) {
+            case STRING:
+                data.appendString(column, cell.getStringCellValue());
+                break;
+            case NUMERIC:
+                data.appendDouble(column, cell.getNumericCellValue());
+                break;
+            case BOOLEAN:
+                data.appendBoolean(column, cell.getBooleanCellValue());
+                break;
+            default:
+                data.appendNull(column);
+        }
+    }
+
+    public Dataset readCsvData(MultipartFile file) throws IOException {
+        return readCsvData(file, file.getOriginalFilename(), file.getSize(), ProgressListener.NONE);
+    }
+
+    public Dataset readCsvData(InputStreamSource source, String filename, long size, ProgressListener progress) throws IOException {
+        System.out.println("Parsing CSV file: " + filename);
+        System.out.println("File size: " + size + " bytes");
+        long start = System.nanoTime();
+        Observation parse = metrics.startStage("exalyze.parse", "format", "csv");
+        try (InputStream is = source.getInputStream()) {
+            Dataset data = csvReader.read(is, progress);
+            System.out.println("Parsed " + data.getRowCount() + " rows successfully.");
+            metrics.recordParse(parse, "csv", size, data.getRowCount(), data.getColumnCount(), start);
+            return data;
+        } catch (Exception e) {
+            System.err.println("CSV parsing error: " + e.getMessage());
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /** Streams the dataset as an .xlsx to {@code out}; an empty dataset writes nothing. */
+    public void writeExcelFile(Dataset data, OutputStream out) throws IOException {
+        if (data == null || data.isEmpty()) {
+            return;
         }
+        exportWriter.write(data, "Raw Data", out);
     }
-}
\ No newline at end of file
+}
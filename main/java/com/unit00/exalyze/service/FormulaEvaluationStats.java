@@ -0,0 +1,31 @@
+package com.unit00.exalyze.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running totals of formula handling across parsed workbooks.
+ */
+public class FormulaEvaluationStats {
+
+    private final AtomicLong workbooks = new AtomicLong();
+    private final AtomicLong formulaCells = new AtomicLong();
+    private final AtomicLong evaluationNanos = new AtomicLong();
+
+    void record(long cells, long nanos) {
+        workbooks.incrementAndGet();
+        formulaCells.addAndGet(cells);
+        evaluationNanos.addAndGet(nanos);
+    }
+
+    public long getWorkbooks() {
+        return workbooks.get();
+    }
+
+    public long getFormulaCells() {
+        return formulaCells.get();
+    }
+
+    public long getEvaluationNanos() {
+        return evaluationNanos.get();
+    }
+}
@@ -0,0 +1,13 @@
+package com.unit00.exalyze.service;
+
+/**
+ * How formula cells are turned into values when a workbook is read.
+ */
+public enum FormulaStrategy {
+    /** Use the result Excel stored in the file; nothing is evaluated. Allows the streaming .xlsx reader. */
+    CACHED,
+    /** Evaluate every formula of the workbook once up front with one evaluator, then read the results. */
+    EVALUATE_ALL,
+    /** Evaluate each formula cell as it is read, sharing one evaluator (and its cache) per workbook. */
+    LAZY
+}
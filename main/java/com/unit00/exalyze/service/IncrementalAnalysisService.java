@@ -0,0 +1,118 @@
+package com.unit00.exalyze.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.unit00.exalyze.analysis.DatasetSummary;
+import com.unit00.exalyze.dataset.Column;
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dataset.DatasetBuilder;
+import com.unit00.exalyze.dto.ChartDataDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append mode for datasets that grow between uploads. The first append to a dataset id summarizes
+ * the stored rows once. After that, every append only summarizes its own rows and merges them
+ * into the kept {@link DatasetSummary}. Report and chart data come from that summary. The stored
+ * dataset is replaced by the old rows followed by the new ones, so paging and downloads see
+ * every row; the new version continues the old one's column arrays instead of copying them.
+ * Appends to the same dataset run one at a time, appends to different datasets in parallel.
+ * Callers reserve memory with {@link UploadAdmission} for the batch first, as for an upload.
+ */
+@Service
+public class IncrementalAnalysisService {
+
+    private final DatasetCache datasetCache;
+    private final ExcelService excelService;
+    private final AIAnalysisService aiAnalysisService;
+    private final Cache<String, DatasetSummary> summaries;
+    // Striped by dataset id, so the locks stay few and appends to other datasets rarely share one.
+    private final ReentrantLock[] locks = new ReentrantLock[64];
+
+    public IncrementalAnalysisService(DatasetCache datasetCache,
+                                      ExcelService excelService,
+                                      AIAnalysisService aiAnalysisService,
+                                      @Value("${exalyze.incremental.max-datasets:100}") long maxDatasets,
+                                      @Value("${exalyze.datasets.ttl-minutes:60}") long ttlMinutes) {
+        this.datasetCache = datasetCache;
+        this.excelService = excelService;
+        this.aiAnalysisService = aiAnalysisService;
+        // Summaries are only useful while their dataset is stored, so they expire on the same schedule.
+        this.summaries = Caffeine.newBuilder()
+                .maximumSize(maxDatasets)
+                .expireAfterAccess(Duration.ofMinutes(ttlMinutes))
+                .build();
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /** Returns null if the dataset id is unknown or has expired. */
+    public AnalysisResult append(String datasetId, InputStreamSource source, String filename, long size) throws IOException {
+        // Checked without reading a spilled dataset back, so an unknown id is not parsed for nothing.
+        if (!datasetCache.contains(datasetId)) {
+            summaries.invalidate(datasetId);
+            return null;
+        }
+        // Parsing happens outside the lock; merging, swapping the stored rows and reporting are serialized per dataset.
+        Dataset batch = excelService.readData(source, filename, size, ProgressListener.NONE);
+
+        ReentrantLock lock = locks[Math.floorMod(datasetId.hashCode(), locks.length)];
+        lock.lock();
+        try {
+            // Always the current version: the arrays of a version may only be continued once.
+            Dataset stored = datasetCache.get(datasetId);
+            if (stored == null) {
+                summaries.invalidate(datasetId);
+                return null;
+            }
+            // Taken out while the batch is merged in and put back once the rows are stored, so a failure
+            // in between leaves no half-merged summary behind; the next append rebuilds it instead.
+            DatasetSummary summary = summaries.getIfPresent(datasetId);
+            summaries.invalidate(datasetId);
+            if (summary == null || summary.getRowCount() != stored.getRowCount()) {
+                summary = aiAnalysisService.newDatasetSummary();
+                summary.append(stored);
+            }
+            summary.append(batch);
+            Dataset grown = extend(summary.getColumnNames(), stored, batch);
+            if (!datasetCache.replace(datasetId, grown)) {
+                // Removed or expired while the batch was merged in.
+                return null;
+            }
+            summaries.put(datasetId, summary);
+
+            // Read while no other append can change the summary.
+            String analysis = aiAnalysisService.analyzeIncrementally(grown, summary);
+            ChartDataDto chartData = aiAnalysisService.getChartData(grown);
+            return new AnalysisResult(grown, analysis, chartData);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The stored rows followed by the batch, under the summary's column order; missing columns
+     * are null. Only the batch is copied, into the stored columns' spare room or grown arrays.
+     */
+    private static Dataset extend(List<String> names, Dataset stored, Dataset batch) {
+        DatasetBuilder builder = DatasetBuilder.extending(stored, names);
+        Column[] sources = new Column[names.size()];
+        for (int c = 0; c < names.size(); c++) {
+            sources[c] = batch.getColumn(names.get(c));
+        }
+        for (int row = 0; row < batch.getRowCount(); row++) {
+            for (int c = 0; c < sources.length; c++) {
+                builder.appendFrom(c, sources[c], row);
+            }
+            builder.endRow();
+        }
+        return builder.buildShared();
+    }
+}
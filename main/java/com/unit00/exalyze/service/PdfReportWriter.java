@@ -0,0 +1,258 @@
+package com.unit00.exalyze.service;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Image;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfTemplate;
+import com.itextpdf.text.pdf.PdfWriter;
+import com.unit00.exalyze.Bin;
+import com.unit00.exalyze.dto.ChartDataDto;
+import com.unit00.exalyze.dto.NumericSummaryDto;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the PDF report straight to an output stream. Uploaded chart images are base64-decoded
+ * from the data URL in place, without splitting or copying the string first. Identical images are
+ * added as the same {@link Image}, so iText stores them once and references the shared XObject.
+ * When chart data is given, histograms and category bars are drawn as vector graphics on the
+ * server, so clients do not need to upload rendered PNGs.
+ */
+@Service
+public class PdfReportWriter {
+
+    private static final float CHART_HEIGHT = 220;
+    private static final float AXIS_MARGIN = 36;
+    private static final int MAX_CATEGORY_LABEL = 24;
+
+    public void write(String reportContent, Map<String, String> chartImages, ChartDataDto chartData,
+                      OutputStream out) throws IOException {
+        Document document = new Document();
+        try {
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            // The response stream belongs to the servlet container.
+            writer.setCloseStream(false);
+            document.open();
+
+            document.add(new Paragraph(reportContent));
+
+            document.add(new Paragraph("\n\n---"));
+            document.add(new Paragraph("### Charts & Visualizations"));
+
+            float documentWidth = document.getPageSize().getWidth() - document.leftMargin() - document.rightMargin();
+
+            if (chartImages != null) {
+                Map<String, Image> decoded = new HashMap<>();
+                for (Map.Entry<String, String> entry : chartImages.entrySet()) {
+                    Image chartImage = decoded.get(entry.getValue());
+                    if (chartImage == null) {
+                        chartImage = Image.getInstance(decodeDataUrl(entry.getValue()));
+                        float scale = (documentWidth / chartImage.getWidth()) * 100;
+                        chartImage.scalePercent(scale);
+                        decoded.put(entry.getValue(), chartImage);
+                    }
+                    document.add(chartImage);
+                    document.add(new Paragraph("\n"));
+                }
+            }
+
+            if (chartData != null) {
+                BaseFont font = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
+                PdfContentByte canvas = writer.getDirectContent();
+                if (chartData.getNumericData() != null) {
+                    for (Map.Entry<String, NumericSummaryDto> entry : new TreeMap<>(chartData.getNumericData()).entrySet()) {
+                        List<Bin> bins = entry.getValue().getHistogramBins();
+                        if (bins == null || bins.isEmpty()) {
+                            continue;
+                        }
+                        List<String> labels = new ArrayList<>();
+                        long[] counts = new long[bins.size()];
+                        for (int i = 0; i < bins.size(); i++) {
+                            labels.add(bins.get(i).getLabel());
+                            counts[i] = bins.get(i).getCount();
+                        }
+                        PdfTemplate chart = histogram(canvas, font, "Distribution of " + entry.getKey(), labels, counts, documentWidth);
+                        document.add(Image.getInstance(chart));
+                        document.add(new Paragraph("\n"));
+                    }
+                }
+                if (chartData.getCategoricalFrequencies() != null) {
+                    for (Map.Entry<String, Map<String, Long>> entry : new TreeMap<>(chartData.getCategoricalFrequencies()).entrySet()) {
+                        if (entry.getValue().isEmpty()) {
+                            continue;
+                        }
+                        PdfTemplate chart = categoryBars(canvas, font, "Top values of " + entry.getKey(), entry.getValue(), documentWidth);
+                        document.add(Image.getInstance(chart));
+                        document.add(new Paragraph("\n"));
+                    }
+                }
+            }
+
+            document.close();
+        } catch (DocumentException e) {
+            throw new IOException("Could not write PDF report: " + e.getMessage(), e);
+        }
+    }
+
+    /** Decodes the payload of a {@code data:image/png;base64,...} URL, or of a bare base64 string. */
+    static byte[] decodeDataUrl(String dataUrl) throws IOException {
+        int start = dataUrl.indexOf(',') + 1;
+        int end = dataUrl.length();
+        int padding = 0;
+        while (end - padding > start && dataUrl.charAt(end - padding - 1) == '=') {
+            padding++;
+        }
+        byte[] bytes = new byte[(int) ((end - start) * 3L / 4) - padding];
+        try (InputStream in = Base64.getDecoder().wrap(new CharSequenceStream(dataUrl, start, end))) {
+            int read = in.readNBytes(bytes, 0, bytes.length);
+            if (read != bytes.length || in.read() != -1) {
+                throw new IOException("Malformed base64 image data");
+            }
+        }
+        return bytes;
+    }
+
+    private static PdfTemplate histogram(PdfContentByte canvas, BaseFont font, String title, List<String> labels,
+                                         long[] counts, float width) {
+        PdfTemplate chart = canvas.createTemplate(width, CHART_HEIGHT);
+        drawTitle(chart, font, title, width);
+
+        long max = 1;
+        for (long count : counts) {
+            max = Math.max(max, count);
+        }
+        float plotWidth = width - AXIS_MARGIN;
+        float plotHeight = CHART_HEIGHT - 2 * AXIS_MARGIN;
+        float slot = plotWidth / counts.length;
+
+        chart.setRGBColorFill(54, 162, 235);
+        for (int i = 0; i < counts.length; i++) {
+            float height = plotHeight * counts[i] / max;
+            chart.rectangle(AXIS_MARGIN + i * slot + 1, AXIS_MARGIN, Math.max(slot - 2, 0.5f), height);
+        }
+        chart.fill();
+        drawAxes(chart, width);
+
+        chart.beginText();
+        chart.setRGBColorFill(0, 0, 0);
+        chart.setFontAndSize(font, 7);
+        chart.showTextAligned(PdfContentByte.ALIGN_RIGHT, String.valueOf(max), AXIS_MARGIN - 3, CHART_HEIGHT - AXIS_MARGIN - 3, 0);
+        chart.showTextAligned(PdfContentByte.ALIGN_RIGHT, "0", AXIS_MARGIN - 3, AXIS_MARGIN - 3, 0);
+        // Every label when they fit, otherwise about ten evenly spaced ones.
+        int step = Math.max(1, (int) Math.ceil(labels.size() / 10.0));
+        for (int i = 0; i < labels.size(); i += step) {
+            chart.showTextAligned(PdfContentByte.ALIGN_RIGHT, labels.get(i), AXIS_MARGIN + (i + 0.5f) * slot, AXIS_MARGIN - 4, 30);
+        }
+        chart.endText();
+        return chart;
+    }
+
+    private static PdfTemplate categoryBars(PdfContentByte canvas, BaseFont font, String title, Map<String, Long> frequencies,
+                                            float width) {
+        PdfTemplate chart = canvas.createTemplate(width, CHART_HEIGHT);
+        drawTitle(chart, font, title, width);
+
+        long max = 1;
+        for (long count : frequencies.values()) {
+            max = Math.max(max, count);
+        }
+        float labelWidth = 120;
+        float plotWidth = width - labelWidth - AXIS_MARGIN;
+        float plotHeight = CHART_HEIGHT - 2 * AXIS_MARGIN;
+        float slot = plotHeight / frequencies.size();
+
+        chart.setRGBColorFill(255, 159, 64);
+        int i = 0;
+        for (long count : frequencies.values()) {
+            float y = CHART_HEIGHT - AXIS_MARGIN - (i + 1) * slot;
+            chart.rectangle(labelWidth, y + 1, plotWidth * count / max, Math.max(slot - 2, 0.5f));
+            i++;
+        }
+        chart.fill();
+
+        chart.beginText();
+        chart.setRGBColorFill(0, 0, 0);
+        float fontSize = Math.min(8, Math.max(4, slot - 2));
+        chart.setFontAndSize(font, fontSize);
+        i = 0;
+        for (Map.Entry<String, Long> entry : frequencies.entrySet()) {
+            float y = CHART_HEIGHT - AXIS_MARGIN - (i + 1) * slot + (slot - fontSize) / 2 + 1;
+            String label = entry.getKey().length() > MAX_CATEGORY_LABEL
+                    ? entry.getKey().substring(0, MAX_CATEGORY_LABEL - 3) + "..."
+                    : entry.getKey();
+            chart.showTextAligned(PdfContentByte.ALIGN_RIGHT, label, labelWidth - 4, y, 0);
+            chart.showTextAligned(PdfContentByte.ALIGN_LEFT, String.valueOf(entry.getValue()),
+                    labelWidth + plotWidth * entry.getValue() / max + 3, y, 0);
+            i++;
+        }
+        chart.endText();
+        return chart;
+    }
+
+    private static void drawTitle(PdfTemplate chart, BaseFont font, String title, float width) {
+        chart.beginText();
+        chart.setRGBColorFill(0, 0, 0);
+        chart.setFontAndSize(font, 11);
+        chart.showTextAligned(PdfContentByte.ALIGN_CENTER, title, width / 2, CHART_HEIGHT - 16, 0);
+        chart.endText();
+    }
+
+    private static void drawAxes(PdfTemplate chart, float width) {
+        chart.setRGBColorStroke(90, 90, 90);
+        chart.setLineWidth(0.75f);
+        chart.moveTo(AXIS_MARGIN, CHART_HEIGHT - AXIS_MARGIN);
+        chart.lineTo(AXIS_MARGIN, AXIS_MARGIN);
+        chart.lineTo(width, AXIS_MARGIN);
+        chart.stroke();
+    }
+
+    /** Reads the ASCII characters of a string range as bytes, so the base64 text is never copied. */
+    private static final class CharSequenceStream extends InputStream {
+        private final CharSequence chars;
+        private final int end;
+        private int position;
+
+        CharSequenceStream(CharSequence chars, int start, int end) {
+            this.chars = chars;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() {
+            return position < end ? toByte(chars.charAt(position++)) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            int n = Math.min(len, end - position);
+            for (int i = 0; i < n; i++) {
+                b[off + i] = (byte) toByte(chars.charAt(position++));
+            }
+            return n;
+        }
+
+        // Anything outside ASCII is replaced by a byte the decoder rejects.
+        private static int toByte(char c) {
+            return c < 0x80 ? c : '?';
+        }
+    }
+}
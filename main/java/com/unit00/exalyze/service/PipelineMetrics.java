@@ -0,0 +1,184 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.dataset.Dataset;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Metrics and trace spans for the stages of an upload. Parsing (tagged by format), profiling,
+ * correlation, duplicate detection, report rendering and response serialization are
+ * {@link Observation}s: the registry turns each into a timer, and the spans of one upload, started
+ * under its {@link #startUpload upload observation}, carry row and column counts and make up the
+ * stage breakdown kept by {@link SlowUploadLog}. Multipart receipt, per-column profiling, the sizes
+ * of uploads and parsed datasets and gauges of in-flight work are plain meters. Durations of the
+ * plain meters are passed as a {@link System#nanoTime()} start.
+ */
+@Service
+public class PipelineMetrics {
+
+    private final MeterRegistry registry;
+    private final ObservationRegistry observations;
+    private final AtomicInteger activeUploads = new AtomicInteger();
+    private final Map<String, Timer> columnTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Timer receipt;
+    private final DistributionSummary uploadBytes;
+    private final DistributionSummary parseRowsPerSecond;
+    private final DistributionSummary parseBytesPerSecond;
+    private final DistributionSummary datasetRows;
+    private final DistributionSummary datasetColumns;
+    private final DistributionSummary datasetBytes;
+
+    public PipelineMetrics(MeterRegistry registry, ObservationRegistry observations) {
+        this.registry = registry;
+        this.observations = observations;
+        this.receipt = Timer.builder("exalyze.upload.receipt")
+                .description("Time from the start of an upload request until its multipart body was received")
+                .register(registry);
+        this.uploadBytes = summary("exalyze.upload.size", "bytes", "Size of uploaded files");
+        this.parseRowsPerSecond = summary("exalyze.parse.rows.per.second", null, "Rows parsed per second, per upload");
+        this.parseBytesPerSecond = summary("exalyze.parse.bytes.per.second", null, "Bytes parsed per second, per upload");
+        this.datasetRows = summary("exalyze.dataset.rows", "rows", "Rows of parsed datasets");
+        this.datasetColumns = summary("exalyze.dataset.columns", "columns", "Columns of parsed datasets");
+        this.datasetBytes = summary("exalyze.dataset.memory", "bytes", "Estimated heap size of parsed datasets");
+        Gauge.builder("exalyze.uploads.active", activeUploads, AtomicInteger::get)
+                .description("Uploads being parsed or analyzed")
+                .register(registry);
+    }
+
+    /** A null unit keeps the name as it is; Prometheus would otherwise append the unit. */
+    private DistributionSummary summary(String name, String unit, String description) {
+        return DistributionSummary.builder(name)
+                .baseUnit(unit)
+                .description(description)
+                .register(registry);
+    }
+
+    /**
+     * Starts the observation the stages of one upload are recorded under; the caller opens its
+     * scope around parsing and analysis and stops it once the response is written. Given the
+     * request's start, the multipart receipt becomes the first stage.
+     */
+    public Observation startUpload(String filename, long bytes, Long requestStart) {
+        UploadTrace trace = new UploadTrace(filename, bytes, requestStart != null ? requestStart : System.nanoTime());
+        if (requestStart != null) {
+            recordReceipt(requestStart, bytes);
+            trace.addStage("receipt", System.nanoTime() - requestStart, 0, 0);
+        }
+        Observation upload = Observation.createNotStarted("exalyze.upload", observations)
+                .highCardinalityKeyValue("file", filename == null ? "" : filename)
+                .highCardinalityKeyValue("bytes", String.valueOf(bytes));
+        upload.getContext().put(UploadTrace.class, trace);
+        return upload.start();
+    }
+
+    public void recordReceipt(long startNanos, long bytes) {
+        receipt.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        uploadBytes.record(bytes);
+    }
+
+    /** Starts a stage of the upload in scope on this thread, if any. */
+    Observation startStage(String name, String tag, String value) {
+        return startStage(name, tag, value, null);
+    }
+
+    /** Starts a stage of the given upload, for stages that run outside of its scope. */
+    public Observation startStage(String name, String tag, String value, Observation upload) {
+        Observation stage = Observation.createNotStarted(name, observations)
+                .lowCardinalityKeyValue(tag, value)
+                .contextualName(name.substring(name.lastIndexOf('.') + 1) + " " + value);
+        if (upload != null) {
+            stage.parentObservation(upload);
+        }
+        return stage.start();
+    }
+
+    public void stopStage(Observation stage, long rows, int columns) {
+        stage.highCardinalityKeyValue("rows", String.valueOf(rows))
+                .highCardinalityKeyValue("columns", String.valueOf(columns))
+                .stop();
+    }
+
+    /** Stops the parse stage of one file; {@code format} is csv, xlsx or xls. */
+    void recordParse(Observation parse, String format, long bytes, long rows, int columns, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        stopStage(parse, rows, columns);
+        counter("exalyze.parse.rows", format).increment(rows);
+        counter("exalyze.parse.bytes", format).increment(bytes);
+        if (nanos > 0) {
+            double seconds = nanos / 1e9;
+            parseRowsPerSecond.record(rows / seconds);
+            parseBytesPerSecond.record(bytes / seconds);
+        }
+    }
+
+    /** Formula handling of every parsed workbook, read from the running totals when scraped. */
+    void bindFormulaStats(FormulaEvaluationStats stats) {
+        FunctionTimer.builder("exalyze.parse.formula.evaluation", stats,
+                        FormulaEvaluationStats::getWorkbooks, FormulaEvaluationStats::getEvaluationNanos, TimeUnit.NANOSECONDS)
+                .description("Formula evaluation time per parsed workbook")
+                .register(registry);
+        FunctionCounter.builder("exalyze.parse.formula.cells", stats, FormulaEvaluationStats::getFormulaCells)
+                .description("Formula cells met while parsing workbooks")
+                .register(registry);
+    }
+
+    /** Profiling of one column, tagged by its inferred type; too fine-grained for a span. */
+    void recordColumn(String type, long startNanos) {
+        columnTimers.computeIfAbsent(type, k -> Timer.builder("exalyze.analysis.column")
+                        .tag("type", type)
+                        .register(registry))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordDataset(Dataset data) {
+        datasetRows.record(data.getRowCount());
+        datasetColumns.record(data.getColumnCount());
+        datasetBytes.record(data.estimatedBytes());
+    }
+
+    /** {@code reason} is queue-full or timeout. */
+    void recordAdmissionRejected(String reason) {
+        counters.computeIfAbsent("exalyze.admission.rejected|" + reason, k -> Counter.builder("exalyze.admission.rejected")
+                        .description("Uploads turned away for lack of memory")
+                        .tag("reason", reason)
+                        .register(registry))
+                .increment();
+    }
+
+    void uploadStarted() {
+        activeUploads.incrementAndGet();
+    }
+
+    void uploadFinished() {
+        activeUploads.decrementAndGet();
+    }
+
+    void gauge(String name, String description, Supplier<Number> value) {
+        Gauge.builder(name, value).description(description).register(registry);
+    }
+
+    void gauge(String name, String tag, String tagValue, String description, Supplier<Number> value) {
+        Gauge.builder(name, value).tag(tag, tagValue).description(description).register(registry);
+    }
+
+    private Counter counter(String name, String format) {
+        return counters.computeIfAbsent(name + "|" + format, k -> Counter.builder(name)
+                .tag("format", format)
+                .register(registry));
+    }
+}
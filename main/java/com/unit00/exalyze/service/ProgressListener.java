@@ -0,0 +1,37 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.dataset.Dataset;
+
+/**
+ * Receives progress from parsing and analysis. Readers call {@link #rowsParsed(long)} after every
+ * row, so implementations should only record the value. An implementation may throw
+ * {@link java.util.concurrent.CancellationException} from any callback to abort the work.
+ * A listener that asks for row blocks also receives the parsed rows in blocks while the reader
+ * is still building the dataset.
+ */
+public interface ProgressListener {
+
+    ProgressListener NONE = new ProgressListener() {
+    };
+
+    default void rowsParsed(long rows) {
+    }
+
+    /** Rows per block handed to {@link #rowBlock(Dataset)}; 0 asks for no blocks. */
+    default int blockRows() {
+        return 0;
+    }
+
+    /**
+     * Receives consecutive blocks of rows in order, on the parsing thread. Only reads of a single
+     * table hand out blocks; a read of several sheets does not.
+     */
+    default void rowBlock(Dataset block) {
+    }
+
+    default void analysisStarted() {
+    }
+
+    default void columnsProfiled(int profiled, int total) {
+    }
+}
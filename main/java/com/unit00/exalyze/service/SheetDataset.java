@@ -0,0 +1,25 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.dataset.Dataset;
+
+/**
+ * One parsed sheet of a workbook, under its tab name.
+ */
+public class SheetDataset {
+
+    private final String name;
+    private final Dataset data;
+
+    public SheetDataset(String name, Dataset data) {
+        this.name = name;
+        this.data = data;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Dataset getData() {
+        return data;
+    }
+}
@@ -0,0 +1,59 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.dataset.Column;
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dataset.DatasetBuilder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Stacks sheets into one dataset with a leading "Sheet" column, in workbook order. Columns are
+ * matched by header name and added as new names turn up; a column missing from a sheet is null
+ * for that sheet's rows. Sheets may be handed in from several threads and out of order: each one
+ * is copied as soon as the sheets before it are, and only sheets that finished early are held.
+ */
+class SheetMerger implements ObjIntConsumer<SheetDataset> {
+
+    private final DatasetBuilder merged = new DatasetBuilder(List.of("Sheet"));
+    // A sheet's own "Sheet" column gets its own slot; the builder renames it to "Sheet_2".
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final Map<Integer, SheetDataset> early = new HashMap<>();
+    private int next;
+
+    @Override
+    public synchronized void accept(SheetDataset sheet, int index) {
+        early.put(index, sheet);
+        SheetDataset ready;
+        while ((ready = early.remove(next)) != null) {
+            append(ready);
+            next++;
+        }
+    }
+
+    public synchronized Dataset build() {
+        return merged.build();
+    }
+
+    private void append(SheetDataset sheet) {
+        Dataset data = sheet.getData();
+        for (String name : data.getColumnNames()) {
+            if (!positions.containsKey(name)) {
+                positions.put(name, merged.addColumn(name));
+            }
+        }
+        Column[] sources = new Column[merged.getColumnCount()];
+        for (Column column : data.getColumns()) {
+            sources[positions.get(column.getName())] = column;
+        }
+        for (int row = 0; row < data.getRowCount(); row++) {
+            merged.appendString(0, sheet.getName());
+            for (int c = 1; c < sources.length; c++) {
+                merged.appendFrom(c, sources[c], row);
+            }
+            merged.endRow();
+        }
+    }
+}
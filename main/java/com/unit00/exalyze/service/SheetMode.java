@@ -0,0 +1,13 @@
+package com.unit00.exalyze.service;
+
+/**
+ * What happens to the sheets of an uploaded workbook. CSV files have a single table and ignore this.
+ */
+public enum SheetMode {
+    /** Read only the first sheet. */
+    FIRST,
+    /** Read every sheet and stack them into one dataset, with a leading "Sheet" column naming the source tab. */
+    MERGE,
+    /** Read every sheet and analyze each one on its own; the rows are still kept merged for paging and downloads. */
+    SEPARATE
+}
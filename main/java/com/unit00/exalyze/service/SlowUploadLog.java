@@ -0,0 +1,101 @@
+package com.unit00.exalyze.service;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationView;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * In-memory exporter of upload spans. Each stopped stage is added to the {@link UploadTrace} of
+ * the upload observation it ran under, and each finished upload goes into a ring buffer of the
+ * most recent ones, from which the slowest are served. Only exalyze observations are handled.
+ */
+@Component
+public class SlowUploadLog implements ObservationHandler<Observation.Context> {
+
+    private static final String START = SlowUploadLog.class.getName() + ".start";
+
+    private final UploadTrace[] recent;
+    private final int defaultLimit;
+    private int next;
+
+    public SlowUploadLog(@Value("${exalyze.tracing.recent-uploads:200}") int recentUploads,
+                         @Value("${exalyze.tracing.slow-uploads:10}") int slowUploads) {
+        this.recent = new UploadTrace[Math.max(1, recentUploads)];
+        this.defaultLimit = slowUploads;
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return context.getName() != null && context.getName().startsWith("exalyze.");
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        context.put(START, System.nanoTime());
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        long now = System.nanoTime();
+        UploadTrace own = context.get(UploadTrace.class);
+        if (own != null) {
+            own.finish(now, context.getError());
+            add(own);
+            return;
+        }
+        UploadTrace trace = traceOf(context);
+        Long start = context.get(START);
+        if (trace != null && start != null) {
+            String name = context.getContextualName() != null ? context.getContextualName() : context.getName();
+            trace.addStage(name, now - start, count(context, "rows"), count(context, "columns"));
+        }
+    }
+
+    /** The trace of the nearest enclosing upload observation, or null outside of an upload. */
+    private static UploadTrace traceOf(Observation.Context context) {
+        ObservationView parent = context.getParentObservation();
+        while (parent != null) {
+            UploadTrace trace = parent.getContextView().get(UploadTrace.class);
+            if (trace != null) {
+                return trace;
+            }
+            parent = parent.getContextView().getParentObservation();
+        }
+        return null;
+    }
+
+    private static long count(Observation.Context context, String key) {
+        KeyValue value = context.getHighCardinalityKeyValue(key);
+        return value == null ? 0 : Long.parseLong(value.getValue());
+    }
+
+    private synchronized void add(UploadTrace trace) {
+        recent[next] = trace;
+        next = (next + 1) % recent.length;
+    }
+
+    public int getDefaultLimit() {
+        return defaultLimit;
+    }
+
+    /** The slowest of the recent uploads, slowest first. */
+    public List<UploadTrace> slowest(int limit) {
+        List<UploadTrace> traces = new ArrayList<>();
+        synchronized (this) {
+            for (UploadTrace trace : recent) {
+                if (trace != null) {
+                    traces.add(trace);
+                }
+            }
+        }
+        traces.sort(Comparator.comparingLong(UploadTrace::getDurationNanos).reversed());
+        return traces.subList(0, Math.min(Math.max(limit, 0), traces.size()));
+    }
+}
@@ -0,0 +1,72 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.dto.ChartDataDto;
+import com.unit00.exalyze.dto.NumericSummaryDto;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * What the result cache keeps of an upload: the markdown report, the chart data and the size of
+ * the table, but not the rows, which are only ever held under the {@link DatasetCache} budget.
+ */
+public class StoredAnalysis implements Serializable {
+
+    // Bumped when the fields change, so entries written by an older build read as misses.
+    private static final long serialVersionUID = 2L;
+
+    private final String analysis;
+    private final ChartDataDto chartData;
+    private final int rowCount;
+    private final int columnCount;
+
+    public StoredAnalysis(String analysis, ChartDataDto chartData, int rowCount, int columnCount) {
+        this.analysis = analysis;
+        this.chartData = chartData;
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+    }
+
+    public String getAnalysis() {
+        return analysis;
+    }
+
+    public ChartDataDto getChartData() {
+        return chartData;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    long estimatedBytes() {
+        long bytes = 64 + 2L * analysis.length();
+        if (chartData.getNumericData() != null) {
+            for (NumericSummaryDto summary : chartData.getNumericData().values()) {
+                bytes += 128 + (summary.getHistogramBins() == null ? 0 : 48L * summary.getHistogramBins().size());
+            }
+        }
+        bytes += nestedBytes(chartData.getCategoricalFrequencies());
+        bytes += nestedBytes(chartData.getCorrelationMatrix());
+        return bytes;
+    }
+
+    /** Roughly a map entry, a boxed value and the key's characters per inner entry. */
+    private static long nestedBytes(Map<String, ? extends Map<String, ?>> maps) {
+        if (maps == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (Map<String, ?> inner : maps.values()) {
+            bytes += 64;
+            for (String key : inner.keySet()) {
+                bytes += 56 + 2L * key.length();
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,346 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dataset.DatasetBuilder;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reads a CSV file into a typed {@link Dataset} in one pass. The first bytes are sniffed for the
+ * charset (BOM, else UTF-8 if it decodes, else windows-1252) and the delimiter. The first
+ * {@code sampleRows} records decide each column's type. Columns whose sampled values all parse as
+ * numbers, ISO dates or booleans are then filled as primitives while the rest of the file
+ * streams in. A later value that does not fit is kept as a string, and the column becomes mixed.
+ */
+public class StreamingCsvReader {
+
+    private static final int SNIFF_BYTES = 64 * 1024;
+    private static final int SNIFF_LINES = 20;
+    private static final char[] DELIMITERS = {',', ';', '\t', '|'};
+
+    private enum Kind { NUMERIC, DATE, BOOLEAN, STRING }
+
+    private final int sampleRows;
+    private final boolean typeSniffing;
+
+    public StreamingCsvReader(int sampleRows, boolean typeSniffing) {
+        this.sampleRows = Math.max(1, sampleRows);
+        this.typeSniffing = typeSniffing;
+    }
+
+    public Dataset read(InputStream input) throws IOException {
+        return read(input, ProgressListener.NONE);
+    }
+
+    public Dataset read(InputStream input, ProgressListener progress) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(input, SNIFF_BYTES);
+        in.mark(SNIFF_BYTES);
+        byte[] head = in.readNBytes(SNIFF_BYTES);
+        in.reset();
+
+        int bomLength = bomLength(head);
+        Charset charset = detectCharset(head, bomLength);
+        in.skipNBytes(bomLength);
+        char delimiter = detectDelimiter(decodeHead(head, bomLength, charset));
+        System.out.println("CSV charset: " + charset.name() + ", delimiter: '" + delimiter + "'");
+
+        Reader reader = new InputStreamReader(in, charset);
+        try (CSVParser csvParser = CSVFormat.Builder.create(CSVFormat.DEFAULT)
+                .setDelimiter(delimiter)
+                .setHeader()
+                .setSkipHeaderRecord(false)
+                .build()
+                .parse(reader)) {
+
+            List<String> headers = csvParser.getHeaderNames();
+            System.out.println("Headers found: " + headers);
+
+            Iterator<CSVRecord> records = csvParser.iterator();
+            List<CSVRecord> sample = new ArrayList<>();
+            while (sample.size() < sampleRows && records.hasNext()) {
+                sample.add(records.next());
+            }
+            Kind[] kinds = typeSniffing ? sniffKinds(sample, headers.size()) : allStrings(headers.size());
+
+            DatasetBuilder data = new DatasetBuilder(headers, progress.blockRows(), progress::rowBlock);
+            for (CSVRecord csvRecord : sample) {
+                appendRecord(data, csvRecord, kinds);
+                progress.rowsParsed(data.getRowCount());
+            }
+            sample.clear();
+            while (records.hasNext()) {
+                appendRecord(data, records.next(), kinds);
+                progress.rowsParsed(data.getRowCount());
+            }
+            return data.build();
+        }
+    }
+
+    private static Kind[] allStrings(int columns) {
+        Kind[] kinds = new Kind[columns];
+        Arrays.fill(kinds, Kind.STRING);
+        return kinds;
+    }
+
+    private static Kind[] sniffKinds(List<CSVRecord> sample, int columns) {
+        Kind[] kinds = new Kind[columns];
+        for (int j = 0; j < columns; j++) {
+            boolean numeric = true;
+            boolean date = true;
+            boolean bool = true;
+            boolean any = false;
+            for (CSVRecord csvRecord : sample) {
+                if (j >= csvRecord.size()) {
+                    continue;
+                }
+                String value = csvRecord.get(j).trim();
+                if (value.isEmpty()) {
+                    continue;
+                }
+                any = true;
+                numeric = numeric && parseNumber(value) != null;
+                date = date && parseDate(value) != null;
+                bool = bool && isBoolean(value);
+                if (!numeric && !date && !bool) {
+                    break;
+                }
+            }
+            if (!any) {
+                kinds[j] = Kind.STRING;
+            } else if (numeric) {
+                kinds[j] = Kind.NUMERIC;
+            } else if (date) {
+                kinds[j] = Kind.DATE;
+            } else if (bool) {
+                kinds[j] = Kind.BOOLEAN;
+            } else {
+                kinds[j] = Kind.STRING;
+            }
+        }
+        return kinds;
+    }
+
+    private static void appendRecord(DatasetBuilder data, CSVRecord csvRecord, Kind[] kinds) {
+        int cells = Math.min(kinds.length, csvRecord.size());
+        for (int j = 0; j < cells; j++) {
+            String raw = csvRecord.get(j);
+            if (kinds[j] == Kind.STRING) {
+                data.appendString(j, raw);
+                continue;
+            }
+            String value = raw.trim();
+            if (value.isEmpty()) {
+                data.appendNull(j);
+            } else if (kinds[j] == Kind.NUMERIC) {
+                Double number = parseNumber(value);
+                if (number != null) {
+                    data.appendDouble(j, number);
+                } else {
+                    data.appendString(j, raw);
+                }
+            } else if (kinds[j] == Kind.DATE) {
+                Long millis = parseDate(value);
+                if (millis != null) {
+                    data.appendDate(j, millis);
+                } else {
+                    data.appendString(j, raw);
+                }
+            } else if (isBoolean(value)) {
+                data.appendBoolean(j, Boolean.parseBoolean(value));
+            } else {
+                data.appendString(j, raw);
+            }
+        }
+        data.endRow();
+    }
+
+    /** The value of a number in plain notation, or null for text and for numbers beyond double range ("1e400"). */
+    static Double parseNumber(String s) {
+        if (!isNumber(s)) {
+            return null;
+        }
+        double value = Double.parseDouble(s);
+        return Double.isInfinite(value) ? null : value;
+    }
+
+    /**
+     * Plain decimal notation with an optional exponent. Stricter than Double.parseDouble, which
+     * also takes "NaN", "1f" or hex floats. Integers with a leading zero ("007", zip codes) are
+     * left as text, because they are identifiers rather than numbers.
+     */
+    static boolean isNumber(String s) {
+        int i = 0;
+        int n = s.length();
+        if (i < n && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            i++;
+        }
+        int intStart = i;
+        while (i < n && isDigit(s.charAt(i))) {
+            i++;
+        }
+        int intDigits = i - intStart;
+        if (intDigits > 1 && s.charAt(intStart) == '0') {
+            return false;
+        }
+        int fracDigits = 0;
+        if (i < n && s.charAt(i) == '.') {
+            i++;
+            int fracStart = i;
+            while (i < n && isDigit(s.charAt(i))) {
+                i++;
+            }
+            fracDigits = i - fracStart;
+        }
+        if (intDigits + fracDigits == 0) {
+            return false;
+        }
+        if (i < n && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < n && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                i++;
+            }
+            int expStart = i;
+            while (i < n && isDigit(s.charAt(i))) {
+                i++;
+            }
+            if (i == expStart) {
+                return false;
+            }
+        }
+        return i == n;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isBoolean(String s) {
+        return "true".equalsIgnoreCase(s) || "false".equalsIgnoreCase(s);
+    }
+
+    /** ISO dates ("2024-03-01") and date-times ("2024-03-01T10:15[:30]", space allowed), in the server's zone like Excel dates. */
+    private static Long parseDate(String s) {
+        if (s.length() < 10 || s.charAt(4) != '-' || s.charAt(7) != '-') {
+            return null;
+        }
+        try {
+            if (s.length() == 10) {
+                return LocalDate.parse(s).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            }
+            String dateTime = s.charAt(10) == ' ' ? s.substring(0, 10) + 'T' + s.substring(11) : s;
+            return LocalDateTime.parse(dateTime).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static int bomLength(byte[] head) {
+        if (head.length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+            return 3;
+        }
+        if (head.length >= 2 && ((head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF
+                || (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE)) {
+            return 2;
+        }
+        return 0;
+    }
+
+    private static Charset detectCharset(byte[] head, int bomLength) {
+        if (bomLength == 3) {
+            return StandardCharsets.UTF_8;
+        }
+        if (bomLength == 2) {
+            return (head[0] & 0xFF) == 0xFE ? StandardCharsets.UTF_16BE : StandardCharsets.UTF_16LE;
+        }
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer out = CharBuffer.allocate(head.length);
+        // A full window is not the end of input, so a character cut off at its edge is not an error.
+        boolean utf8 = !decoder.decode(ByteBuffer.wrap(head), out, head.length < SNIFF_BYTES).isError();
+        return utf8 ? StandardCharsets.UTF_8 : Charset.forName("windows-1252");
+    }
+
+    private static String decodeHead(byte[] head, int bomLength, Charset charset) {
+        return new String(head, bomLength, head.length - bomLength, charset);
+    }
+
+    /**
+     * Picks the candidate that splits the first lines into the same, largest number of fields.
+     * Delimiters inside quotes are ignored. Falls back to a comma.
+     */
+    static char detectDelimiter(String head) {
+        List<String> lines = new ArrayList<>();
+        boolean quoted = false;
+        int lineStart = 0;
+        for (int i = 0; i < head.length() && lines.size() < SNIFF_LINES; i++) {
+            char c = head.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '\n' && !quoted) {
+                lines.add(head.substring(lineStart, i));
+                lineStart = i + 1;
+            }
+        }
+        if (lines.isEmpty()) {
+            lines.add(head);
+        }
+
+        char best = ',';
+        int bestScore = 0;
+        for (char candidate : DELIMITERS) {
+            int expected = countOutsideQuotes(lines.get(0), candidate);
+            if (expected == 0) {
+                continue;
+            }
+            int consistent = 0;
+            for (String line : lines) {
+                if (countOutsideQuotes(line, candidate) == expected) {
+                    consistent++;
+                }
+            }
+            // Consistency across lines first, then the number of fields.
+            int score = consistent * 1024 + Math.min(expected, 1023);
+            if (score > bestScore) {
+                bestScore = score;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static int countOutsideQuotes(String line, char delimiter) {
+        int count = 0;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == delimiter && !quoted) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,343 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.analysis.ParallelRunner;
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dataset.DatasetBuilder;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Reads the sheets of an .xlsx file with POI's event model instead of building an
+ * XSSFWorkbook, writing cells straight into a {@link DatasetBuilder}. Cells are typed the same
+ * way ExcelService's DOM path types them: strings, booleans, numbers, and date-formatted numbers
+ * become dates. Formula cells use the result cached in the file.
+ */
+public class StreamingXlsxReader {
+
+    public Dataset read(File xlsxFile) throws IOException {
+        return read(xlsxFile, ProgressListener.NONE);
+    }
+
+    public Dataset read(File xlsxFile, ProgressListener progress) throws IOException {
+        List<SheetDataset> sheets = readSheets(xlsxFile, 1, ParallelRunner.sequential(), progress);
+        return sheets.isEmpty() ? Dataset.empty() : sheets.get(0).getData();
+    }
+
+    /** Reads up to {@code maxSheets} sheets as {@link #readSheets(File, int, ParallelRunner, ProgressListener, ObjIntConsumer)} does and returns them in workbook order. */
+    public List<SheetDataset> readSheets(File xlsxFile, int maxSheets, ParallelRunner runner, ProgressListener progress) throws IOException {
+        Map<Integer, SheetDataset> parsed = new ConcurrentSkipListMap<>();
+        readSheets(xlsxFile, maxSheets, runner, progress, (sheet, index) -> parsed.put(index, sheet));
+        return new ArrayList<>(parsed.values());
+    }
+
+    /**
+     * Reads up to {@code maxSheets} sheets, as many at a time as the runner allows, and hands each
+     * one with its workbook position to {@code finished} on the thread that parsed it, as soon as it
+     * is done. The shared string table and styles are loaded once and only read by the workers;
+     * every sheet gets its own stream, parser and builder, opened by the task that parses it.
+     * Progress reports the rows of all sheets together.
+     */
+    public void readSheets(File xlsxFile, int maxSheets, ParallelRunner runner, ProgressListener progress,
+                           ObjIntConsumer<SheetDataset> finished) throws IOException {
+        OPCPackage pkg = null;
+        try {
+            pkg = OPCPackage.open(xlsxFile, PackageAccess.READ);
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            boolean date1904 = isDate1904(reader);
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            List<PackagePart> parts = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            while (sheets.hasNext() && parts.size() < maxSheets) {
+                // The iterator opens each sheet; only its part is kept, and the task reopens it.
+                sheets.next().close();
+                parts.add(sheets.getSheetPart());
+                names.add(sheets.getSheetName());
+            }
+
+            AtomicLong totalRows = new AtomicLong();
+            List<Runnable> tasks = new ArrayList<>();
+            for (int i = 0; i < parts.size(); i++) {
+                int index = i;
+                tasks.add(() -> {
+                    try (InputStream sheet = parts.get(index).getInputStream()) {
+                        // A single sheet reports to the caller directly, row blocks included.
+                        ProgressListener sheetProgress = parts.size() == 1 ? progress : new SheetProgress(progress, totalRows);
+                        SheetHandler handler = new SheetHandler(strings, styles, date1904, sheetProgress);
+                        XMLReader parser = XMLHelper.newXMLReader();
+                        parser.setContentHandler(handler);
+                        parser.parse(new InputSource(sheet));
+                        Dataset data = handler.builder == null ? Dataset.empty() : handler.builder.build();
+                        finished.accept(new SheetDataset(names.get(index), data), index);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (SAXException | ParserConfigurationException e) {
+                        throw new UncheckedIOException(new IOException("Failed to stream sheet " + names.get(index) + ": " + e.getMessage(), e));
+                    }
+                });
+            }
+            // Returns or throws only once every task has stopped, so the package is not reverted under a parser.
+            runner.run(tasks);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Failed to stream XLSX content: " + e.getMessage(), e);
+        } finally {
+            if (pkg != null) {
+                // Read-only packages are released with revert(); close() would try to save.
+                pkg.revert();
+            }
+        }
+    }
+
+    private static boolean isDate1904(XSSFReader reader) throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        boolean[] date1904 = new boolean[1];
+        try (InputStream workbook = reader.getWorkbookData()) {
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if ("workbookPr".equals(localName)) {
+                        String value = attributes.getValue("date1904");
+                        date1904[0] = "1".equals(value) || "true".equalsIgnoreCase(value);
+                    }
+                }
+            });
+            parser.parse(new InputSource(workbook));
+        }
+        return date1904[0];
+    }
+
+    /** Turns one sheet's row count into increments of the workbook total. Used by a single worker. */
+    private static final class SheetProgress implements ProgressListener {
+
+        private final ProgressListener progress;
+        private final AtomicLong totalRows;
+        private long sheetRows;
+
+        SheetProgress(ProgressListener progress, AtomicLong totalRows) {
+            this.progress = progress;
+            this.totalRows = totalRows;
+        }
+
+        @Override
+        public void rowsParsed(long rows) {
+            progress.rowsParsed(totalRows.addAndGet(rows - sheetRows));
+            sheetRows = rows;
+        }
+    }
+
+    private static final class SheetHandler extends DefaultHandler {
+
+        private final ReadOnlySharedStringsTable strings;
+        private final StylesTable styles;
+        private final boolean date1904;
+        private final ProgressListener progress;
+
+        private final StringBuilder text = new StringBuilder();
+        private DatasetBuilder builder;
+        private boolean headerMissing;
+        private List<String> headerValues;
+        private int rowIndex = -1;
+        private int nextColumn;
+
+        private int cellColumn;
+        private String cellType;
+        private String cellStyle;
+        private boolean cellHasFormula;
+        private String cellValue;
+        private boolean inValue;
+        private boolean inInlineString;
+
+        SheetHandler(ReadOnlySharedStringsTable strings, StylesTable styles, boolean date1904, ProgressListener progress) {
+            this.strings = strings;
+            this.styles = styles;
+            this.date1904 = date1904;
+            this.progress = progress;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    String r = attributes.getValue("r");
+                    rowIndex = r != null ? Integer.parseInt(r) - 1 : rowIndex + 1;
+                    nextColumn = 0;
+                    if (builder == null) {
+                        if (rowIndex != 0) {
+                            // Same as the DOM path: no header in the first row means no data.
+                            headerMissing = true;
+                        }
+                        headerValues = new ArrayList<>();
+                    }
+                    break;
+                case "c":
+                    String ref = attributes.getValue("r");
+                    cellColumn = ref != null ? columnIndex(ref) : nextColumn;
+                    nextColumn = cellColumn + 1;
+                    cellType = attributes.getValue("t");
+                    cellStyle = attributes.getValue("s");
+                    cellHasFormula = false;
+                    cellValue = null;
+                    break;
+                case "f":
+                    cellHasFormula = true;
+                    break;
+                case "v":
+                    inValue = true;
+                    text.setLength(0);
+                    break;
+                case "is":
+                    inInlineString = true;
+                    text.setLength(0);
+                    break;
+                default:
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v":
+                    inValue = false;
+                    cellValue = text.toString();
+                    break;
+                case "is":
+                    inInlineString = false;
+                    cellValue = text.toString();
+                    break;
+                case "c":
+                    if (headerMissing) {
+                        break;
+                    }
+                    if (builder == null) {
+                        String header = headerText();
+                        if (header != null) {
+                            headerValues.add(header);
+                        }
+                    } else {
+                        writeCell();
+                    }
+                    break;
+                case "row":
+                    if (headerMissing) {
+                        break;
+                    }
+                    if (builder == null) {
+                        System.out.println("Headers found: " + headerValues);
+                        builder = new DatasetBuilder(headerValues, progress.blockRows(), progress::rowBlock);
+                    } else {
+                        builder.endRow();
+                        progress.rowsParsed(builder.getRowCount());
+                    }
+                    break;
+                default:
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue || inInlineString) {
+                text.append(ch, start, length);
+            }
+        }
+
+        private void writeCell() {
+            if (cellValue == null) {
+                builder.appendNull(cellColumn);
+                return;
+            }
+            if (cellType == null || "n".equals(cellType)) {
+                if (cellValue.isEmpty()) {
+                    builder.appendNull(cellColumn);
+                    return;
+                }
+                double number = Double.parseDouble(cellValue);
+                // Formula results are never date-converted by the DOM path either.
+                if (!cellHasFormula && isDateFormatted(number)) {
+                    builder.appendDate(cellColumn, DateUtil.getJavaDate(number, date1904).getTime());
+                } else {
+                    builder.appendDouble(cellColumn, number);
+                }
+                return;
+            }
+            switch (cellType) {
+                case "s":
+                    builder.appendString(cellColumn, sharedString());
+                    break;
+                case "inlineStr":
+                case "str":
+                    builder.appendString(cellColumn, cellValue);
+                    break;
+                case "b":
+                    builder.appendBoolean(cellColumn, "1".equals(cellValue) || "true".equalsIgnoreCase(cellValue));
+                    break;
+                case "e":
+                default:
+                    builder.appendNull(cellColumn);
+            }
+        }
+
+        private String headerText() {
+            if (cellValue == null) {
+                return null;
+            }
+            return "s".equals(cellType) ? sharedString() : cellValue;
+        }
+
+        private String sharedString() {
+            return strings.getItemAt(Integer.parseInt(cellValue)).getString();
+        }
+
+        private boolean isDateFormatted(double number) {
+            if (cellStyle == null || !DateUtil.isValidExcelDate(number)) {
+                return false;
+            }
+            XSSFCellStyle style = styles.getStyleAt(Integer.parseInt(cellStyle));
+            if (style == null) {
+                return false;
+            }
+            String format = style.getDataFormatString();
+            return format != null && DateUtil.isADateFormat(style.getDataFormat(), format);
+        }
+
+        private static int columnIndex(String cellRef) {
+            int column = 0;
+            for (int i = 0; i < cellRef.length(); i++) {
+                char c = cellRef.charAt(i);
+                if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                column = column * 26 + (c - 'A' + 1);
+            }
+            return column - 1;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.unit00.exalyze.service;
+
+import io.micrometer.observation.Observation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits uploads against a global memory budget before they are parsed. An upload's cost is its
+ * file size times an expansion factor for its format, as a zipped .xlsx grows much more than a
+ * .csv once parsed; comparing exalyze.dataset.memory with exalyze.upload.size shows how well the
+ * factors fit. Uploads that do not fit wait in arrival order, up to a queue length and a wait
+ * time, and are rejected beyond that. A cost is capped at the budget, so an upload larger than
+ * the budget still runs, just on its own. The reservation covers parsing and analysis; the
+ * parsed dataset is afterwards accounted for by {@link DatasetCache}.
+ */
+@Service
+public class UploadAdmission {
+
+    private final long budgetBytes;
+    private final double csvFactor;
+    private final double xlsxFactor;
+    private final double xlsFactor;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+    private final long retryAfterSeconds;
+    private final PipelineMetrics metrics;
+
+    // A lock rather than synchronized, so waiting virtual threads do not pin their carriers.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final ArrayDeque<Object> queue = new ArrayDeque<>();
+    private volatile long reservedBytes;
+    private volatile int queued;
+
+    public UploadAdmission(@Value("${exalyze.admission.max-memory-mb:0}") long maxMemoryMb,
+                           @Value("${exalyze.admission.csv-factor:4}") double csvFactor,
+                           @Value("${exalyze.admission.xlsx-factor:15}") double xlsxFactor,
+                           @Value("${exalyze.admission.xls-factor:6}") double xlsFactor,
+                           @Value("${exalyze.admission.max-queued:20}") int maxQueued,
+                           @Value("${exalyze.admission.max-wait-seconds:60}") long maxWaitSeconds,
+                           @Value("${exalyze.admission.retry-after-seconds:30}") long retryAfterSeconds,
+                           PipelineMetrics metrics) {
+        // 0 leaves half of the heap to uploads being parsed.
+        this.budgetBytes = maxMemoryMb > 0 ? maxMemoryMb * 1024 * 1024 : Runtime.getRuntime().maxMemory() / 2;
+        this.csvFactor = csvFactor;
+        this.xlsxFactor = xlsxFactor;
+        this.xlsFactor = xlsFactor;
+        this.maxQueued = maxQueued;
+        this.maxWaitNanos = TimeUnit.SECONDS.toNanos(maxWaitSeconds);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.metrics = metrics;
+        metrics.gauge("exalyze.admission.queued", "Uploads waiting for memory", () -> queued);
+        metrics.gauge("exalyze.admission.reserved.bytes", "Memory reserved by uploads being parsed or analyzed", () -> reservedBytes);
+        metrics.gauge("exalyze.admission.budget.bytes", "Memory uploads may reserve at once", () -> budgetBytes);
+    }
+
+    private static String format(String filename) {
+        String name = filename == null ? "" : filename.toLowerCase();
+        if (name.endsWith(".csv")) {
+            return "csv";
+        }
+        return name.endsWith(".xls") ? "xls" : "xlsx";
+    }
+
+    /** Estimated heap taken by parsing and analyzing the upload, at most the whole budget. */
+    long estimate(String filename, long size) {
+        String format = format(filename);
+        double factor = format.equals("csv") ? csvFactor : format.equals("xls") ? xlsFactor : xlsxFactor;
+        return Math.min(budgetBytes, (long) (size * factor));
+    }
+
+    /**
+     * Reserves the upload's estimated cost, waiting for other uploads to release theirs if needed.
+     * Returns the reserved bytes to pass to {@link #release}, or -1 if the queue was full or the
+     * wait timed out.
+     */
+    public long admit(String filename, long size) {
+        long cost = estimate(filename, size);
+        Observation wait = metrics.startStage("exalyze.admission.wait", "format", format(filename));
+        try {
+            return reserve(cost);
+        } finally {
+            metrics.stopStage(wait, 0, 0);
+        }
+    }
+
+    private long reserve(long cost) {
+        lock.lock();
+        try {
+            if (queue.isEmpty() && reservedBytes + cost <= budgetBytes) {
+                reservedBytes += cost;
+                return cost;
+            }
+            if (queue.size() >= maxQueued) {
+                metrics.recordAdmissionRejected("queue-full");
+                return -1;
+            }
+            Object ticket = new Object();
+            queue.addLast(ticket);
+            queued = queue.size();
+            try {
+                long remaining = maxWaitNanos;
+                while (queue.peekFirst() != ticket || reservedBytes + cost > budgetBytes) {
+                    if (remaining <= 0) {
+                        metrics.recordAdmissionRejected("timeout");
+                        return -1;
+                    }
+                    remaining = changed.awaitNanos(remaining);
+                }
+                reservedBytes += cost;
+                return cost;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            } finally {
+                // Either way the next upload in line may now fit.
+                queue.remove(ticket);
+                queued = queue.size();
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(long reserved) {
+        lock.lock();
+        try {
+            reservedBytes -= reserved;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Suggested wait before a rejected upload is retried. */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
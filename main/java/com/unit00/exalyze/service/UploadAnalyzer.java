@@ -0,0 +1,208 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.analysis.ChunkedSummarizer;
+import com.unit00.exalyze.analysis.DatasetSummary;
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dto.ChartDataDto;
+import io.micrometer.observation.Observation;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Parses and analyzes one upload and stores its rows in the {@link DatasetCache}. When the same
+ * bytes were already analyzed under the same settings, the stored report and chart data are
+ * reused, and so are the stored rows while the dataset cache still holds them; the upload is only
+ * parsed again once they have been evicted. Shared by the synchronous upload endpoint and
+ * background jobs. With chunked analysis enabled, a single-table upload is summarized block by block while it is
+ * still being parsed, instead of being profiled as a whole afterwards.
+ */
+@Service
+public class UploadAnalyzer {
+
+    private final ExcelService excelService;
+    private final AIAnalysisService aiAnalysisService;
+    private final AnalysisResultCache resultCache;
+    private final DatasetCache datasetCache;
+    private final PipelineMetrics metrics;
+
+    public UploadAnalyzer(ExcelService excelService, AIAnalysisService aiAnalysisService, AnalysisResultCache resultCache,
+                          DatasetCache datasetCache, PipelineMetrics metrics) {
+        this.excelService = excelService;
+        this.aiAnalysisService = aiAnalysisService;
+        this.resultCache = resultCache;
+        this.datasetCache = datasetCache;
+        this.metrics = metrics;
+    }
+
+    /**
+     * A null sheet mode uses the configured default. The result always carries the stored dataset
+     * id; without needRows it may carry only the row and column counts, when the rows of a
+     * repeated upload are still stored and need not be read back.
+     */
+    public AnalysisResult analyze(InputStreamSource source, String filename, long size, SheetMode sheetMode,
+                                  boolean needRows, ProgressListener progress) throws IOException {
+        SheetMode mode = excelService.resolveSheetMode(filename, sheetMode);
+        String key = null;
+        StoredAnalysis stored = null;
+        if (resultCache.isEnabled()) {
+            // Hashing reads the whole upload, so the lookup is a stage of its own.
+            Observation lookup = metrics.startStage("exalyze.results", "operation", "lookup");
+            key = resultCache.key(source, settings(filename, mode));
+            stored = resultCache.get(key);
+            metrics.stopStage(lookup, 0, 0);
+        }
+
+        metrics.uploadStarted();
+        try {
+            if (stored != null) {
+                AnalysisResult reused = reuseDataset(key, stored, needRows);
+                if (reused != null) {
+                    System.out.println("Reusing stored dataset " + reused.getDatasetId() + " for " + filename);
+                    progress.analysisStarted();
+                    return reused;
+                }
+                System.out.println("Reusing stored analysis for " + filename);
+                Dataset data = parse(source, filename, size, mode, progress);
+                progress.analysisStarted();
+                metrics.recordDataset(data);
+                // Lets chart-data requests for this dataset skip re-profiling.
+                aiAnalysisService.rememberChartData(data, stored.getChartData());
+                return store(key, data, stored.getAnalysis(), stored.getChartData());
+            }
+            AnalysisResult result = parseAndAnalyze(source, filename, size, mode, progress);
+            Dataset data = result.getData();
+            if (key != null) {
+                resultCache.put(key, new StoredAnalysis(result.getAnalysis(), result.getChartData(),
+                        data.getRowCount(), data.getColumnCount()));
+            }
+            return store(key, data, result.getAnalysis(), result.getChartData());
+        } finally {
+            metrics.uploadFinished();
+        }
+    }
+
+    /** The dataset stored for an earlier upload of the same bytes, or null if it has gone or been appended to. */
+    private AnalysisResult reuseDataset(String key, StoredAnalysis stored, boolean needRows) {
+        String datasetId = datasetCache.findByContent(key);
+        if (datasetId == null) {
+            return null;
+        }
+        if (!needRows) {
+            return new AnalysisResult(datasetId, null, stored.getAnalysis(), stored.getChartData(),
+                    stored.getRowCount(), stored.getColumnCount());
+        }
+        Dataset data = datasetCache.get(datasetId);
+        if (data == null) {
+            return null;
+        }
+        // A dataset read back from disk is a new instance, whose chart data is not remembered yet.
+        aiAnalysisService.rememberChartData(data, stored.getChartData());
+        return new AnalysisResult(datasetId, data, stored.getAnalysis(), stored.getChartData(),
+                data.getRowCount(), data.getColumnCount());
+    }
+
+    /** Chart data and downloads can pass the returned id instead of posting the rows back. */
+    private AnalysisResult store(String key, Dataset data, String analysis, ChartDataDto chartData) {
+        String datasetId = datasetCache.put(data, key);
+        return new AnalysisResult(datasetId, data, analysis, chartData, data.getRowCount(), data.getColumnCount());
+    }
+
+    /** The rows alone, as parseAndAnalyze would have produced them. */
+    private Dataset parse(InputStreamSource source, String filename, long size, SheetMode mode,
+                          ProgressListener progress) throws IOException {
+        if (mode == SheetMode.FIRST) {
+            return excelService.readData(source, filename, size, progress);
+        }
+        return excelService.readMerged(source, filename, size, progress);
+    }
+
+    private AnalysisResult parseAndAnalyze(InputStreamSource source, String filename, long size, SheetMode mode,
+                                           ProgressListener progress) throws IOException {
+        Dataset data;
+        String analysis;
+        if (mode == SheetMode.FIRST && aiAnalysisService.getChunkRows() > 0) {
+            ChunkedSummarizer chunks = aiAnalysisService.newChunkedSummarizer();
+            try {
+                data = excelService.readData(source, filename, size, new ChunkedProgress(progress, aiAnalysisService.getChunkRows(), chunks));
+            } catch (IOException | RuntimeException e) {
+                chunks.cancel();
+                throw e;
+            }
+            progress.analysisStarted();
+            Observation stage = metrics.startStage("exalyze.analysis", "stage", "summary");
+            DatasetSummary summary = chunks.finish();
+            metrics.stopStage(stage, summary.getRowCount(), data.getColumnCount());
+            // Every single-table read hands out blocks; the full profile stays as a fallback should one not.
+            analysis = summary.getRowCount() == data.getRowCount()
+                    ? aiAnalysisService.analyzeIncrementally(data, summary)
+                    : aiAnalysisService.analyzeData(data, progress);
+        } else if (mode == SheetMode.FIRST) {
+            data = excelService.readData(source, filename, size, progress);
+            progress.analysisStarted();
+            analysis = aiAnalysisService.analyzeData(data, progress);
+        } else if (mode == SheetMode.MERGE) {
+            // Sheets are stacked while the others are still being parsed.
+            data = excelService.readMerged(source, filename, size, progress);
+            progress.analysisStarted();
+            analysis = aiAnalysisService.analyzeData(data, progress);
+        } else {
+            List<SheetDataset> sheets = excelService.readSheets(source, filename, size, mode, progress);
+            progress.analysisStarted();
+            // Per-sheet reports are written before merging, which releases the sheets one by one.
+            analysis = aiAnalysisService.analyzeSheets(sheets, progress);
+            data = excelService.mergeSheets(sheets);
+        }
+        metrics.recordDataset(data);
+        ChartDataDto chartData = aiAnalysisService.getChartData(data);
+        return new AnalysisResult(data, analysis, chartData);
+    }
+
+    private String settings(String filename, SheetMode mode) {
+        // CSV and workbooks are parsed differently, so the same bytes under another extension are another entry.
+        boolean csv = filename != null && filename.toLowerCase().endsWith(".csv");
+        return (csv ? "csv" : "excel") + ";sheets=" + mode + ";" + excelService.getSettingsFingerprint()
+                + ";" + aiAnalysisService.getSettingsFingerprint();
+    }
+
+    /** Passes progress through and hands each row block to the summarizer. */
+    private static final class ChunkedProgress implements ProgressListener {
+
+        private final ProgressListener progress;
+        private final int blockRows;
+        private final ChunkedSummarizer chunks;
+
+        ChunkedProgress(ProgressListener progress, int blockRows, ChunkedSummarizer chunks) {
+            this.progress = progress;
+            this.blockRows = blockRows;
+            this.chunks = chunks;
+        }
+
+        @Override
+        public void rowsParsed(long rows) {
+            progress.rowsParsed(rows);
+        }
+
+        @Override
+        public int blockRows() {
+            return blockRows;
+        }
+
+        @Override
+        public void rowBlock(Dataset block) {
+            chunks.accept(block);
+        }
+
+        @Override
+        public void analysisStarted() {
+            progress.analysisStarted();
+        }
+
+        @Override
+        public void columnsProfiled(int profiled, int total) {
+            progress.columnsProfiled(profiled, total);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.unit00.exalyze.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stage timings of one upload, filled in from the spans recorded under its upload observation.
+ * Stages may finish on different threads, e.g. serialization on the async response thread.
+ */
+public class UploadTrace {
+
+    private final String filename;
+    private final long bytes;
+    private final long startNanos;
+    private final long startedAt = System.currentTimeMillis();
+    private final List<Stage> stages = new ArrayList<>();
+    private volatile long durationNanos;
+    private volatile String error;
+
+    UploadTrace(String filename, long bytes, long startNanos) {
+        this.filename = filename;
+        this.bytes = bytes;
+        this.startNanos = startNanos;
+    }
+
+    synchronized void addStage(String name, long nanos, long rows, long columns) {
+        stages.add(new Stage(name, nanos, rows, columns));
+    }
+
+    void finish(long endNanos, Throwable failure) {
+        error = failure == null ? null : failure.getMessage();
+        durationNanos = endNanos - startNanos;
+    }
+
+    long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public double getDurationMillis() {
+        return durationNanos / 1e6;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /** In the order the stages finished. */
+    public synchronized List<Stage> getStages() {
+        return new ArrayList<>(stages);
+    }
+
+    public static class Stage {
+        private final String name;
+        private final double millis;
+        private final long rows;
+        private final long columns;
+
+        Stage(String name, long nanos, long rows, long columns) {
+            this.name = name;
+            this.millis = nanos / 1e6;
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getMillis() {
+            return millis;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getColumns() {
+            return columns;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.unit00.exalyze.analysis;
+
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dataset.DatasetBuilder;
+import com.unit00.exalyze.dataset.MixedColumn;
+import com.unit00.exalyze.dataset.NumericColumn;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ColumnSummaryTest {
+
+	@Test
+	void mixedColumnSummarizedInBlocksMatchesTheFullProfile() {
+		List<Dataset> blocks = new ArrayList<>();
+		DatasetBuilder builder = new DatasetBuilder(List.of("value"), 3, blocks::add);
+		for (Object value : new Object[]{1.0, 1.0, 2.0, "a", 1.0, "", null, "a", 2.5, "b"}) {
+			builder.addRow(new Object[]{value});
+		}
+		Dataset whole = builder.build();
+		// The first block was handed out while the column still held only numbers.
+		assertInstanceOf(NumericColumn.class, blocks.get(0).getColumn(0));
+		assertInstanceOf(MixedColumn.class, whole.getColumn(0));
+
+		ColumnProfile exact = new DatasetProfiler().profile(whole.getColumn(0));
+		ColumnSummary summary = summarize(blocks.get(0));
+		for (Dataset block : blocks.subList(1, blocks.size())) {
+			summary.merge(summarize(block));
+		}
+		ColumnProfile merged = summary.toProfile();
+
+		assertEquals(exact.getNonNullCount(), merged.getNonNullCount());
+		assertEquals(exact.getEmptyCount(), merged.getEmptyCount());
+		assertEquals(exact.getNumericCount(), merged.getNumericCount());
+		assertEquals(exact.getDistinctCount(), merged.getDistinctCount());
+		assertEquals(6, merged.getDistinctCount());
+		assertEquals(counts(exact.getCategories()), counts(merged.getCategories()));
+		assertEquals(3L, counts(merged.getCategories()).get("1.0"));
+	}
+
+	@Test
+	void numericColumnKeepsNoCategories() {
+		DatasetBuilder builder = new DatasetBuilder(List.of("value"));
+		for (double value : new double[]{1, 2, 2, 3}) {
+			builder.addRow(new Object[]{value});
+		}
+		ColumnProfile profile = summarize(builder.build()).toProfile();
+
+		assertEquals(3, profile.getDistinctCount());
+		assertNull(profile.getCategories());
+	}
+
+	private static ColumnSummary summarize(Dataset block) {
+		return ColumnSummary.of(block.getColumn(0), 200, 0, 1024);
+	}
+
+	private static Map<String, Long> counts(CategorySketch categories) {
+		Map<String, Long> counts = new HashMap<>();
+		for (Map.Entry<String, Long> entry : categories.top(100)) {
+			counts.put(entry.getKey(), entry.getValue());
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,133 @@
+package com.unit00.exalyze.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class CorrelationEngineTest {
+
+	private static final double TOLERANCE = 1e-12;
+
+	@Test
+	void matchesPairwisePearsonForAFewColumns() {
+		Map<String, double[]> columns = correlatedColumns(5, 200, new Random(1));
+		assertMatchesNaive(columns, new CorrelationEngine(ParallelRunner.sequential()).correlate(columns));
+	}
+
+	@Test
+	void matchesPairwisePearsonAcrossTilesAndRowBlocks() {
+		// 70 columns span three tiles of 32 and 3000 rows span three row blocks.
+		Map<String, double[]> columns = correlatedColumns(70, 3000, new Random(2));
+		assertMatchesNaive(columns, new CorrelationEngine(ParallelRunner.sequential()).correlate(columns));
+	}
+
+	@Test
+	void parallelTilesGiveTheSameMatrix() {
+		Map<String, double[]> columns = correlatedColumns(70, 3000, new Random(3));
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			assertMatchesNaive(columns, new CorrelationEngine(new ParallelRunner(pool, 4)).correlate(columns));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void correlatesOnlyColumnsOfTheSameLength() {
+		Random random = new Random(4);
+		Map<String, double[]> columns = new LinkedHashMap<>();
+		columns.putAll(correlatedColumns("long", 3, 120, random));
+		columns.putAll(correlatedColumns("short", 40, 50, random));
+		columns.put("alone", randomColumn(7, random));
+		columns.put("single", new double[]{42});
+
+		Map<String, Map<String, Double>> matrix = new CorrelationEngine(ParallelRunner.sequential()).correlate(columns);
+
+		assertMatchesNaive(columns, matrix);
+		assertFalse(matrix.get("long0").containsKey("short0"));
+		assertEquals(Map.of("alone", 1.0), matrix.get("alone"));
+		assertEquals(Map.of("single", 1.0), matrix.get("single"));
+	}
+
+	@Test
+	void constantColumnCorrelatesZero() {
+		Map<String, double[]> columns = new LinkedHashMap<>();
+		columns.put("x", new double[]{1, 2, 3, 4});
+		columns.put("constant", new double[]{5, 5, 5, 5});
+
+		Map<String, Map<String, Double>> matrix = new CorrelationEngine(ParallelRunner.sequential()).correlate(columns);
+
+		assertEquals(0.0, matrix.get("x").get("constant"));
+		assertEquals(1.0, matrix.get("constant").get("constant"));
+	}
+
+	/** Every pair of same-length columns against the textbook two-pass formula. */
+	private static void assertMatchesNaive(Map<String, double[]> columns, Map<String, Map<String, Double>> matrix) {
+		for (Map.Entry<String, double[]> a : columns.entrySet()) {
+			assertEquals(1.0, matrix.get(a.getKey()).get(a.getKey()));
+			for (Map.Entry<String, double[]> b : columns.entrySet()) {
+				if (a.getKey().equals(b.getKey()) || a.getValue().length != b.getValue().length || a.getValue().length < 2) {
+					continue;
+				}
+				Double actual = matrix.get(a.getKey()).get(b.getKey());
+				assertNotNull(actual, a.getKey() + " x " + b.getKey());
+				assertEquals(pearson(a.getValue(), b.getValue()), actual, TOLERANCE, a.getKey() + " x " + b.getKey());
+			}
+		}
+	}
+
+	private static double pearson(double[] x, double[] y) {
+		double meanX = 0;
+		double meanY = 0;
+		for (int i = 0; i < x.length; i++) {
+			meanX += x[i];
+			meanY += y[i];
+		}
+		meanX /= x.length;
+		meanY /= y.length;
+		double sxy = 0;
+		double sxx = 0;
+		double syy = 0;
+		for (int i = 0; i < x.length; i++) {
+			sxy += (x[i] - meanX) * (y[i] - meanY);
+			sxx += (x[i] - meanX) * (x[i] - meanX);
+			syy += (y[i] - meanY) * (y[i] - meanY);
+		}
+		return sxx * syy == 0 ? 0 : sxy / Math.sqrt(sxx * syy);
+	}
+
+	private static Map<String, double[]> correlatedColumns(int count, int rows, Random random) {
+		return correlatedColumns("c", count, rows, random);
+	}
+
+	/** Columns sharing a per-row factor with different weights and offsets, so correlations vary in sign and size. */
+	private static Map<String, double[]> correlatedColumns(String prefix, int count, int rows, Random random) {
+		double[] factor = randomColumn(rows, random);
+		Map<String, double[]> columns = new LinkedHashMap<>();
+		for (int c = 0; c < count; c++) {
+			double weight = random.nextDouble() * 2 - 1;
+			double offset = random.nextInt(1000);
+			double[] values = new double[rows];
+			for (int r = 0; r < rows; r++) {
+				values[r] = offset + weight * factor[r] + random.nextGaussian();
+			}
+			columns.put(prefix + c, values);
+		}
+		return columns;
+	}
+
+	private static double[] randomColumn(int rows, Random random) {
+		double[] values = new double[rows];
+		for (int r = 0; r < rows; r++) {
+			values[r] = random.nextGaussian() * 10;
+		}
+		return values;
+	}
+}
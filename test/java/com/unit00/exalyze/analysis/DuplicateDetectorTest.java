@@ -0,0 +1,99 @@
+package com.unit00.exalyze.analysis;
+
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dataset.DatasetBuilder;
+import com.unit00.exalyze.dataset.MixedColumn;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DuplicateDetectorTest {
+
+	private static final DuplicateDetector EXACT = new DuplicateDetector();
+	// Every dataset here is above the threshold of 1 row, so the Bloom filter is used.
+	private static final DuplicateDetector APPROXIMATE = new DuplicateDetector(1, 1 << 20);
+
+	@Test
+	void countsRowsRepeatingAnEarlierRow() {
+		Dataset data = dataset(
+				new Object[]{"a", 1.0},
+				new Object[]{"b", 2.0},
+				new Object[]{"a", 1.0},
+				new Object[]{"a", 1.0},
+				new Object[]{"b", 3.0});
+
+		DuplicateSummary exact = EXACT.detect(data);
+		assertEquals(2, exact.getDuplicateCount());
+		assertEquals(List.of(2, 3), exact.getSampleRows());
+		assertFalse(exact.isApproximate());
+
+		DuplicateSummary approximate = APPROXIMATE.detect(data);
+		assertEquals(2, approximate.getDuplicateCount());
+		assertTrue(approximate.isApproximate());
+	}
+
+	@Test
+	void nullAndEmptyTextAreDifferentCells() {
+		Dataset data = dataset(
+				new Object[]{"a", null},
+				new Object[]{"a", ""},
+				new Object[]{"a", null},
+				new Object[]{"a", ""});
+
+		assertEquals(2, EXACT.detect(data).getDuplicateCount());
+		assertEquals(2, APPROXIMATE.detect(data).getDuplicateCount());
+	}
+
+	@Test
+	void nullAndEmptyTextDifferInMixedColumns() {
+		// A number followed by text makes the column a mixed column of boxed cells.
+		Dataset data = dataset(
+				new Object[]{1.0},
+				new Object[]{""},
+				new Object[]{null},
+				new Object[]{""},
+				new Object[]{null});
+		assertTrue(data.getColumn(0) instanceof MixedColumn);
+
+		assertEquals(2, EXACT.detect(data).getDuplicateCount());
+		assertEquals(2, APPROXIMATE.detect(data).getDuplicateCount());
+	}
+
+	@Test
+	void doublesCompareLikeDoubleEquals() {
+		Dataset data = dataset(
+				new Object[]{0.0},
+				new Object[]{-0.0},
+				new Object[]{Double.NaN},
+				new Object[]{Double.NaN});
+
+		assertEquals(1, EXACT.detect(data).getDuplicateCount());
+	}
+
+	@Test
+	void equalFingerprintsOfDifferentRowsAreNotDuplicates() {
+		Dataset data = dataset(
+				new Object[]{"a", 1.0},
+				new Object[]{"b", 2.0},
+				new Object[]{"a", 1.0});
+		DuplicateDetector.FingerprintTable table = new DuplicateDetector.FingerprintTable(data.getColumns(), 3);
+
+		// Every row gets the same fingerprint, so only the comparison of the cells tells them apart.
+		assertTrue(table.add(42, 7, 0));
+		assertTrue(table.add(42, 7, 1));
+		assertFalse(table.add(42, 7, 2));
+	}
+
+	private static Dataset dataset(Object[]... rows) {
+		DatasetBuilder builder = new DatasetBuilder(List.of("first", "second").subList(0, rows[0].length));
+		for (Object[] row : rows) {
+			builder.addRow(row);
+		}
+		return builder.build();
+	}
+}
@@ -0,0 +1,172 @@
+package com.unit00.exalyze.analysis;
+
+import com.unit00.exalyze.Bin;
+import com.unit00.exalyze.dataset.NumericColumn;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistogramTest {
+
+	@Test
+	void defaultProfileHistogramMatchesTheEarlierBins() {
+		Random random = new Random(20);
+		for (int n = 2; n <= 400; n += 7) {
+			double[] values = new double[n];
+			for (int i = 0; i < n; i++) {
+				// Coarse values, so some fall exactly on bin edges.
+				values[i] = random.nextInt(500) / 4.0;
+			}
+			assertBinsEqual(baselineBins(values), profileBins(values));
+		}
+		assertBinsEqual(baselineBins(new double[]{3, 3, 3}), profileBins(new double[]{3, 3, 3}));
+		assertBinsEqual(baselineBins(new double[]{-1.5, 0, 2.25, 7}), profileBins(new double[]{-1.5, 0, 2.25, 7}));
+	}
+
+	@Test
+	void freedmanDiaconisSizesBinsFromTheInterquartileRange() {
+		double[] values = new double[1000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i;
+		}
+		Quantiles quantiles = Quantiles.exact(values);
+		Histogram histogram = Histogram.create(Binning.FREEDMAN_DIACONIS, 10, 0, 999, quantiles.getQ1(), quantiles.getQ3(), values.length);
+		histogram.addAll(values);
+
+		double width = 2 * (quantiles.getQ3() - quantiles.getQ1()) / Math.cbrt(values.length);
+		List<Bin> bins = histogram.toBins();
+		assertEquals((int) Math.ceil(999 / width), bins.size());
+		assertEquals(values.length, total(bins));
+	}
+
+	@Test
+	void freedmanDiaconisCapsAtTheMaximumBinCount() {
+		// A narrow middle half and one far outlier would ask for thousands of bins.
+		double[] values = new double[1001];
+		for (int i = 0; i < 1000; i++) {
+			values[i] = i / 1000.0;
+		}
+		values[1000] = 1_000_000;
+		Quantiles quantiles = Quantiles.exact(values);
+		Histogram histogram = Histogram.create(Binning.FREEDMAN_DIACONIS, 10, 0, 1_000_000, quantiles.getQ1(), quantiles.getQ3(), values.length);
+		histogram.addAll(values);
+
+		assertEquals(Histogram.MAX_BINS, histogram.toBins().size());
+		assertEquals(values.length, total(histogram.toBins()));
+		// A requested count beyond the cap is clamped as well.
+		assertEquals(Histogram.MAX_BINS, Histogram.create(Binning.FIXED, 5000, 0, 1, 0, 0, 2).toBins().size());
+	}
+
+	@Test
+	void freedmanDiaconisFallsBackToTheRequestedBinsWithoutSpread() {
+		Histogram histogram = Histogram.create(Binning.FREEDMAN_DIACONIS, 12, 0, 10, 5, 5, 100);
+		assertEquals(12, histogram.toBins().size());
+	}
+
+	@Test
+	void logBinsSpanDecades() {
+		Histogram histogram = Histogram.create(Binning.LOG, 3, 1, 1000, 0, 0, 7);
+		assertTrue(histogram.isLog());
+		histogram.addAll(new double[]{1, 2, 5, 20, 50, 200, 1000});
+
+		List<Bin> bins = histogram.toBins();
+		assertEquals(List.of(3L, 2L, 2L), counts(bins));
+		assertEquals("1.00-10.00", bins.get(0).getLabel());
+		assertEquals("100.00-1000.00", bins.get(2).getLabel());
+	}
+
+	@Test
+	void logFallsBackToLinearUnlessEveryValueIsPositive() {
+		Histogram withZero = Histogram.create(Binning.LOG, 4, 0, 100, 0, 0, 10);
+		assertFalse(withZero.isLog());
+		withZero.addAll(new double[]{0, 30, 60, 100});
+		assertEquals(List.of(1L, 1L, 1L, 1L), counts(withZero.toBins()));
+
+		Histogram withNegative = Histogram.create(Binning.LOG, 4, -5, 100, 0, 0, 10);
+		assertFalse(withNegative.isLog());
+	}
+
+	@Test
+	void histogramsOverTheSameBinsMergeByAddingCounts() {
+		Histogram first = Histogram.create(Binning.FIXED, 4, 0, 8, 0, 0, 4);
+		first.addAll(new double[]{0, 1, 7});
+		Histogram second = Histogram.create(Binning.FIXED, 4, 0, 8, 0, 0, 4);
+		second.addAll(new double[]{3, 8});
+
+		first.merge(second);
+
+		assertEquals(List.of(2L, 1L, 0L, 2L), counts(first.toBins()));
+		assertThrows(IllegalArgumentException.class, () -> first.merge(Histogram.create(Binning.FIXED, 5, 0, 8, 0, 0, 4)));
+	}
+
+	private static List<Bin> profileBins(double[] values) {
+		return new DatasetProfiler().profile(new NumericColumn("value", values, new BitSet(), values.length)).getHistogramBins();
+	}
+
+	/** The report's ten fixed bins as they were computed before the histogram engine, as label and count. */
+	private static List<Bin> baselineBins(double[] values) {
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (double value : values) {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		List<Bin> bins = new ArrayList<>();
+		double binSize = (max - min) / 10;
+		if (binSize == 0) {
+			bins.add(labelled(String.format("%.2f", min), values.length));
+			return bins;
+		}
+		long[] counts = new long[10];
+		for (double value : values) {
+			int binIndex = (int) Math.min(Math.floor((value - min) / binSize), 9);
+			if (binIndex >= 0) {
+				counts[binIndex]++;
+			}
+		}
+		for (int i = 0; i < counts.length; i++) {
+			bins.add(labelled(String.format("%.2f-%.2f", min + i * binSize, min + (i + 1) * binSize), counts[i]));
+		}
+		return bins;
+	}
+
+	private static Bin labelled(String label, long count) {
+		Bin bin = new Bin();
+		bin.setLabel(label);
+		bin.setCount(count);
+		return bin;
+	}
+
+	private static void assertBinsEqual(List<Bin> expected, List<Bin> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getLabel(), actual.get(i).getLabel());
+			assertEquals(expected.get(i).getCount(), actual.get(i).getCount(), expected.get(i).getLabel());
+		}
+	}
+
+	private static List<Long> counts(List<Bin> bins) {
+		List<Long> counts = new ArrayList<>();
+		for (Bin bin : bins) {
+			counts.add(bin.getCount());
+		}
+		return counts;
+	}
+
+	private static long total(List<Bin> bins) {
+		long total = 0;
+		for (Bin bin : bins) {
+			total += bin.getCount();
+		}
+		return total;
+	}
+}
@@ -0,0 +1,127 @@
+package com.unit00.exalyze.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KllSketchTest {
+
+	private static final double RANK_ERROR = 0.01;
+
+	@Test
+	void quantilesOfAPermutationAreWithinTheRankError() {
+		double[] values = permutation(200_000, new Random(7));
+		KllSketch sketch = KllSketch.forRankError(RANK_ERROR);
+		for (double v : values) {
+			sketch.update(v);
+		}
+		assertWithinRankError(sketch, values);
+	}
+
+	@Test
+	void mergedSketchesAreWithinTheRankError() {
+		double[] values = permutation(200_000, new Random(8));
+		KllSketch merged = KllSketch.forRankError(RANK_ERROR);
+		int parts = 8;
+		for (int p = 0; p < parts; p++) {
+			KllSketch part = KllSketch.forRankError(RANK_ERROR);
+			for (int i = p; i < values.length; i += parts) {
+				part.update(values[i]);
+			}
+			merged.merge(part);
+		}
+		assertEquals(values.length, merged.getCount());
+		assertWithinRankError(merged, values);
+	}
+
+	@Test
+	void skewedValuesWithTiesAreWithinTheRankError() {
+		Random random = new Random(9);
+		double[] values = new double[100_000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = Math.floor(Math.exp(random.nextGaussian() * 2));
+		}
+		KllSketch sketch = KllSketch.forRankError(RANK_ERROR);
+		for (double v : values) {
+			sketch.update(v);
+		}
+		assertWithinRankError(sketch, values);
+	}
+
+	@Test
+	void keepsExactMinimumAndMaximum() {
+		KllSketch sketch = KllSketch.forRankError(RANK_ERROR);
+		for (double v : permutation(50_000, new Random(10))) {
+			sketch.update(v);
+		}
+		sketch.update(Double.NaN);
+		assertEquals(0.0, sketch.quantile(0));
+		assertEquals(49_999.0, sketch.quantile(1));
+		assertEquals(50_000, sketch.getCount());
+	}
+
+	/**
+	 * For every percentile, the true ranks the returned value covers (from its first to its last
+	 * occurrence) come within the configured error of the requested rank.
+	 */
+	private static void assertWithinRankError(KllSketch sketch, double[] values) {
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int n = sorted.length;
+		for (int percent = 1; percent < 100; percent++) {
+			double q = percent / 100.0;
+			double estimate = sketch.quantile(q);
+			double lowRank = (double) lowerBound(sorted, estimate) / n;
+			double highRank = (double) upperBound(sorted, estimate) / n;
+			double error = q < lowRank ? lowRank - q : q > highRank ? q - highRank : 0;
+			assertTrue(error <= RANK_ERROR, "q=" + q + " estimate=" + estimate + " covers ranks "
+					+ lowRank + ".." + highRank);
+		}
+	}
+
+	private static int lowerBound(double[] sorted, double value) {
+		int lo = 0;
+		int hi = sorted.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sorted[mid] < value) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private static int upperBound(double[] sorted, double value) {
+		int lo = 0;
+		int hi = sorted.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sorted[mid] <= value) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private static double[] permutation(int n, Random random) {
+		double[] values = new double[n];
+		for (int i = 0; i < n; i++) {
+			values[i] = i;
+		}
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			double t = values[i];
+			values[i] = values[j];
+			values[j] = t;
+		}
+		return values;
+	}
+}
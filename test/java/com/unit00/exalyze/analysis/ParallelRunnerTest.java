@@ -0,0 +1,73 @@
+package com.unit00.exalyze.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelRunnerTest {
+
+	@Test
+	void keepsInputOrder() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<Integer> items = new ArrayList<>();
+			for (int i = 0; i < 1000; i++) {
+				items.add(i);
+			}
+			List<Integer> squares = new ParallelRunner(pool, 4).map(items, i -> i * i);
+			for (int i = 0; i < 1000; i++) {
+				assertEquals(i * i, squares.get(i));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void failureStopsClaimingAndWaitsForEveryWorker() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<Integer> items = new ArrayList<>();
+			for (int i = 0; i < 10_000; i++) {
+				items.add(i);
+			}
+			AtomicInteger started = new AtomicInteger();
+			AtomicInteger running = new AtomicInteger();
+			IllegalStateException failure = new IllegalStateException("bad cell");
+			IllegalStateException thrown = assertThrows(IllegalStateException.class, () ->
+					new ParallelRunner(pool, 4).map(items, i -> {
+						started.incrementAndGet();
+						running.incrementAndGet();
+						try {
+							if (i == 10) {
+								throw failure;
+							}
+							Thread.sleep(1);
+							return i;
+						} catch (InterruptedException e) {
+							throw new RuntimeException(e);
+						} finally {
+							running.decrementAndGet();
+						}
+					}));
+
+			assertSame(failure, thrown);
+			assertEquals(0, running.get());
+			int afterFailure = started.get();
+			assertTrue(afterFailure < 100, "items started: " + afterFailure);
+			// Nothing keeps claiming items on the pool after the call returned.
+			pool.awaitQuiescence(1, java.util.concurrent.TimeUnit.SECONDS);
+			assertEquals(afterFailure, started.get());
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.unit00.exalyze.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QuantilesTest {
+
+	@Test
+	void smallColumnsMatchTheSortedPositions() {
+		assertQuantiles(new double[]{7});
+		assertQuantiles(new double[]{3, 1});
+		assertQuantiles(new double[]{2, 9, 4});
+		assertQuantiles(new double[]{8, 1, 5, 3});
+		assertQuantiles(new double[]{10, 2, 7, 4, 6});
+	}
+
+	@Test
+	void duplicatesMatchTheSortedPositions() {
+		assertQuantiles(new double[]{5, 5});
+		assertQuantiles(new double[]{1, 1, 1, 1});
+		assertQuantiles(new double[]{3, 1, 3, 1, 3});
+		assertQuantiles(new double[]{2, 2, 2, 9, 9, 9, 2});
+	}
+
+	@Test
+	void fourValuesClampTheUpperQuartileToTheMaximum() {
+		// The positions the report used run past the end at n = 4; q3 is then the largest value.
+		Quantiles quantiles = Quantiles.exact(new double[]{8, 1, 5, 3});
+		assertEquals(4.0, quantiles.getMedian());
+		assertEquals(2.0, quantiles.getQ1());
+		assertEquals(8.0, quantiles.getQ3());
+	}
+
+	@Test
+	void emptyColumnIsAllZero() {
+		Quantiles quantiles = Quantiles.exact(new double[0]);
+		assertEquals(0.0, quantiles.getMedian());
+		assertEquals(0.0, quantiles.getQ1());
+		assertEquals(0.0, quantiles.getQ3());
+	}
+
+	@Test
+	void randomColumnsMatchTheSortedPositions() {
+		Random random = new Random(6);
+		for (int n = 1; n <= 300; n++) {
+			double[] values = new double[n];
+			for (int i = 0; i < n; i++) {
+				// Few distinct values, so selection meets many ties.
+				values[i] = random.nextInt(Math.max(1, n / 3));
+			}
+			assertQuantiles(values);
+		}
+	}
+
+	@Test
+	void doesNotReorderTheInput() {
+		double[] values = {5, 3, 9, 1, 7, 2};
+		double[] copy = values.clone();
+		Quantiles.exact(values);
+		assertArrayEquals(copy, values);
+	}
+
+	private static void assertQuantiles(double[] values) {
+		double[] expected = sortedReference(values);
+		Quantiles quantiles = Quantiles.exact(values);
+		String input = Arrays.toString(values);
+		assertEquals(expected[0], quantiles.getMedian(), input);
+		assertEquals(expected[1], quantiles.getQ1(), input);
+		assertEquals(expected[2], quantiles.getQ3(), input);
+	}
+
+	/**
+	 * Median, q1 and q3 read from a sorted copy at the positions the report has always used (the
+	 * medians of the lower and upper halves), with positions past either end clamped to it.
+	 */
+	private static double[] sortedReference(double[] values) {
+		double[] s = values.clone();
+		Arrays.sort(s);
+		int n = s.length;
+		int mid = n / 2;
+		if (n % 2 == 1) {
+			return new double[]{s[mid], s[mid / 2], s[Math.min(mid + mid / 2, n - 1)]};
+		}
+		double median = (s[mid - 1] + s[mid]) / 2.0;
+		double q1 = (s[Math.max(mid / 2 - 1, 0)] + s[mid / 2]) / 2.0;
+		double q3 = (s[Math.min(mid + mid / 2, n - 1)] + s[Math.min(mid + mid / 2 + 1, n - 1)]) / 2.0;
+		return new double[]{median, q1, q3};
+	}
+}
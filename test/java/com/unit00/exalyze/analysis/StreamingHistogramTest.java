@@ -0,0 +1,228 @@
+package com.unit00.exalyze.analysis;
+
+import com.unit00.exalyze.Bin;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingHistogramTest {
+
+	@Test
+	void mergedChunksMatchOneStreamOnALinearScale() {
+		double[][] chunks = chunks(new Random(1));
+		double[] all = concat(chunks);
+		StreamingHistogram whole = stream(all);
+		StreamingHistogram merged = mergeInOrder(chunks);
+
+		for (int bins : new int[]{1, 10, 37, Histogram.MAX_BINS}) {
+			assertEquals(counts(whole, Binning.FIXED, bins, all), counts(merged, Binning.FIXED, bins, all), bins + " bins");
+		}
+	}
+
+	@Test
+	void mergedChunksMatchOneStreamOnALogScale() {
+		double[][] chunks = chunks(new Random(2));
+		double[] all = concat(chunks);
+		StreamingHistogram whole = stream(all);
+		StreamingHistogram merged = mergeInOrder(chunks);
+
+		double[] positive = positive(all);
+		for (int bins : new int[]{10, 50, Histogram.MAX_BINS}) {
+			assertEquals(counts(whole, Binning.LOG, bins, positive), counts(merged, Binning.LOG, bins, positive), bins + " bins");
+		}
+	}
+
+	@Test
+	void mergeOrderDoesNotMatter() {
+		double[][] chunks = chunks(new Random(3));
+		double[] all = concat(chunks);
+		StreamingHistogram forward = mergeInOrder(chunks);
+		StreamingHistogram backward = new StreamingHistogram();
+		for (int i = chunks.length - 1; i >= 0; i--) {
+			backward.merge(stream(chunks[i]));
+		}
+
+		assertEquals(counts(forward, Binning.FIXED, 100, all), counts(backward, Binning.FIXED, 100, all));
+		double[] positive = positive(all);
+		assertEquals(counts(forward, Binning.LOG, 100, positive), counts(backward, Binning.LOG, 100, positive));
+	}
+
+	@Test
+	void coarsenedBucketsStillCountEveryValue() {
+		double[] all = concat(chunks(new Random(4)));
+		StreamingHistogram histogram = stream(all);
+
+		assertEquals(all.length, sum(counts(histogram, Binning.FIXED, 10, all)));
+		double[] positive = positive(all);
+		assertEquals(positive.length, sum(counts(histogram, Binning.LOG, 10, positive)));
+	}
+
+	@Test
+	void bucketsOnlyMoveValuesNearABinEdge() {
+		Random random = new Random(5);
+		double[] values = new double[5000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 10 + random.nextDouble() * 90;
+		}
+		double min = min(values);
+		double max = max(values);
+		Histogram exact = Histogram.create(Binning.FIXED, 9, min, max, 0, 0, values.length);
+		exact.addAll(values);
+
+		List<Long> expected = counts(exact.toBins());
+		List<Long> streamed = counts(stream(values), Binning.FIXED, 9, values);
+		// The range fits in 1024 buckets, so a bucket is at most about 2/1024 of it wide.
+		double bucket = 2 * (max - min) / 1000;
+		double binSize = (max - min) / 9;
+		for (int i = 0; i < expected.size(); i++) {
+			long nearEdge = 0;
+			for (double value : values) {
+				if (Math.abs(value - (min + i * binSize)) < bucket || Math.abs(value - (min + (i + 1) * binSize)) < bucket) {
+					nearEdge++;
+				}
+			}
+			assertTrue(Math.abs(expected.get(i) - streamed.get(i)) <= nearEdge, "bin " + i);
+		}
+	}
+
+	@Test
+	void copyIsIndependentOfTheOriginal() {
+		double[] values = {1, 2, 3, 4};
+		StreamingHistogram original = stream(values);
+		StreamingHistogram copy = original.copy();
+		original.add(4);
+
+		assertEquals(List.of(1L, 1L, 1L, 1L), counts(copy, Binning.FIXED, 4, values));
+		assertNotEquals(counts(original, Binning.FIXED, 4, values), counts(copy, Binning.FIXED, 4, values));
+	}
+
+	@Test
+	void mergingAnEmptyHistogramChangesNothing() {
+		double[] values = {-3, 0, 7, 12.5};
+		StreamingHistogram histogram = stream(values);
+		histogram.merge(new StreamingHistogram());
+		StreamingHistogram empty = new StreamingHistogram();
+		empty.merge(histogram);
+
+		assertEquals(counts(stream(values), Binning.FIXED, 5, values), counts(histogram, Binning.FIXED, 5, values));
+		assertEquals(counts(stream(values), Binning.FIXED, 5, values), counts(empty, Binning.FIXED, 5, values));
+	}
+
+	/**
+	 * Chunks whose ranges differ by orders of magnitude, so that each chunk's buckets start out far
+	 * finer than the merged range allows and have to coarsen when they meet.
+	 */
+	private static double[][] chunks(Random random) {
+		double[][] chunks = new double[4][];
+		chunks[0] = new double[3000];
+		for (int i = 0; i < chunks[0].length; i++) {
+			chunks[0][i] = random.nextDouble();
+		}
+		chunks[1] = new double[2000];
+		for (int i = 0; i < chunks[1].length; i++) {
+			chunks[1][i] = 1000 + random.nextDouble() * 4000;
+		}
+		chunks[2] = new double[1000];
+		for (int i = 0; i < chunks[2].length; i++) {
+			chunks[2][i] = -500 + random.nextDouble() * 500;
+		}
+		chunks[3] = new double[2000];
+		for (int i = 0; i < chunks[3].length; i++) {
+			chunks[3][i] = Math.exp(Math.log(1e-3) + random.nextDouble() * Math.log(1e9));
+		}
+		return chunks;
+	}
+
+	private static StreamingHistogram stream(double[] values) {
+		StreamingHistogram histogram = new StreamingHistogram();
+		for (double value : values) {
+			histogram.add(value);
+		}
+		return histogram;
+	}
+
+	private static StreamingHistogram mergeInOrder(double[][] chunks) {
+		StreamingHistogram merged = new StreamingHistogram();
+		for (double[] chunk : chunks) {
+			merged.merge(stream(chunk));
+		}
+		return merged;
+	}
+
+	private static List<Long> counts(StreamingHistogram streaming, Binning binning, int bins, double[] values) {
+		Histogram histogram = Histogram.create(binning, bins, min(values), max(values), 0, 0, values.length);
+		assertEquals(binning == Binning.LOG, histogram.isLog());
+		streaming.fill(histogram);
+		return counts(histogram.toBins());
+	}
+
+	private static List<Long> counts(List<Bin> bins) {
+		List<Long> counts = new ArrayList<>();
+		for (Bin bin : bins) {
+			counts.add(bin.getCount());
+		}
+		return counts;
+	}
+
+	private static long sum(List<Long> counts) {
+		long sum = 0;
+		for (long count : counts) {
+			sum += count;
+		}
+		return sum;
+	}
+
+	private static double[] concat(double[][] chunks) {
+		int length = 0;
+		for (double[] chunk : chunks) {
+			length += chunk.length;
+		}
+		double[] all = new double[length];
+		int at = 0;
+		for (double[] chunk : chunks) {
+			System.arraycopy(chunk, 0, all, at, chunk.length);
+			at += chunk.length;
+		}
+		return all;
+	}
+
+	private static double[] positive(double[] values) {
+		int n = 0;
+		for (double value : values) {
+			if (value > 0) {
+				n++;
+			}
+		}
+		double[] positive = new double[n];
+		int at = 0;
+		for (double value : values) {
+			if (value > 0) {
+				positive[at++] = value;
+			}
+		}
+		return positive;
+	}
+
+	private static double min(double[] values) {
+		double min = Double.POSITIVE_INFINITY;
+		for (double value : values) {
+			min = Math.min(min, value);
+		}
+		return min;
+	}
+
+	private static double max(double[] values) {
+		double max = Double.NEGATIVE_INFINITY;
+		for (double value : values) {
+			max = Math.max(max, value);
+		}
+		return max;
+	}
+}
@@ -0,0 +1,86 @@
+package com.unit00.exalyze.dataset;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class DatasetBuilderTest {
+
+	@Test
+	void extendingKeepsEveryVersionIntact() {
+		Dataset first = build(List.of("n", "s", "d", "b"),
+				new Object[]{1.0, "x", new Date(1000), true},
+				new Object[]{null, null, null, null});
+
+		Dataset second = extend(first, List.of("n", "s", "d", "b", "new"),
+				new Object[]{3.0, "y", new Date(3000), false, "added"});
+		Dataset third = extend(second, List.of("n", "s", "d", "b", "new"),
+				new Object[]{4.0, "x", null, true, null});
+
+		assertEquals(2, first.getRowCount());
+		assertEquals(List.of("n", "s", "d", "b"), first.getColumnNames());
+		assertEquals(Arrays.asList(1.0, "x", new Date(1000), true), row(first, 0));
+		assertEquals(Arrays.asList(null, null, null, null), row(first, 1));
+		assertEquals(Arrays.asList(null, null, null, null, null), row(second, 1));
+		assertEquals(Arrays.asList(3.0, "y", new Date(3000), false, "added"), row(second, 2));
+		assertEquals(3, second.getRowCount());
+		assertEquals(4, third.getRowCount());
+		assertEquals(Arrays.asList(4.0, "x", null, true, null), row(third, 3));
+		assertEquals(List.of("x", "y"), List.of(((StringColumn) third.getColumn("s")).getDictionary()));
+		assertEquals(1, third.getColumn("n").nullCount());
+		assertEquals(1, first.getColumn("n").nullCount());
+	}
+
+	@Test
+	void laterVersionsShareTheGrownArrays() {
+		Dataset first = build(List.of("n"), new Object[]{1.0}, new Object[]{2.0}, new Object[]{3.0});
+		Dataset second = extend(first, List.of("n"), new Object[]{4.0});
+		Dataset third = extend(second, List.of("n"), new Object[]{5.0});
+
+		// The first append grows the exact-size array to twice its length; the next one fills its spare room.
+		assertSame(((NumericColumn) second.getColumn("n")).values(), ((NumericColumn) third.getColumn("n")).values());
+		assertEquals(4, second.getRowCount());
+		assertEquals(List.of(1.0, 2.0, 3.0, 4.0, 5.0), List.of(third.get(0, 0), third.get(1, 0), third.get(2, 0),
+				third.get(3, 0), third.get(4, 0)));
+	}
+
+	@Test
+	void aValueOfAnotherTypeTurnsTheExtendedColumnMixed() {
+		Dataset first = build(List.of("n"), new Object[]{1.0}, new Object[]{2.0});
+		Dataset second = extend(first, List.of("n"), new Object[]{"text"});
+
+		assertInstanceOf(NumericColumn.class, first.getColumn("n"));
+		assertInstanceOf(MixedColumn.class, second.getColumn("n"));
+		assertEquals(Arrays.asList(1.0, 2.0, "text"), List.of(second.get(0, 0), second.get(1, 0), second.get(2, 0)));
+	}
+
+	private static Dataset build(List<String> headers, Object[]... rows) {
+		DatasetBuilder builder = new DatasetBuilder(headers);
+		for (Object[] row : rows) {
+			builder.addRow(row);
+		}
+		return builder.build();
+	}
+
+	private static Dataset extend(Dataset base, List<String> names, Object[]... rows) {
+		DatasetBuilder builder = DatasetBuilder.extending(base, names);
+		for (Object[] row : rows) {
+			builder.addRow(row);
+		}
+		return builder.buildShared();
+	}
+
+	private static List<Object> row(Dataset data, int row) {
+		Object[] values = new Object[data.getColumnCount()];
+		for (int c = 0; c < values.length; c++) {
+			values[c] = data.get(row, c);
+		}
+		return Arrays.asList(values);
+	}
+}
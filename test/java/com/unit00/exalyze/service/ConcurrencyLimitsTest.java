@@ -0,0 +1,46 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.ReleaseOnCompletionInterceptor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimitsTest {
+
+	private ConcurrencyLimits limits;
+
+	@BeforeEach
+	void setUp() {
+		// One permit per endpoint and no waiting, so a leaked or doubled permit shows at once.
+		limits = new ConcurrencyLimits(1, 1, 1, 0, new PipelineMetrics(new SimpleMeterRegistry(), ObservationRegistry.NOOP));
+	}
+
+	@Test
+	void releaseOnceReturnsThePermitOnlyOnce() {
+		assertTrue(limits.tryAcquire(ConcurrencyLimits.Endpoint.DOWNLOAD_PDF));
+		Runnable release = limits.releaseOnce(ConcurrencyLimits.Endpoint.DOWNLOAD_PDF);
+		release.run();
+		release.run();
+
+		assertTrue(limits.tryAcquire(ConcurrencyLimits.Endpoint.DOWNLOAD_PDF));
+		assertFalse(limits.tryAcquire(ConcurrencyLimits.Endpoint.DOWNLOAD_PDF));
+	}
+
+	@Test
+	void completionReleasesAPermitWhoseBodyNeverRan() {
+		assertTrue(limits.tryAcquire(ConcurrencyLimits.Endpoint.DOWNLOAD_EXCEL));
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setAttribute(ReleaseOnCompletionInterceptor.ATTRIBUTE, limits.releaseOnce(ConcurrencyLimits.Endpoint.DOWNLOAD_EXCEL));
+
+		new ReleaseOnCompletionInterceptor().afterCompletion(new ServletWebRequest(request), () -> null);
+
+		assertTrue(limits.tryAcquire(ConcurrencyLimits.Endpoint.DOWNLOAD_EXCEL));
+		assertFalse(limits.tryAcquire(ConcurrencyLimits.Endpoint.DOWNLOAD_EXCEL));
+	}
+}
@@ -0,0 +1,120 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.dataset.Dataset;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatasetCacheTest {
+
+	@Test
+	void evictedDatasetIsSpilledAndReadBack() throws IOException {
+		Path dir = Files.createTempDirectory("exalyze-cache-test");
+		// A zero budget keeps only the newest dataset in memory.
+		DatasetCache cache = new DatasetCache(0, 60, true, dir.toString());
+		Dataset first = dataset("a", 100);
+		String firstId = cache.put(first);
+		cache.put(dataset("b", 100));
+		assertEquals(1, spillFiles(dir));
+
+		assertEquals(first.toRows(), cache.get(firstId).toRows());
+		// Reading it back deleted its file and spilled the other dataset instead.
+		assertEquals(1, spillFiles(dir));
+
+		cache.clear();
+		assertEquals(0, spillFiles(dir));
+	}
+
+	@Test
+	void concurrentReadsOfASpilledDatasetShareOneCopy() throws Exception {
+		Path dir = Files.createTempDirectory("exalyze-cache-test");
+		DatasetCache cache = new DatasetCache(0, 60, true, dir.toString());
+		String id = cache.put(dataset("a", 5000));
+		cache.put(dataset("b", 10));
+
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Dataset>> reads = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				reads.add(pool.submit(() -> cache.get(id)));
+			}
+			Dataset loaded = reads.get(0).get();
+			for (Future<Dataset> read : reads) {
+				assertSame(loaded, read.get());
+			}
+			assertEquals(5000, loaded.getRowCount());
+		} finally {
+			pool.shutdown();
+			cache.clear();
+		}
+	}
+
+	@Test
+	void removedSpilledDatasetIsGone() throws IOException {
+		Path dir = Files.createTempDirectory("exalyze-cache-test");
+		DatasetCache cache = new DatasetCache(0, 60, true, dir.toString());
+		String id = cache.put(dataset("a", 100));
+		cache.put(dataset("b", 100));
+
+		cache.remove(id);
+
+		assertNull(cache.get(id));
+		assertEquals(0, spillFiles(dir));
+		cache.clear();
+	}
+
+	@Test
+	void contentKeyFindsTheDatasetUntilItIsReplaced() throws IOException {
+		Path dir = Files.createTempDirectory("exalyze-cache-test");
+		DatasetCache cache = new DatasetCache(0, 60, true, dir.toString());
+		String id = cache.put(dataset("a", 100), "key-a");
+		cache.put(dataset("b", 100));
+
+		// Found while spilled, without reading it back.
+		assertEquals(id, cache.findByContent("key-a"));
+		assertEquals(1, spillFiles(dir));
+		assertNull(cache.findByContent("key-b"));
+
+		assertTrue(cache.replace(id, dataset("a", 150)));
+		assertNull(cache.findByContent("key-a"));
+		assertEquals(150, cache.get(id).getRowCount());
+
+		String again = cache.put(dataset("a", 100), "key-a");
+		cache.remove(again);
+		assertNull(cache.findByContent("key-a"));
+		cache.clear();
+	}
+
+	private static Dataset dataset(String prefix, int rows) {
+		List<Map<String, Object>> list = new ArrayList<>();
+		for (int i = 0; i < rows; i++) {
+			Map<String, Object> row = new LinkedHashMap<>();
+			row.put("name", prefix + i);
+			row.put("value", (double) i);
+			list.add(row);
+		}
+		return Dataset.fromRows(list);
+	}
+
+	private static long spillFiles(Path dir) throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.count();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.analysis.ParallelRunner;
+import com.unit00.exalyze.dataset.Dataset;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SheetMergerTest {
+
+	@Test
+	void sheetsArrivingOutOfOrderAreStackedInWorkbookOrder() {
+		SheetMerger merger = new SheetMerger();
+		merger.accept(sheet("third", List.of("b"), new Object[]{"b3"}), 2);
+		merger.accept(sheet("second", List.of("Sheet", "b"), new Object[]{"own", "b2"}), 1);
+		merger.accept(sheet("first", List.of("a"), new Object[]{1.0}, new Object[]{2.0}), 0);
+
+		Dataset merged = merger.build();
+
+		assertEquals(List.of("Sheet", "a", "Sheet_2", "b"), merged.getColumnNames());
+		assertEquals(Arrays.asList("first", 1.0, null, null), row(merged, 0));
+		assertEquals(Arrays.asList("first", 2.0, null, null), row(merged, 1));
+		assertEquals(Arrays.asList("second", null, "own", "b2"), row(merged, 2));
+		assertEquals(Arrays.asList("third", null, null, "b3"), row(merged, 3));
+	}
+
+	@Test
+	void parallelStreamingReadMergesEverySheet() throws IOException {
+		Path file = Files.createTempFile("exalyze-sheets", ".xlsx");
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+				for (int s = 0; s < 6; s++) {
+					Sheet sheet = workbook.createSheet("s" + s);
+					sheet.createRow(0).createCell(0).setCellValue("value");
+					for (int r = 1; r <= 500 * (s + 1); r++) {
+						Row row = sheet.createRow(r);
+						row.createCell(0).setCellValue(s * 10_000 + r);
+					}
+				}
+				workbook.write(out);
+			}
+
+			SheetMerger merger = new SheetMerger();
+			new StreamingXlsxReader().readSheets(file.toFile(), Integer.MAX_VALUE, new ParallelRunner(pool, 4),
+					ProgressListener.NONE, merger);
+			Dataset merged = merger.build();
+
+			assertEquals(500 * (1 + 2 + 3 + 4 + 5 + 6), merged.getRowCount());
+			int row = 0;
+			for (int s = 0; s < 6; s++) {
+				for (int r = 1; r <= 500 * (s + 1); r++, row++) {
+					assertEquals(Arrays.asList("s" + s, (double) (s * 10_000 + r)), row(merged, row));
+				}
+			}
+		} finally {
+			pool.shutdown();
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static SheetDataset sheet(String name, List<String> headers, Object[]... rows) {
+		List<Map<String, Object>> list = new ArrayList<>();
+		for (Object[] values : rows) {
+			Map<String, Object> row = new LinkedHashMap<>();
+			for (int c = 0; c < headers.size(); c++) {
+				row.put(headers.get(c), values[c]);
+			}
+			list.add(row);
+		}
+		return new SheetDataset(name, Dataset.fromRows(list));
+	}
+
+	private static List<Object> row(Dataset data, int row) {
+		List<Object> values = new ArrayList<>();
+		for (int c = 0; c < data.getColumnCount(); c++) {
+			values.add(data.get(row, c));
+		}
+		return values;
+	}
+}
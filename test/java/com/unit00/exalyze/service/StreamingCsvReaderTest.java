@@ -0,0 +1,155 @@
+package com.unit00.exalyze.service;
+
+import com.unit00.exalyze.dataset.BooleanColumn;
+import com.unit00.exalyze.dataset.Dataset;
+import com.unit00.exalyze.dataset.DateColumn;
+import com.unit00.exalyze.dataset.MixedColumn;
+import com.unit00.exalyze.dataset.NumericColumn;
+import com.unit00.exalyze.dataset.StringColumn;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StreamingCsvReaderTest {
+
+	private final StreamingCsvReader reader = new StreamingCsvReader(1000, true);
+
+	@Test
+	void utf8BomIsSkipped() throws IOException {
+		Dataset data = read(withBom(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}, "name,city\nAnna,Zürich\n", StandardCharsets.UTF_8));
+
+		assertEquals(List.of("name", "city"), data.getColumnNames());
+		assertEquals("Zürich", data.get(0, 1));
+	}
+
+	@Test
+	void utf16BomSelectsTheCharset() throws IOException {
+		Dataset data = read(withBom(new byte[]{(byte) 0xFF, (byte) 0xFE}, "name;city\nAnna;Zürich\n", StandardCharsets.UTF_16LE));
+
+		assertEquals(List.of("name", "city"), data.getColumnNames());
+		assertEquals("Zürich", data.get(0, 1));
+	}
+
+	@Test
+	void invalidUtf8FallsBackToWindows1252() throws IOException {
+		Dataset data = read("name,city\nAnna,Zürich\n".getBytes(Charset.forName("windows-1252")));
+
+		assertEquals("Zürich", data.get(0, 1));
+	}
+
+	@Test
+	void detectsSemicolonDelimiter() throws IOException {
+		Dataset data = read("a;b;c\n1;2;3\n4;5;6\n");
+
+		assertEquals(List.of("a", "b", "c"), data.getColumnNames());
+		assertEquals(6.0, data.get(1, 2));
+	}
+
+	@Test
+	void detectsTabDelimiter() throws IOException {
+		Dataset data = read("a\tb\nx, y\t1\nz\t2\n");
+
+		assertEquals(List.of("a", "b"), data.getColumnNames());
+		assertEquals("x, y", data.get(0, 0));
+		assertEquals(2.0, data.get(1, 1));
+	}
+
+	@Test
+	void delimitersInsideQuotesAreIgnored() throws IOException {
+		// Outside the quotes each line has one semicolon and no comma.
+		Dataset data = read("\"last, first\";age\n\"Smith, J, Jr\";40\n\"Doe, A\";31\n");
+
+		assertEquals(List.of("last, first", "age"), data.getColumnNames());
+		assertEquals("Smith, J, Jr", data.get(0, 0));
+		assertEquals(31.0, data.get(1, 1));
+	}
+
+	@Test
+	void quotedDelimitersStayInTheirCell() throws IOException {
+		Dataset data = read("name,comment\n\"Smith, J\",\"a, b\"\nDoe,c\n");
+
+		assertEquals(2, data.getColumnCount());
+		assertEquals("a, b", data.get(0, 1));
+	}
+
+	@Test
+	void leadingZerosAndHugeExponentsStayText() throws IOException {
+		Dataset data = read("zip,value\n007,1\n012,1e400\n");
+
+		assertInstanceOf(StringColumn.class, data.getColumn("zip"));
+		assertEquals("007", data.get(0, 0));
+		assertInstanceOf(StringColumn.class, data.getColumn("value"));
+		assertEquals("1e400", data.get(1, 1));
+	}
+
+	@Test
+	void hugeExponentAfterTheSampleIsKeptAsText() throws IOException {
+		Dataset data = new StreamingCsvReader(2, true).read(new ByteArrayInputStream("value\n1\n2.5\n1e400\n-3e2\n".getBytes(StandardCharsets.UTF_8)));
+
+		assertInstanceOf(MixedColumn.class, data.getColumn("value"));
+		assertEquals(2.5, data.get(1, 0));
+		assertEquals("1e400", data.get(2, 0));
+		assertEquals(-300.0, data.get(3, 0));
+	}
+
+	@Test
+	void sniffsNumbersDatesAndBooleans() throws IOException {
+		Dataset data = read("n,d,b,t\n1.5,2024-03-01,true,x\n,2024-03-02 10:15,FALSE,NaN\n-2e3,,,0x1F\n");
+
+		assertInstanceOf(NumericColumn.class, data.getColumn("n"));
+		assertNull(data.get(1, 0));
+		assertEquals(-2000.0, data.get(2, 0));
+		assertInstanceOf(DateColumn.class, data.getColumn("d"));
+		assertInstanceOf(BooleanColumn.class, data.getColumn("b"));
+		assertEquals(false, data.get(1, 2));
+		assertInstanceOf(StringColumn.class, data.getColumn("t"));
+	}
+
+	@Test
+	void withoutSniffingEveryCellIsText() throws IOException {
+		Dataset data = new StreamingCsvReader(1000, false).read(new ByteArrayInputStream("a,b\n1,true\n".getBytes(StandardCharsets.UTF_8)));
+
+		assertInstanceOf(StringColumn.class, data.getColumn("a"));
+		assertEquals("1", data.get(0, 0));
+		assertEquals("true", data.get(0, 1));
+	}
+
+	@Test
+	void numbersArePlainDecimalNotation() {
+		assertEquals(1.0, StreamingCsvReader.parseNumber("1"));
+		assertEquals(0.5, StreamingCsvReader.parseNumber(".5"));
+		assertEquals(-0.25, StreamingCsvReader.parseNumber("-0.25"));
+		assertEquals(1e10, StreamingCsvReader.parseNumber("+1E10"));
+		assertNull(StreamingCsvReader.parseNumber("007"));
+		assertNull(StreamingCsvReader.parseNumber("1e400"));
+		assertNull(StreamingCsvReader.parseNumber("NaN"));
+		assertNull(StreamingCsvReader.parseNumber("1f"));
+		assertNull(StreamingCsvReader.parseNumber("1e"));
+		assertNull(StreamingCsvReader.parseNumber("."));
+	}
+
+	private Dataset read(String csv) throws IOException {
+		return read(csv.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private Dataset read(byte[] csv) throws IOException {
+		return reader.read(new ByteArrayInputStream(csv));
+	}
+
+	private static byte[] withBom(byte[] bom, String csv, Charset charset) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.writeBytes(bom);
+		out.writeBytes(csv.getBytes(charset));
+		return out.toByteArray();
+	}
+}
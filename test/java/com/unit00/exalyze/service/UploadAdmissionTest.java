@@ -0,0 +1,116 @@
+package com.unit00.exalyze.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadAdmissionTest {
+
+	private static final long BUDGET = 1024 * 1024;
+
+	private SimpleMeterRegistry registry;
+
+	@BeforeEach
+	void setUp() {
+		registry = new SimpleMeterRegistry();
+	}
+
+	/** A 1 MB budget and a cost of one byte per file byte. */
+	private UploadAdmission admission(int maxQueued, long maxWaitSeconds) {
+		return new UploadAdmission(1, 1, 1, 1, maxQueued, maxWaitSeconds, 30,
+				new PipelineMetrics(registry, ObservationRegistry.NOOP));
+	}
+
+	@Test
+	void costIsCappedAtTheBudget() {
+		UploadAdmission admission = admission(20, 1);
+
+		assertEquals(BUDGET, admission.admit("huge.csv", 10 * BUDGET));
+		// The capped upload runs on its own, so nothing else fits until it is released.
+		assertEquals(-1, admission.admit("small.csv", 1));
+		admission.release(BUDGET);
+		assertEquals(1, admission.admit("small.csv", 1));
+	}
+
+	@Test
+	void waitingUploadsAreAdmittedInArrivalOrder() throws Exception {
+		UploadAdmission admission = admission(20, 10);
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			long held = admission.admit("held.csv", 600_000);
+			CompletableFuture<Long> first = CompletableFuture.supplyAsync(() -> admission.admit("first.csv", 900_000), pool);
+			awaitQueued(1);
+			CompletableFuture<Long> second = CompletableFuture.supplyAsync(() -> admission.admit("second.csv", 200_000), pool);
+			awaitQueued(2);
+
+			// The second upload would fit, but may not pass the first one waiting ahead of it.
+			Thread.sleep(100);
+			assertFalse(second.isDone());
+
+			// Once admitted, the first upload leaves no room for the second until it is released.
+			admission.release(held);
+			assertEquals(900_000, first.get(5, TimeUnit.SECONDS));
+			assertFalse(second.isDone());
+			admission.release(900_000);
+			assertEquals(200_000, second.get(5, TimeUnit.SECONDS));
+			assertEquals(0.0, queued());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void rejectsWhenTheQueueIsFull() throws Exception {
+		UploadAdmission admission = admission(1, 10);
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			long held = admission.admit("held.csv", BUDGET);
+			CompletableFuture<Long> waiting = CompletableFuture.supplyAsync(() -> admission.admit("waiting.csv", 1), pool);
+			awaitQueued(1);
+
+			long start = System.nanoTime();
+			assertEquals(-1, admission.admit("rejected.csv", 1));
+			assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5, "rejected without waiting");
+			assertEquals(1.0, registry.get("exalyze.admission.rejected").tag("reason", "queue-full").counter().count());
+
+			admission.release(held);
+			assertEquals(1, waiting.get(5, TimeUnit.SECONDS));
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void rejectsWhenTheWaitTimesOut() {
+		UploadAdmission admission = admission(20, 1);
+		admission.admit("held.csv", BUDGET);
+
+		long start = System.nanoTime();
+		assertEquals(-1, admission.admit("late.csv", 1));
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 900, "waited for the configured time");
+		assertEquals(1.0, registry.get("exalyze.admission.rejected").tag("reason", "timeout").counter().count());
+		assertEquals(0.0, queued());
+	}
+
+	private double queued() {
+		return registry.get("exalyze.admission.queued").gauge().value();
+	}
+
+	private void awaitQueued(int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (queued() < count) {
+			assertTrue(System.nanoTime() < deadline, "uploads never queued");
+			Thread.sleep(5);
+		}
+	}
+}